@@ -0,0 +1,338 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+
+/**
+ * Converts markdown files from the command line, without any user interface.
+ * <p>Each file is converted into a sibling HTML file; directories are scanned recursively for markdown files.</p>
+ * <p>The files can also be built as a site: all of them are scanned first, then they are converted with their local links
+ * (e.g. {@code [[Page]]}) resolved, and a page with the contents of the site is written into their common directory.</p>
+ */
+public class BatchConverter{
+
+	private static final String MARKDOWN_EXTENSION = ".md";
+	//name of the page with the contents of a site
+	private static final String CONTENTS_NAME = "contents";
+
+	private static final String OPTION_TOC = "--toc";
+	private static final String OPTION_PREVENT_COPY = "--prevent-copy";
+	private static final String OPTION_PROFILE = "--profile";
+	private static final String OPTION_MINIFY = "--minify";
+	private static final String OPTION_HIGHLIGHT = "--highlight";
+	private static final String OPTION_SITE = "--site";
+	private static final String OPTION_STATISTICS = "--stats";
+	private static final String OPTION_JOBS = "--jobs";
+	private static final String OPTION_MEMORY = "--memory";
+	private static final String OPTION_HISTORY = "--history";
+	private static final String OPTION_GZIP = "--gzip";
+	private static final String OPTION_SOURCE_SET = "--srcset";
+	//options followed by a value, and those whose value is a path
+	private static final Set<String> VALUED_OPTIONS = Set.of(OPTION_STATISTICS, OPTION_JOBS, OPTION_MEMORY, OPTION_HISTORY,
+		OPTION_GZIP, OPTION_SOURCE_SET);
+	private static final Set<String> PATH_OPTIONS = Set.of(OPTION_STATISTICS, OPTION_HISTORY);
+
+	//the module needed to decode and encode images, not included in the headless image
+	private static final String MODULE_DESKTOP = "java.desktop";
+
+	private static final long DEFAULT_MEMORY_BUDGET = 256L << 20;
+
+
+	private boolean generateTOC;
+	private boolean preventCopying;
+	private boolean profile;
+	private boolean minify;
+	private boolean highlight;
+	private boolean site;
+	private Path statisticsReport;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+	private Path history;
+	private int compressionLevel;
+	private int[] imageWidths;
+	private final List<File> files = new ArrayList<>();
+
+
+	public static void main(final String[] args){
+		final int status = convert(args, System.out, System.err);
+		if(status != 0)
+			System.exit(status);
+	}
+
+	/**
+	 * Converts the files given on the command line.
+	 *
+	 * @param args	The options and the files or directories to be converted.
+	 * @param out	The stream the reports are printed to.
+	 * @param err	The stream the errors are printed to.
+	 * @return	The exit status: {@code 0} if all the files were converted, {@code 1} if some failed, {@code 2} on usage error.
+	 */
+	public static int convert(final String[] args, final PrintStream out, final PrintStream err){
+		final BatchConverter converter = new BatchConverter();
+		try{
+			converter.parseArguments(args);
+		}
+		catch(final IllegalArgumentException | IOException e){
+			err.println(e.getMessage());
+			err.println("Usage: MarkDownToHTML [" + OPTION_TOC + "] [" + OPTION_PREVENT_COPY + "] [" + OPTION_PROFILE
+				+ "] [" + OPTION_MINIFY + "] [" + OPTION_HIGHLIGHT + "] [" + OPTION_SITE + "] [" + OPTION_STATISTICS
+				+ " <report.csv|report.json>] [" + OPTION_JOBS + " <threads>] [" + OPTION_MEMORY + " <MiB>] [" + OPTION_HISTORY
+				+ " <history.tsv>] [" + OPTION_GZIP + " <level>] [" + OPTION_SOURCE_SET + " <width>,...] <file or directory>...");
+			return 2;
+		}
+		return converter.convertAll(out, err);
+	}
+
+	private BatchConverter(){}
+
+	/**
+	 * @param option	An argument.
+	 * @return	Whether the argument is an option followed by a value.
+	 */
+	static boolean isValuedOption(final String option){
+		return VALUED_OPTIONS.contains(option);
+	}
+
+	/**
+	 * @param option	An argument.
+	 * @return	Whether the argument is an option followed by a path.
+	 */
+	static boolean isPathOption(final String option){
+		return PATH_OPTIONS.contains(option);
+	}
+
+	private void parseArguments(final String[] args) throws IOException{
+		for(int i = 0; i < args.length; i ++){
+			final String arg = args[i];
+			switch(arg){
+				case OPTION_TOC -> generateTOC = true;
+				case OPTION_PREVENT_COPY -> preventCopying = true;
+				case OPTION_PROFILE -> profile = true;
+				case OPTION_MINIFY -> minify = true;
+				case OPTION_HIGHLIGHT -> highlight = true;
+				case OPTION_SITE -> site = true;
+				case OPTION_STATISTICS -> statisticsReport = Path.of(nextArgument(args, ++ i, OPTION_STATISTICS));
+				case OPTION_JOBS -> {
+					parallelism = Integer.parseInt(nextArgument(args, ++ i, OPTION_JOBS));
+					if(parallelism < 1)
+						throw new IllegalArgumentException("The number of threads must be positive");
+				}
+				case OPTION_MEMORY -> {
+					memoryBudget = Long.parseLong(nextArgument(args, ++ i, OPTION_MEMORY)) << 20;
+					if(memoryBudget < 1L)
+						throw new IllegalArgumentException("The memory budget must be positive");
+				}
+				case OPTION_HISTORY -> history = Path.of(nextArgument(args, ++ i, OPTION_HISTORY));
+				case OPTION_GZIP -> {
+					compressionLevel = Integer.parseInt(nextArgument(args, ++ i, OPTION_GZIP));
+					if(compressionLevel < 1 || compressionLevel > 9)
+						throw new IllegalArgumentException("The compression level must be between 1 and 9");
+				}
+				case OPTION_SOURCE_SET -> imageWidths = parseImageWidths(nextArgument(args, ++ i, OPTION_SOURCE_SET));
+				default -> {
+					if(arg.startsWith("--"))
+						throw new IllegalArgumentException("Unknown option " + arg);
+
+					collectFiles(new File(arg));
+				}
+			}
+		}
+		if(files.isEmpty())
+			throw new IllegalArgumentException("No markdown files to convert");
+	}
+
+	private static String nextArgument(final String[] args, final int index, final String option){
+		if(index == args.length)
+			throw new IllegalArgumentException("Missing value for " + option);
+
+		return args[index];
+	}
+
+	private static int[] parseImageWidths(final String value){
+		if(ModuleLayer.boot().findModule(MODULE_DESKTOP).isEmpty())
+			throw new IllegalArgumentException("The option " + OPTION_SOURCE_SET + " needs the " + MODULE_DESKTOP + " module");
+
+		final int[] widths = Arrays.stream(value.split(","))
+			.map(String::trim)
+			.mapToInt(Integer::parseInt)
+			.toArray();
+		for(final int width : widths)
+			if(width < 1)
+				throw new IllegalArgumentException("The image widths must be positive");
+		return widths;
+	}
+
+	private void collectFiles(final File file) throws IOException{
+		if(file.isDirectory()){
+			try(final Stream<Path> paths = Files.walk(file.toPath())){
+				paths.filter(path -> path.getFileName().toString().endsWith(MARKDOWN_EXTENSION) && Files.isRegularFile(path))
+					.sorted()
+					.forEach(path -> files.add(path.toFile()));
+			}
+		}
+		else if(file.isFile())
+			files.add(file);
+		else
+			throw new IllegalArgumentException("File not found: " + file);
+	}
+
+	private int convertAll(final PrintStream out, final PrintStream err){
+		final ConversionSchedule schedule;
+		try{
+			schedule = ConversionSchedule.load(history);
+		}
+		catch(final IOException | NumberFormatException e){
+			err.println("Cannot read the history " + history + ": " + e);
+			return 2;
+		}
+		//longest job first, so the pool does not end up waiting for a large document started last
+		final List<File> ordered = schedule.order(files);
+		final long predictedMakespan = schedule.predictMakespan(ordered, parallelism, memoryBudget);
+		final long unorderedMakespan = schedule.predictMakespan(files, parallelism, memoryBudget);
+
+
+		final RenderProfile batchProfile = (profile? RenderProfile.create(): null);
+		final Map<File, DocumentStatistics> statistics = new HashMap<>(files.size());
+		final AtomicInteger failures = new AtomicInteger();
+		final BatchConversionEvent batchEvent = BatchConversionEvent.start("cli");
+		final RenderVariant variant = RenderVariant.create(generateTOC, preventCopying)
+			.withMinification(minify)
+			.withImageVariants(imageWidths != null? ResponsiveImages.create(imageWidths): null)
+			.withCodeHighlighting(highlight);
+		final long start = System.nanoTime();
+		//first pass of a site: all the pages are indexed before any is converted
+		final SiteIndex siteIndex = (site? SiteIndex.scan(ordered, parallelism): null);
+		final ConversionPipeline pipeline = ConversionPipeline.create(variant, profile, parallelism, memoryBudget,
+			compressionLevel, siteIndex, new ConversionPipeline.Listener(){
+				@Override
+				public void converted(final File file, final DocumentStatistics documentStatistics,
+						final RenderProfile documentProfile){
+					schedule.record(file, documentStatistics.getConversionNanos());
+					synchronized(batchEvent){
+						statistics.put(file, documentStatistics);
+						batchEvent.addDocument(documentStatistics.getInputSize(), documentStatistics.getOutputSize(), true);
+
+						if(documentProfile != null){
+							out.println("Profile of " + file + ":");
+							out.println(documentProfile.getReport());
+							batchProfile.merge(documentProfile);
+						}
+					}
+				}
+
+				@Override
+				public void failed(final File file, final Throwable exception){
+					synchronized(batchEvent){
+						failures.incrementAndGet();
+						batchEvent.addDocument(file.length(), 0L, false);
+						err.println("Cannot convert " + file + ": " + exception);
+					}
+				}
+			});
+		try{
+			pipeline.convert(ordered);
+		}
+		catch(final InterruptedException e){
+			Thread.currentThread().interrupt();
+			err.println("Conversion interrupted");
+			return 1;
+		}
+		if(siteIndex != null && !writeContents(siteIndex, pipeline, err))
+			failures.incrementAndGet();
+		final long makespan = System.nanoTime() - start;
+		batchEvent.complete();
+
+		if(history != null){
+			out.printf("Makespan on %d threads: predicted %.2f s (%.2f s in input order), actual %.2f s%n", parallelism,
+				predictedMakespan / 1.e9, unorderedMakespan / 1.e9, makespan / 1.e9);
+			try{
+				schedule.save(history);
+			}
+			catch(final IOException e){
+				failures.incrementAndGet();
+				err.println("Cannot write the history " + history + ": " + e);
+			}
+		}
+
+		if(batchProfile != null && files.size() > 1 && !batchProfile.isEmpty()){
+			out.println("Profile of the batch (" + files.size() + " files):");
+			out.println(batchProfile.getReport());
+		}
+
+		if(statisticsReport != null)
+			try{
+				StatisticsReport.write(files.stream()
+					.map(statistics::get)
+					.filter(Objects::nonNull)
+					.toList(), statisticsReport);
+			}
+			catch(final IOException e){
+				failures.incrementAndGet();
+				err.println("Cannot write the statistics to " + statisticsReport + ": " + e);
+			}
+		return (failures.get() > 0? 1: 0);
+	}
+
+	private static boolean writeContents(final SiteIndex siteIndex, final ConversionPipeline pipeline,
+			final PrintStream err){
+		for(final String link : siteIndex.getUnresolvedLinks())
+			err.println("Unresolved link in " + link);
+
+		final Path root = siteIndex.getRoot();
+		if(root == null)
+			return true;
+
+		//the page of the contents would overwrite the one converted from the markdown file
+		final File contents = root.resolve(CONTENTS_NAME + MARKDOWN_EXTENSION).toFile();
+		if(contents.exists()){
+			err.println("Cannot write the contents of the site, " + contents + " already exists");
+			return false;
+		}
+		try{
+			pipeline.convert(contents, siteIndex.generateContents(root));
+			return true;
+		}
+		catch(final IOException | RuntimeException e){
+			err.println("Cannot write the contents of the site into " + root + ": " + e);
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+
+/**
+ * Headless entry point: converts from the command line, or starts the daemon or the HTTP service.
+ */
+public final class CommandLine{
+
+	private static final String OPTION_SERVE = "--serve";
+	private static final String OPTION_DAEMON = "--daemon";
+	private static final String OPTION_CLIENT = "--client";
+
+
+	private CommandLine(){}
+
+
+	public static void main(final String[] args) throws IOException{
+		final String command = (args.length > 0? args[0]: "");
+		final String[] arguments = (args.length > 0? Arrays.copyOfRange(args, 1, args.length): args);
+		switch(command){
+			case OPTION_SERVE -> RenderServer.main(arguments);
+			case OPTION_DAEMON -> ConversionDaemon.main(arguments);
+			case OPTION_CLIENT -> ConversionDaemon.client(arguments);
+			default -> BatchConverter.main(args);
+		}
+	}
+
+}
@@ -0,0 +1,321 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+
+/**
+ * Long-lived conversion process listening on a Unix-domain socket, so each conversion reuses the already warm (loaded and
+ * JIT-compiled) pipeline instead of paying the start-up of a new JVM.
+ * <p>The protocol is line based (UTF-8): the client sends the same arguments accepted on the command line, one per line,
+ * terminated by an empty line; the daemon answers with the report of the conversion, whose last line is
+ * {@code exit <status>}. Paths are resolved by the daemon, so the client sends them absolute.</p>
+ * <p>The socket is accessible by the user running the daemon only; by default it is in the runtime directory of the user
+ * ({@code $XDG_RUNTIME_DIR}), or in a private directory in the temporary one.</p>
+ * <p>Each connection is served on its own virtual thread.</p>
+ */
+public final class ConversionDaemon{
+
+	private static final String OPTION_SOCKET = "--socket";
+	private static final String SOCKET_NAME = "markdowntohtml.socket";
+	//the default socket is in a directory of its user only, so no other user can ask the daemon to write files
+	private static final Path DEFAULT_SOCKET = getDefaultSocket();
+	private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY = PosixFilePermissions.fromString("rwx------");
+	private static final Set<PosixFilePermission> OWNER_ONLY_SOCKET = PosixFilePermissions.fromString("rw-------");
+
+	private static final String EXIT_PREFIX = "exit ";
+	private static final int STATUS_UNREACHABLE = 3;
+
+
+	private ConversionDaemon(){}
+
+	private static Path getDefaultSocket(){
+		final String runtimeDirectory = System.getenv("XDG_RUNTIME_DIR");
+		final Path directory = (runtimeDirectory != null && !runtimeDirectory.isEmpty()
+			? Path.of(runtimeDirectory)
+			: Path.of(System.getProperty("java.io.tmpdir"), "markdowntohtml-" + System.getProperty("user.name")));
+		return directory.resolve(SOCKET_NAME);
+	}
+
+
+	/**
+	 * Starts the daemon and serves the clients until the process is terminated.
+	 *
+	 * @param args	The optional {@code --socket <path>} option.
+	 * @throws IOException	If the socket cannot be bound.
+	 */
+	public static void main(final String[] args) throws IOException{
+		final Path socket;
+		if(args.length == 0)
+			socket = DEFAULT_SOCKET;
+		else if(args.length == 2 && OPTION_SOCKET.equals(args[0]))
+			socket = Path.of(args[1]);
+		else
+			throw new IllegalArgumentException("Usage: MarkDownToHTML --daemon [" + OPTION_SOCKET + " <path>]");
+
+		serve(socket);
+	}
+
+	/**
+	 * Sends the arguments to the daemon and prints its answer.
+	 *
+	 * @param args	The optional {@code --socket <path>} option followed by the arguments of the conversion.
+	 */
+	public static void client(final String[] args){
+		Path socket = DEFAULT_SOCKET;
+		int first = 0;
+		if(args.length >= 2 && OPTION_SOCKET.equals(args[0])){
+			socket = Path.of(args[1]);
+			first = 2;
+		}
+		final List<String> arguments = toAbsolutePaths(Arrays.asList(args).subList(first, args.length));
+
+		final int status = send(socket, arguments, System.out, System.err);
+		if(status != 0)
+			System.exit(status);
+	}
+
+	/**
+	 * Makes absolute the paths among the arguments of a conversion (the files and the values of the options that are paths),
+	 * since the daemon does not share the working directory of the client.
+	 *
+	 * @param args	The arguments of the conversion.
+	 * @return	The arguments with absolute paths.
+	 */
+	static List<String> toAbsolutePaths(final List<String> args){
+		final List<String> arguments = new ArrayList<>(args.size());
+		for(int i = 0; i < args.size(); i ++){
+			final String arg = args.get(i);
+			arguments.add(arg.startsWith("--")? arg: toAbsolutePath(arg));
+			if(BatchConverter.isValuedOption(arg) && i + 1 < args.size()){
+				final String value = args.get(++ i);
+				arguments.add(BatchConverter.isPathOption(arg)? toAbsolutePath(value): value);
+			}
+		}
+		return arguments;
+	}
+
+	private static String toAbsolutePath(final String path){
+		return Path.of(path)
+			.toAbsolutePath()
+			.toString();
+	}
+
+	/**
+	 * Sends the arguments of a conversion to the daemon.
+	 *
+	 * @param socket	The socket the daemon listens to.
+	 * @param arguments	The arguments of the conversion, with absolute paths.
+	 * @param out	The stream the answer of the daemon is printed to.
+	 * @param err	The stream the errors are printed to.
+	 * @return	The exit status of the conversion, {@code 3} if the daemon cannot be reached.
+	 */
+	public static int send(final Path socket, final List<String> arguments, final PrintStream out, final PrintStream err){
+		try(final SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))){
+			final OutputStream os = Channels.newOutputStream(channel);
+			final StringBuilder request = new StringBuilder();
+			for(final String argument : arguments)
+				request.append(argument)
+					.append('\n');
+			request.append('\n');
+			os.write(request.toString().getBytes(StandardCharsets.UTF_8));
+			os.flush();
+
+			final BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel),
+				StandardCharsets.UTF_8));
+			String line;
+			while((line = reader.readLine()) != null){
+				if(line.startsWith(EXIT_PREFIX))
+					return Integer.parseInt(line.substring(EXIT_PREFIX.length()));
+
+				out.println(line);
+			}
+			err.println("The daemon closed the connection without an exit status");
+			return 1;
+		}
+		catch(final IOException e){
+			err.println("Cannot reach the daemon on " + socket + ": " + e.getMessage());
+			return STATUS_UNREACHABLE;
+		}
+	}
+
+
+	private static void serve(final Path socket) throws IOException{
+		final boolean posix = FileSystems.getDefault()
+			.supportedFileAttributeViews()
+			.contains("posix");
+		if(posix && socket.equals(DEFAULT_SOCKET))
+			createPrivateDirectory(socket.getParent());
+		removeStaleSocket(socket);
+
+		try(final ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)){
+			if(posix && !socket.equals(DEFAULT_SOCKET))
+				bindPrivately(server, socket);
+			else
+				server.bind(UnixDomainSocketAddress.of(socket));
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try{
+					Files.deleteIfExists(socket);
+				}
+				catch(final IOException ignored){}
+			}));
+
+			warmUp();
+			System.out.println("Listening on " + socket);
+
+			while(true){
+				final SocketChannel channel = server.accept();
+				Thread.ofVirtual()
+					.start(() -> handle(channel));
+			}
+		}
+	}
+
+	/**
+	 * Creates, if missing, the directory of the socket, accessible by the current user only.
+	 *
+	 * @param directory	The directory.
+	 * @throws IOException	If the directory cannot be created.
+	 * @throws IllegalStateException	If the directory exists and other users can access it.
+	 */
+	private static void createPrivateDirectory(final Path directory) throws IOException{
+		try{
+			Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIRECTORY));
+		}
+		catch(final FileAlreadyExistsException ignored){}
+
+		final PosixFileAttributes attributes = Files.readAttributes(directory, PosixFileAttributes.class,
+			LinkOption.NOFOLLOW_LINKS);
+		if(!attributes.isDirectory() || !attributes.owner().getName().equals(System.getProperty("user.name"))
+				|| !OWNER_ONLY_DIRECTORY.containsAll(attributes.permissions()))
+			throw new IllegalStateException("The directory " + directory
+				+ " of the socket must belong to, and be accessible by, the current user only");
+	}
+
+	/**
+	 * Binds a socket given explicitly, which may be in a shared directory.
+	 * <p>The socket is bound in a new directory accessible by the current user only, its permissions restricted, and
+	 * then moved into place, so no other user can connect to it in the meantime.</p>
+	 *
+	 * @param server	The server channel.
+	 * @param socket	The socket.
+	 * @throws IOException	If the socket cannot be bound, or moved into place.
+	 */
+	private static void bindPrivately(final ServerSocketChannel server, final Path socket) throws IOException{
+		final Path parent = socket.toAbsolutePath()
+			.getParent();
+		final Path directory = Files.createTempDirectory(parent, ".markdowntohtml",
+			PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIRECTORY));
+		final Path privateSocket = directory.resolve(SOCKET_NAME);
+		try{
+			server.bind(UnixDomainSocketAddress.of(privateSocket));
+			Files.setPosixFilePermissions(privateSocket, OWNER_ONLY_SOCKET);
+			Files.move(privateSocket, socket, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally{
+			Files.deleteIfExists(privateSocket);
+			Files.delete(directory);
+		}
+	}
+
+	/**
+	 * Removes the socket file left behind by a daemon that did not terminate cleanly.
+	 *
+	 * @param socket	The socket.
+	 * @throws IOException	If the socket file cannot be removed.
+	 * @throws IllegalStateException	If another daemon is listening on the socket.
+	 */
+	private static void removeStaleSocket(final Path socket) throws IOException{
+		if(!Files.exists(socket))
+			return;
+
+		final SocketChannel channel;
+		try{
+			channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+		}
+		catch(final IOException e){
+			//nobody listens on it
+			Files.delete(socket);
+			return;
+		}
+
+		channel.close();
+		throw new IllegalStateException("A daemon is already listening on " + socket);
+	}
+
+	/**
+	 * Loads and exercises the whole pipeline, so also the first client finds it ready.
+	 */
+	private static void warmUp() throws IOException{
+		final ParsedDocument parsedDocument = Service.parse("warm-up", "# Warm-up\n\nText *with* `code`.\n"
+			.getBytes(StandardCharsets.UTF_8), new Properties());
+		Service.render(parsedDocument, RenderVariant.create(true, false));
+	}
+
+	private static void handle(final SocketChannel channel){
+		try(channel){
+			final BufferedReader reader = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel),
+				StandardCharsets.UTF_8));
+			final List<String> arguments = new ArrayList<>();
+			String line;
+			while((line = reader.readLine()) != null && !line.isEmpty())
+				arguments.add(line);
+
+			final PrintStream out = new PrintStream(Channels.newOutputStream(channel), false, StandardCharsets.UTF_8);
+			final int status = BatchConverter.convert(arguments.toArray(String[]::new), out, out);
+			out.println(EXIT_PREFIX + status);
+			out.flush();
+		}
+		catch(final IOException | RuntimeException e){
+			System.err.println("Cannot serve the client: " + e);
+		}
+	}
+
+}
@@ -0,0 +1,427 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import com.vladsch.flexmark.util.misc.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Converts a batch of files through separate stages: reading (sources and properties) and writing on virtual threads,
+ * parsing and rendering on a pool as large as the number of cores.
+ * <p>The stages are connected by bounded hand-offs: at most twice the size of the pool documents wait to be parsed, and a
+ * document is read only when its estimated footprint fits into the memory budget, which is given back once its page is
+ * written. So the cores stay busy while the heap stays flat, whatever the number of files.</p>
+ * <p>A document larger than the budget is given less than the whole budget, leaving room for the other threads to convert
+ * average documents alongside it.</p>
+ * <p>The documents are started, and handed over to the parsers, in the given order.</p>
+ * <p>A document that fails is reported alone and the batch goes on; running out of heap aborts the whole batch instead,
+ * since the heap is shared by all the documents in flight.</p>
+ * <p>The pages of a site are converted against the index of the site, so their local links are resolved.</p>
+ * <p>If requested, each page is also deflated into a sibling {@code .html.gz} file while it is written, for the web servers
+ * serving pre-compressed files. The level is not recorded, so the compressed copies of the unchanged pages keep the level
+ * they were deflated at: they have to be deleted for a new level to apply.</p>
+ */
+final class ConversionPipeline{
+
+	static final String HTML_EXTENSION = ".html";
+	static final String GZIP_EXTENSION = ".gz";
+
+	//size of the buffer of the deflated output, so it reaches the file in large writes
+	private static final int GZIP_BUFFER_SIZE = 64 << 10;
+
+	//estimated memory held by a document in flight besides its source (template, inlined stylesheet and fonts, page)
+	private static final long DOCUMENT_OVERHEAD = 4L << 20;
+	//estimated memory held for each byte of source (decoded text, syntax tree, rendered body)
+	private static final long SOURCE_EXPANSION = 16L;
+
+
+	/**
+	 * Receives the outcome of each document, possibly from many threads at once.
+	 */
+	interface Listener{
+		void converted(File file, DocumentStatistics statistics, RenderProfile profile);
+
+		void failed(File file, Throwable exception);
+	}
+
+
+	private final RenderVariant variant;
+	private final boolean profile;
+	private final int parallelism;
+	private final long memoryBudget;
+	private final int compressionLevel;
+	private final SiteIndex site;
+	private final Listener listener;
+
+	private Semaphore memory;
+	private Semaphore parseSlots;
+	//documents read, waiting for a parser, the first in the given order first
+	private PriorityBlockingQueue<Job> readJobs;
+	private CountDownLatch completed;
+	//the error aborting the batch, if any
+	private volatile OutOfMemoryError abortion;
+	private ExecutorService io;
+	private ExecutorService cpu;
+
+
+	/**
+	 * @param variant	The variant the pages are rendered in.
+	 * @param profile	Whether to profile the rendering of each document.
+	 * @param parallelism	The number of threads parsing and rendering.
+	 * @param memoryBudget	The memory, in bytes, the documents in flight are allowed to take.
+	 * @param compressionLevel	The deflate level (from 1, fastest, to 9, smallest) of the compressed pages, {@code 0} to not
+	 * 	write them.
+	 * @param site	The index of the site the files belong to, {@code null} if they are converted on their own.
+	 * @param listener	The listener of the outcome of each document.
+	 * @return	The pipeline.
+	 */
+	static ConversionPipeline create(final RenderVariant variant, final boolean profile, final int parallelism,
+			final long memoryBudget, final int compressionLevel, final SiteIndex site, final Listener listener){
+		return new ConversionPipeline(variant, profile, parallelism, memoryBudget, compressionLevel, site, listener);
+	}
+
+	private ConversionPipeline(final RenderVariant variant, final boolean profile, final int parallelism,
+			final long memoryBudget, final int compressionLevel, final SiteIndex site, final Listener listener){
+		this.variant = variant;
+		this.profile = profile;
+		this.parallelism = parallelism;
+		this.memoryBudget = memoryBudget;
+		this.compressionLevel = compressionLevel;
+		this.site = site;
+		this.listener = listener;
+	}
+
+
+	/**
+	 * Converts each file into a sibling HTML file (and its compressed copy, if requested), returning when all of them are
+	 * done.
+	 * <p>The files are started in the given order.</p>
+	 *
+	 * @param files	The markdown files.
+	 * @throws InterruptedException	If interrupted while waiting for the conversions to complete.
+	 * @throws OutOfMemoryError	If the heap is exhausted: the documents in flight are completed, the others are not started.
+	 */
+	void convert(final List<File> files) throws InterruptedException{
+		final int[] footprints = estimateFootprints(files, parallelism, memoryBudget);
+		memory = new Semaphore(toPermits(memoryBudget));
+		parseSlots = new Semaphore(parallelism << 1, true);
+		readJobs = new PriorityBlockingQueue<>(parallelism << 1, Comparator.comparingInt(job -> job.order));
+		completed = new CountDownLatch(files.size());
+		try(final ExecutorService ioStage = Executors.newVirtualThreadPerTaskExecutor();
+				final ExecutorService cpuStage = Executors.newFixedThreadPool(parallelism)){
+			io = ioStage;
+			cpu = cpuStage;
+
+			for(int i = 0; i < files.size(); i ++){
+				memory.acquireUninterruptibly(footprints[i]);
+				if(abortion != null){
+					//the documents in flight are completed, the others are not started
+					memory.release(footprints[i]);
+					for(int j = i; j < files.size(); j ++)
+						completed.countDown();
+					break;
+				}
+
+				final Job job = new Job(files.get(i), i, footprints[i]);
+				io.execute(() -> read(job));
+			}
+
+			completed.await();
+		}
+		if(abortion != null)
+			throw abortion;
+	}
+
+	/**
+	 * Estimates the memory each file takes while it is converted, in permits (KiB) of the memory budget.
+	 * <p>The footprint of a file larger than the budget is lowered to the budget less the room for the other threads
+	 * converting average files (at most half the budget), so it does not stop the batch while it is converted.</p>
+	 *
+	 * @param files	The files to be converted.
+	 * @param parallelism	The number of threads parsing and rendering.
+	 * @param memoryBudget	The memory, in bytes, the documents in flight are allowed to take.
+	 * @return	The footprint of each file, in the same order.
+	 */
+	static int[] estimateFootprints(final List<File> files, final int parallelism, final long memoryBudget){
+		final int budget = toPermits(memoryBudget);
+		final long[] estimates = new long[files.size()];
+		long total = 0L;
+		for(int i = 0; i < estimates.length; i ++){
+			estimates[i] = (files.get(i).length() * SOURCE_EXPANSION + DOCUMENT_OVERHEAD) >> 10;
+			total += estimates[i];
+		}
+
+		final long average = (estimates.length > 0? total / estimates.length: 0L);
+		final long reserve = Math.min((parallelism - 1) * average, budget >> 1);
+		final long maxFootprint = Math.max(budget - reserve, 1L);
+		final int[] footprints = new int[estimates.length];
+		for(int i = 0; i < estimates.length; i ++)
+			footprints[i] = (int)Math.min(estimates[i], maxFootprint);
+		return footprints;
+	}
+
+	/**
+	 * @param memoryBudget	The memory, in bytes, the documents in flight are allowed to take.
+	 * @return	The number of permits (KiB) of the budget.
+	 */
+	static int toPermits(final long memoryBudget){
+		//permits are KiB, so the budget fits an int
+		return (int)Math.min(Integer.MAX_VALUE, Math.max(memoryBudget >> 10, 1L));
+	}
+
+	/**
+	 * Converts a generated markdown content (e.g. the contents of a site) into the HTML file beside the given markdown file
+	 * (and its compressed copy, if requested), on the calling thread.
+	 *
+	 * @param file	The markdown file the content stands for, it does not need to exist (its properties file is read, if any).
+	 * @param content	The markdown content.
+	 * @throws IOException	If an I/O error occurs while writing the file.
+	 */
+	void convert(final File file, final String content) throws IOException{
+		final ParsedDocument parsedDocument = Service.parse(file, content.getBytes(StandardCharsets.UTF_8),
+			Service.loadProperties(file), site);
+		write(file, Service.renderEncoded(parsedDocument, variant));
+	}
+
+	private void read(final Job job){
+		final String path = job.file.getPath();
+		final long start = System.nanoTime();
+		try{
+			job.source = Files.readAllBytes(job.file.toPath());
+
+			final ConversionStageEvent event = ConversionStageEvent.start(path, ConversionStageEvent.LOAD_PROPERTIES);
+			job.properties = Service.loadProperties(job.file);
+			event.complete(0, job.properties.size());
+		}
+		catch(final IOException | RuntimeException e){
+			fail(job, e);
+			return;
+		}
+		catch(final OutOfMemoryError oome){
+			abort(job, oome);
+			return;
+		}
+		finally{
+			job.nanos += System.nanoTime() - start;
+		}
+
+		//wait, without holding a core, for the parsers to catch up
+		parseSlots.acquireUninterruptibly();
+		readJobs.add(job);
+		//the parser takes the first document read in the given order, not necessarily this one
+		cpu.execute(() -> render(readJobs.poll()));
+	}
+
+	private void render(final Job job){
+		final RenderProfile documentProfile = (profile? RenderProfile.start(): null);
+		final long start = System.nanoTime();
+		try{
+			final ParsedDocument parsedDocument = Service.parse(job.file, job.source, job.properties, site);
+			//the parts shared by all the pages are encoded once, the body only is encoded here
+			job.content = Service.renderEncoded(parsedDocument, variant);
+			job.source = null;
+			job.statistics = parsedDocument.getStatistics();
+		}
+		catch(final IOException | RuntimeException e){
+			fail(job, e);
+			return;
+		}
+		catch(final OutOfMemoryError oome){
+			abort(job, oome);
+			return;
+		}
+		finally{
+			if(documentProfile != null)
+				documentProfile.stop();
+			parseSlots.release();
+			job.nanos += System.nanoTime() - start;
+		}
+
+		job.profile = documentProfile;
+		io.execute(() -> write(job));
+	}
+
+	private void write(final Job job){
+		final long outputSize;
+		final long start = System.nanoTime();
+		try{
+			outputSize = write(job.file, job.content);
+		}
+		catch(final IOException | RuntimeException e){
+			fail(job, e);
+			return;
+		}
+		catch(final OutOfMemoryError oome){
+			abort(job, oome);
+			return;
+		}
+		finally{
+			job.content = null;
+			job.nanos += System.nanoTime() - start;
+		}
+
+		job.statistics.setOutputSize(outputSize);
+		//time spent working on the document, waits for memory, parsers and threads excluded
+		job.statistics.setConversionNanos(job.nanos);
+		job.event.complete(outputSize, true);
+		try{
+			listener.converted(job.file, job.statistics, job.profile);
+		}
+		finally{
+			complete(job);
+		}
+	}
+
+	/**
+	 * Writes the HTML beside the markdown file it was converted from, unless it is unchanged.
+	 *
+	 * @param file	The markdown file.
+	 * @param content	The buffers composing the HTML content, encoded.
+	 * @return	The size of the page.
+	 * @throws IOException	If an I/O error occurs while writing the file.
+	 */
+	private long write(final File file, final ByteBuffer[] content) throws IOException{
+		final File outFile = new File(file.getParentFile(), FileUtil.getNameOnly(file) + HTML_EXTENSION);
+
+		ConversionStageEvent event = ConversionStageEvent.start(file.getPath(), ConversionStageEvent.WRITE);
+		final long size = Service.remaining(content);
+		final boolean written = Service.writeIfChanged(outFile, content);
+		event.complete(size, (written? size: 0L));
+
+		final File compressedFile = new File(outFile.getPath() + GZIP_EXTENSION);
+		//an unchanged page has an up-to-date compressed copy already, unless the page was written by someone else since
+		if(compressionLevel > 0 && (written || compressedFile.lastModified() < outFile.lastModified())){
+			event = ConversionStageEvent.start(file.getPath(), ConversionStageEvent.COMPRESS);
+			final long compressedSize = compress(compressedFile.toPath(), content);
+			event.complete(size, compressedSize);
+		}
+		return size;
+	}
+
+	/**
+	 * Deflates the page straight into the compressed file, through a temporary sibling moved over it.
+	 *
+	 * @param path	The compressed file.
+	 * @param content	The buffers composing the HTML content, encoded.
+	 * @return	The size of the compressed file.
+	 * @throws IOException	If an I/O error occurs while writing the file.
+	 */
+	private long compress(final Path path, final ByteBuffer[] content) throws IOException{
+		final Path temporary = Service.temporarySibling(path);
+		try{
+			try(final OutputStream os = new LeveledGZIPOutputStream(Files.newOutputStream(temporary,
+					StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE), compressionLevel)){
+				final byte[] chunk = new byte[GZIP_BUFFER_SIZE];
+				for(final ByteBuffer buffer : content){
+					final ByteBuffer source = buffer.duplicate();
+					while(source.hasRemaining()){
+						final int length = Math.min(chunk.length, source.remaining());
+						source.get(chunk, 0, length);
+						os.write(chunk, 0, length);
+					}
+				}
+			}
+			final long size = Files.size(temporary);
+			Service.moveOver(temporary, path);
+			return size;
+		}
+		finally{
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	private void fail(final Job job, final Throwable exception){
+		job.event.complete(0L, false);
+		try{
+			listener.failed(job.file, exception);
+		}
+		finally{
+			complete(job);
+		}
+	}
+
+	private void abort(final Job job, final OutOfMemoryError error){
+		abortion = error;
+		job.event.complete(0L, false);
+		complete(job);
+	}
+
+	private void complete(final Job job){
+		memory.release(job.permits);
+		completed.countDown();
+	}
+
+
+	private static final class LeveledGZIPOutputStream extends GZIPOutputStream{
+		private LeveledGZIPOutputStream(final OutputStream out, final int level) throws IOException{
+			super(out, GZIP_BUFFER_SIZE);
+
+			def.setLevel(level);
+		}
+	}
+
+	private static final class Job{
+		private final File file;
+		private final int order;
+		private final int permits;
+		private final ConversionEvent event;
+
+		private long nanos;
+
+		private byte[] source;
+		private Properties properties;
+		private ByteBuffer[] content;
+		private DocumentStatistics statistics;
+		private RenderProfile profile;
+
+
+		private Job(final File file, final int order, final int permits){
+			this.file = file;
+			this.order = order;
+			this.permits = permits;
+
+			event = ConversionEvent.start(file.getPath(), file.length());
+		}
+	}
+
+}
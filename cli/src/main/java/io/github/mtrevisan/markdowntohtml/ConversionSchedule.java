@@ -0,0 +1,212 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+
+
+/**
+ * Orders the files of a batch so the most expensive ones start first (longest job first), and the threads of the pool
+ * finish together instead of waiting for a large document started last.
+ * <p>The cost of a file is the time taken by its previous conversion, as recorded in the history, scaled by the change of its
+ * size; files never converted before are estimated by their size, with a linear model fitted over the history.</p>
+ * <p>The history is a text file, one line per document: time in nanoseconds, size in bytes and absolute path, separated by
+ * tabs.</p>
+ */
+final class ConversionSchedule{
+
+	//used until the history holds enough documents to fit the model
+	private static final long DEFAULT_FIXED_NANOS = 10_000_000L;
+	private static final double DEFAULT_NANOS_PER_BYTE = 250.;
+
+	private static final String SEPARATOR = "\t";
+
+
+	private final Map<String, Entry> history;
+	private final long fixedNanos;
+	private final double nanosPerByte;
+
+
+	/**
+	 * Loads the history of the previous conversions.
+	 *
+	 * @param file	The history file, {@code null} to estimate the files by their size only.
+	 * @return	The schedule.
+	 * @throws IOException	If an I/O error occurs while reading the history.
+	 */
+	static ConversionSchedule load(final Path file) throws IOException{
+		final Map<String, Entry> history = new HashMap<>();
+		if(file != null)
+			try(final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)){
+				String line;
+				while((line = reader.readLine()) != null){
+					final String[] components = line.split(SEPARATOR, 3);
+					if(components.length == 3)
+						history.put(components[2], new Entry(Long.parseLong(components[0]), Long.parseLong(components[1])));
+				}
+			}
+			catch(final NoSuchFileException ignored){
+				//first run
+			}
+		return new ConversionSchedule(history);
+	}
+
+	private ConversionSchedule(final Map<String, Entry> history){
+		this.history = history;
+
+		//least squares fit of time against size
+		final int count = history.size();
+		double meanSize = 0.;
+		double meanNanos = 0.;
+		for(final Entry entry : history.values()){
+			meanSize += entry.size;
+			meanNanos += entry.nanos;
+		}
+		meanSize /= Math.max(count, 1);
+		meanNanos /= Math.max(count, 1);
+		double covariance = 0.;
+		double variance = 0.;
+		for(final Entry entry : history.values()){
+			covariance += (entry.size - meanSize) * (entry.nanos - meanNanos);
+			variance += (entry.size - meanSize) * (entry.size - meanSize);
+		}
+		final double slope = (variance > 0.? covariance / variance: -1.);
+		final double intercept = meanNanos - slope * meanSize;
+		final boolean fitted = (count > 1 && slope > 0. && intercept >= 0.);
+		nanosPerByte = (fitted? slope: DEFAULT_NANOS_PER_BYTE);
+		fixedNanos = (fitted? (long)intercept: DEFAULT_FIXED_NANOS);
+	}
+
+
+	/**
+	 * @param files	The files to be converted.
+	 * @return	The files, the most expensive first.
+	 */
+	List<File> order(final List<File> files){
+		final Map<File, Long> costs = new HashMap<>(files.size());
+		for(final File file : files)
+			costs.put(file, estimate(file));
+
+		final List<File> ordered = new ArrayList<>(files);
+		ordered.sort(Comparator.comparing(costs::get, Comparator.reverseOrder()));
+		return ordered;
+	}
+
+	/**
+	 * @param file	The file to be converted.
+	 * @return	The estimated time taken by the conversion, in nanoseconds.
+	 */
+	long estimate(final File file){
+		final long size = file.length();
+		final Entry entry = history.get(file.getAbsolutePath());
+		if(entry != null)
+			return (entry.size == size || entry.size == 0L
+				? entry.nanos
+				: (long)(entry.nanos * ((double)size / entry.size)));
+
+		return fixedNanos + (long)(size * nanosPerByte);
+	}
+
+	/**
+	 * Predicts the time taken by a pool converting the files in the given order, each thread taking the next file as soon as
+	 * it is free and the memory budget has room for its footprint.
+	 *
+	 * @param files	The files, in the order they are started.
+	 * @param threads	The number of threads of the pool.
+	 * @param memoryBudget	The memory, in bytes, the documents in flight are allowed to take.
+	 * @return	The predicted time to convert all the files, in nanoseconds.
+	 */
+	long predictMakespan(final List<File> files, final int threads, final long memoryBudget){
+		final int[] footprints = ConversionPipeline.estimateFootprints(files, threads, memoryBudget);
+		long freeMemory = ConversionPipeline.toPermits(memoryBudget);
+		//the conversions in flight, the first to complete first: {end time, footprint}
+		final PriorityQueue<long[]> running = new PriorityQueue<>(threads, Comparator.comparingLong(conversion -> conversion[0]));
+		long now = 0L;
+		long makespan = 0L;
+		for(int i = 0; i < footprints.length; i ++){
+			//the files are started in order, so a file waits for the memory even if a later one would fit
+			while(running.size() == threads || freeMemory < footprints[i]){
+				final long[] conversion = running.poll();
+				now = Math.max(now, conversion[0]);
+				freeMemory += conversion[1];
+			}
+			final long end = now + estimate(files.get(i));
+			running.add(new long[]{end, footprints[i]});
+			freeMemory -= footprints[i];
+			makespan = Math.max(makespan, end);
+		}
+		return makespan;
+	}
+
+	/**
+	 * Records the time taken by the conversion of a file, to be saved into the history.
+	 *
+	 * @param file	The converted file.
+	 * @param nanos	The time taken, in nanoseconds.
+	 */
+	synchronized void record(final File file, final long nanos){
+		history.put(file.getAbsolutePath(), new Entry(nanos, file.length()));
+	}
+
+	/**
+	 * Saves the history, the entries of the files not converted in this run included.
+	 *
+	 * @param file	The history file.
+	 * @throws IOException	If an I/O error occurs while writing the history.
+	 */
+	synchronized void save(final Path file) throws IOException{
+		try(final Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)){
+			for(final Map.Entry<String, Entry> entry : new TreeMap<>(history).entrySet())
+				writer.write(entry.getValue().nanos + SEPARATOR + entry.getValue().size + SEPARATOR + entry.getKey() + "\n");
+		}
+	}
+
+
+	private static final class Entry{
+		private final long nanos;
+		private final long size;
+
+
+		private Entry(final long nanos, final long size){
+			this.nanos = nanos;
+			this.size = size;
+		}
+	}
+
+}
@@ -0,0 +1,300 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Embedded HTTP service converting the markdown posted to {@code /convert} into HTML, so other tools can use one warm JVM.
+ * <p>The options are given as query parameters: {@code toc} and {@code prevent-copy} (boolean flags), any other parameter
+ * is a property substituted into the template (e.g. {@code title}, {@code author}).</p>
+ * <p>Each request is handled on its own virtual thread. The response carries an {@code ETag} computed from the content and
+ * the options, a request with a matching {@code If-None-Match} is answered with {@code 304 Not Modified} without converting;
+ * the pages are cached compressed, and sent as they are to the clients accepting gzip.</p>
+ * <p>The time of the page is not part of the tag: a request without a {@code modified-datetime} parameter gets the time of
+ * the first conversion of the same content and options for as long as the page is cached, a client wanting the time of the
+ * request has to pass it as a parameter.</p>
+ */
+public final class RenderServer{
+
+	private static final String CONTEXT_CONVERT = "/convert";
+
+	private static final String OPTION_PORT = "--port";
+	private static final String OPTION_CACHE_SIZE = "--cache-size";
+	private static final int DEFAULT_PORT = 8080;
+	private static final long DEFAULT_CACHE_SIZE = 64L << 20;
+
+	private static final String PARAMETER_TOC = "toc";
+	private static final String PARAMETER_PREVENT_COPY = "prevent-copy";
+	private static final String PARAMETER_MINIFY = "minify";
+
+	private static final int MAX_REQUEST_SIZE = 16 << 20;
+
+	private static final String GZIP = "gzip";
+	private static final String CONTENT_TYPE_HTML = "text/html; charset=UTF-8";
+	private static final String CONTENT_TYPE_TEXT = "text/plain; charset=UTF-8";
+
+	private static final int STATUS_OK = 200;
+	private static final int STATUS_NOT_MODIFIED = 304;
+	private static final int STATUS_BAD_REQUEST = 400;
+	private static final int STATUS_NOT_FOUND = 404;
+	private static final int STATUS_METHOD_NOT_ALLOWED = 405;
+	private static final int STATUS_PAYLOAD_TOO_LARGE = 413;
+	private static final int STATUS_INTERNAL_SERVER_ERROR = 500;
+
+
+	private final HttpServer server;
+	private final RenderCache cache;
+
+
+	public static void main(final String[] args) throws IOException{
+		int port = DEFAULT_PORT;
+		long cacheSize = DEFAULT_CACHE_SIZE;
+		for(int i = 0; i < args.length; i ++)
+			if(OPTION_PORT.equals(args[i]) && i + 1 < args.length)
+				port = Integer.parseInt(args[++ i]);
+			else if(OPTION_CACHE_SIZE.equals(args[i]) && i + 1 < args.length)
+				cacheSize = Long.parseLong(args[++ i]) << 20;
+			else
+				throw new IllegalArgumentException("Usage: MarkDownToHTML --serve [" + OPTION_PORT + " <port>] ["
+					+ OPTION_CACHE_SIZE + " <MiB>]");
+
+		final RenderServer server = start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+			RenderCache.create(cacheSize, true, false));
+		System.out.println("Listening on http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort()
+			+ CONTEXT_CONVERT);
+	}
+
+	/**
+	 * Starts the service.
+	 *
+	 * @param address	The address to listen to.
+	 * @param cache	The cache of the rendered pages, it should store them compressed.
+	 * @return	The started service.
+	 * @throws IOException	If the address cannot be bound.
+	 */
+	public static RenderServer start(final InetSocketAddress address, final RenderCache cache) throws IOException{
+		final RenderServer renderServer = new RenderServer(HttpServer.create(address, 0), cache);
+		renderServer.server.start();
+		return renderServer;
+	}
+
+	private RenderServer(final HttpServer server, final RenderCache cache){
+		this.server = server;
+		this.cache = cache;
+
+		server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+		server.createContext(CONTEXT_CONVERT, this::handleConvert);
+	}
+
+	public InetSocketAddress getAddress(){
+		return server.getAddress();
+	}
+
+	/**
+	 * Stops the service, waiting for the exchanges in progress to complete up to the given delay.
+	 *
+	 * @param delaySeconds	The maximum time to wait, in seconds.
+	 */
+	public void stop(final int delaySeconds){
+		server.stop(delaySeconds);
+	}
+
+
+	private void handleConvert(final HttpExchange exchange) throws IOException{
+		try(exchange){
+			convert(exchange);
+		}
+	}
+
+	private void convert(final HttpExchange exchange) throws IOException{
+		try{
+			if(!CONTEXT_CONVERT.equals(exchange.getRequestURI().getPath())){
+				sendText(exchange, STATUS_NOT_FOUND, "Not found");
+				return;
+			}
+			if(!"POST".equals(exchange.getRequestMethod())){
+				exchange.getResponseHeaders().set("Allow", "POST");
+				sendText(exchange, STATUS_METHOD_NOT_ALLOWED, "Only POST is allowed");
+				return;
+			}
+
+			final byte[] source = readBody(exchange.getRequestBody());
+			if(source == null){
+				sendText(exchange, STATUS_PAYLOAD_TOO_LARGE, "Content larger than " + MAX_REQUEST_SIZE + " bytes");
+				return;
+			}
+
+			final Properties properties = new Properties();
+			boolean generateTOC = false;
+			boolean preventCopying = false;
+			boolean minify = false;
+			final String query = exchange.getRequestURI().getRawQuery();
+			if(query != null)
+				for(final String parameter : query.split("&")){
+					if(parameter.isEmpty())
+						continue;
+
+					final int separator = parameter.indexOf('=');
+					final String name = decode(separator >= 0? parameter.substring(0, separator): parameter);
+					final String value = (separator >= 0? decode(parameter.substring(separator + 1)): "true");
+					switch(name){
+						case PARAMETER_TOC -> generateTOC = Boolean.parseBoolean(value);
+						case PARAMETER_PREVENT_COPY -> preventCopying = Boolean.parseBoolean(value);
+						case PARAMETER_MINIFY -> minify = Boolean.parseBoolean(value);
+						default -> properties.setProperty(name, value);
+					}
+				}
+			final RenderVariant variant = RenderVariant.create(generateTOC, preventCopying)
+				.withMinification(minify);
+
+			final String key = RenderCache.key(RenderCache.digestSource(source, properties), variant);
+			final String etag = "\"" + key + "\"";
+			final Headers responseHeaders = exchange.getResponseHeaders();
+			responseHeaders.set("ETag", etag);
+			if(matchesETag(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)){
+				exchange.sendResponseHeaders(STATUS_NOT_MODIFIED, -1);
+				return;
+			}
+
+			final ConversionEvent conversionEvent = ConversionEvent.start(CONTEXT_CONVERT, source.length);
+			final boolean acceptsGzip = acceptsGzip(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+			byte[] response = (acceptsGzip? cache.getCompressed(key): null);
+			if(response == null){
+				String html = (acceptsGzip? null: cache.get(key));
+				if(html == null){
+					final ParsedDocument parsedDocument = Service.parse(CONTEXT_CONVERT, source, properties);
+					html = Service.render(parsedDocument, variant);
+					response = cache.put(key, html);
+				}
+				if(!acceptsGzip)
+					response = html.getBytes(StandardCharsets.UTF_8);
+				else if(response == null)
+					response = compress(html);
+			}
+			conversionEvent.complete(response.length, true);
+
+			responseHeaders.set("Content-Type", CONTENT_TYPE_HTML);
+			responseHeaders.set("Vary", "Accept-Encoding");
+			if(acceptsGzip)
+				responseHeaders.set("Content-Encoding", GZIP);
+			exchange.sendResponseHeaders(STATUS_OK, response.length);
+			try(final OutputStream os = exchange.getResponseBody()){
+				os.write(response);
+			}
+		}
+		catch(final IllegalArgumentException iae){
+			sendError(exchange, STATUS_BAD_REQUEST, iae.getMessage());
+		}
+		catch(final IOException | RuntimeException e){
+			sendError(exchange, STATUS_INTERNAL_SERVER_ERROR, e.toString());
+		}
+	}
+
+	private static void sendError(final HttpExchange exchange, final int status, final String message) throws IOException{
+		//the headers are already sent, the response cannot be changed anymore
+		if(exchange.getResponseCode() != -1)
+			exchange.close();
+		else
+			sendText(exchange, status, message);
+	}
+
+	/**
+	 * Reads the body of a request up to the maximum allowed size.
+	 *
+	 * @param is	The body of the request.
+	 * @return	The content, {@code null} if larger than the maximum allowed size.
+	 * @throws IOException	If an I/O error occurs while reading.
+	 */
+	private static byte[] readBody(final InputStream is) throws IOException{
+		final byte[] content = is.readNBytes(MAX_REQUEST_SIZE + 1);
+		return (content.length <= MAX_REQUEST_SIZE? content: null);
+	}
+
+	private static String decode(final String value){
+		return URLDecoder.decode(value, StandardCharsets.UTF_8);
+	}
+
+	private static boolean matchesETag(final String ifNoneMatch, final String etag){
+		if(ifNoneMatch == null)
+			return false;
+
+		for(String candidate : ifNoneMatch.split(",")){
+			candidate = candidate.trim();
+			//weak comparison
+			if(candidate.startsWith("W/"))
+				candidate = candidate.substring(2);
+			//the wildcard is not a match: it asks for a page that does not exist yet, and a conversion always produces one
+			if(candidate.equals(etag))
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean acceptsGzip(final String acceptEncoding){
+		if(acceptEncoding == null)
+			return false;
+
+		for(final String coding : acceptEncoding.split(",")){
+			final String[] components = coding.trim().split(";");
+			if(components[0].trim().equalsIgnoreCase(GZIP))
+				return (components.length == 1 || !components[1].replace(" ", "").equals("q=0"));
+		}
+		return false;
+	}
+
+	private static byte[] compress(final String html) throws IOException{
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream(html.length() >> 2);
+		try(final OutputStream os = new GZIPOutputStream(baos)){
+			os.write(html.getBytes(StandardCharsets.UTF_8));
+		}
+		return baos.toByteArray();
+	}
+
+	private static void sendText(final HttpExchange exchange, final int status, final String message) throws IOException{
+		final byte[] response = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE_TEXT);
+		exchange.sendResponseHeaders(status, response.length);
+		try(final OutputStream os = exchange.getResponseBody()){
+			os.write(response);
+		}
+	}
+
+}
@@ -0,0 +1,334 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+
+/**
+ * Generates the downscaled copies of the JPEG and PNG images, to the given widths narrower than the image.
+ * <p>Each copy is written beside its image, named after it, its width and the hash of the content of the image (e.g.
+ * {@code photo.480w.0123456789.jpg}): the copies of an image are found by name on later runs, without decoding the image
+ * again, and a changed image gets new copies (with new URLs, so no stale copy is served from a browser cache), the copies
+ * of its previous content being deleted.</p>
+ * <p>The image is decoded once for all its copies, and each copy is scaled down by halves from the previous one, which is
+ * both faster and sharper than scaling the image down in a single step.</p>
+ * <p>Needs the {@code java.desktop} module.</p>
+ */
+final class ResponsiveImages implements ImageVariants{
+
+	private static final String HASH_ALGORITHM = "SHA-256";
+	//characters of the hash in the name of a copy
+	private static final int HASH_LENGTH = 10;
+	private static final HexFormat HEX_FORMAT = HexFormat.of();
+	private static final int BUFFER_SIZE = 64 << 10;
+
+	private static final String FORMAT_JPEG = "jpeg";
+	private static final String FORMAT_PNG = "png";
+	private static final float JPEG_QUALITY = 0.85f;
+
+
+	//copies sorted by width, ascending
+	private final int[] widths;
+	//copies of each image, keyed by path, size and modification time of the image
+	private final ConcurrentHashMap<List<Object>, NavigableMap<Integer, Path>> variants = new ConcurrentHashMap<>();
+
+
+	/**
+	 * @param widths	The widths of the copies, in pixels.
+	 * @return	The generator.
+	 */
+	static ResponsiveImages create(final int[] widths){
+		return new ResponsiveImages(widths);
+	}
+
+	private ResponsiveImages(final int[] widths){
+		this.widths = Arrays.stream(widths)
+			.sorted()
+			.distinct()
+			.toArray();
+	}
+
+
+	@Override
+	public NavigableMap<Integer, Path> generate(final Path image, final int width, final int height) throws IOException{
+		final String format = getFormat(image);
+		if(format == null || widths[0] >= width)
+			return Collections.emptyNavigableMap();
+
+		final BasicFileAttributes attributes = Files.readAttributes(image, BasicFileAttributes.class);
+		try{
+			//an image referenced by many pages is generated once, the pages wait for it
+			return variants.computeIfAbsent(List.of(image, attributes.size(), attributes.lastModifiedTime()), key -> {
+				try{
+					return generate(image, format, width, height);
+				}
+				catch(final IOException ioe){
+					throw new UncheckedIOException(ioe);
+				}
+			});
+		}
+		catch(final UncheckedIOException uioe){
+			throw uioe.getCause();
+		}
+	}
+
+	@Override
+	public String getCacheKey(){
+		return "srcset" + Arrays.toString(widths);
+	}
+
+	private NavigableMap<Integer, Path> generate(final Path image, final String format, final int width, final int height)
+			throws IOException{
+		final String name = image.getFileName().toString();
+		final int dot = name.lastIndexOf('.');
+		final String prefix = name.substring(0, dot + 1);
+		final String suffix = "." + hash(image) + name.substring(dot);
+
+		final NavigableMap<Integer, Path> copies = new TreeMap<>();
+		boolean missing = false;
+		for(final int copyWidth : widths)
+			if(copyWidth < width){
+				final Path copy = image.resolveSibling(prefix + copyWidth + "w" + suffix);
+				copies.put(copyWidth, copy);
+				missing |= !Files.isRegularFile(copy);
+			}
+		if(!missing)
+			return Collections.unmodifiableNavigableMap(copies);
+
+		BufferedImage scaled = decode(image, format);
+		if(scaled == null)
+			return Collections.emptyNavigableMap();
+
+		//from the largest copy down, each one scaled from the previous
+		for(final Integer copyWidth : copies.descendingKeySet()){
+			final int copyHeight = Math.max(1, (int)Math.round((double)height * copyWidth / width));
+			scaled = scale(scaled, copyWidth, copyHeight);
+			final Path copy = copies.get(copyWidth);
+			if(!Files.isRegularFile(copy))
+				write(scaled, format, copy);
+		}
+		deleteStaleCopies(image, prefix, suffix);
+		return Collections.unmodifiableNavigableMap(copies);
+	}
+
+	/**
+	 * Deletes the copies of the previous contents of an image, i.e. those named after another hash.
+	 *
+	 * @param image	The image file.
+	 * @param prefix	The name of the image up to its extension, dot included.
+	 * @param suffix	The hash of the current content of the image and its extension, each preceded by a dot.
+	 * @throws IOException	If an I/O error occurs while listing the directory or deleting a copy.
+	 */
+	private static void deleteStaleCopies(final Path image, final String prefix, final String suffix) throws IOException{
+		final String extension = suffix.substring(HASH_LENGTH + 1);
+		final Pattern copyName = Pattern.compile(Pattern.quote(prefix) + "\\d+w\\.[0-9a-f]{" + HASH_LENGTH + "}"
+			+ Pattern.quote(extension));
+		try(final DirectoryStream<Path> siblings = Files.newDirectoryStream(image.toAbsolutePath().getParent(),
+				sibling -> copyName.matcher(sibling.getFileName().toString()).matches())){
+			for(final Path sibling : siblings)
+				if(!sibling.getFileName().toString().endsWith(suffix))
+					Files.deleteIfExists(sibling);
+		}
+	}
+
+	private static String getFormat(final Path image){
+		final String name = image.getFileName().toString().toLowerCase(Locale.ROOT);
+		if(name.endsWith(".jpg") || name.endsWith(".jpeg"))
+			return FORMAT_JPEG;
+		if(name.endsWith(".png"))
+			return FORMAT_PNG;
+		return null;
+	}
+
+	private static String hash(final Path image) throws IOException{
+		final MessageDigest digest;
+		try{
+			digest = MessageDigest.getInstance(HASH_ALGORITHM);
+		}
+		catch(final NoSuchAlgorithmException nsae){
+			//every Java platform is required to support SHA-256
+			throw new IllegalStateException(nsae);
+		}
+		try(final InputStream is = Files.newInputStream(image)){
+			final byte[] buffer = new byte[BUFFER_SIZE];
+			int length;
+			while((length = is.read(buffer)) > 0)
+				digest.update(buffer, 0, length);
+		}
+		return HEX_FORMAT.formatHex(digest.digest())
+			.substring(0, HASH_LENGTH);
+	}
+
+	/**
+	 * Decodes an image, turned upright as given by its EXIF orientation.
+	 *
+	 * @param image	The image file.
+	 * @param format	The format of the image.
+	 * @return	The decoded image, {@code null} if it cannot be decoded.
+	 * @throws IOException	If an I/O error occurs while reading the file.
+	 */
+	private static BufferedImage decode(final Path image, final String format) throws IOException{
+		final BufferedImage decoded;
+		try(final InputStream is = Files.newInputStream(image)){
+			decoded = ImageIO.read(is);
+		}
+		if(decoded == null)
+			return null;
+
+		final ImageDimensions dimensions = ImageDimensions.read(image);
+		final int orientation = (dimensions != null? dimensions.getOrientation(): 1);
+		//JPEG has no transparency
+		final boolean alpha = (!FORMAT_JPEG.equals(format) && decoded.getColorModel().hasAlpha());
+		final int w = decoded.getWidth();
+		final int h = decoded.getHeight();
+		final boolean swap = (orientation >= 5);
+		final BufferedImage upright = new BufferedImage((swap? h: w), (swap? w: h),
+			(alpha? BufferedImage.TYPE_INT_ARGB: BufferedImage.TYPE_INT_RGB));
+		final Graphics2D graphics = upright.createGraphics();
+		try{
+			graphics.drawImage(decoded, orientationTransform(orientation, w, h), null);
+		}
+		finally{
+			graphics.dispose();
+		}
+		return upright;
+	}
+
+	/**
+	 * The transform that turns an image upright.
+	 *
+	 * @param orientation	The EXIF orientation of the image.
+	 * @param w	The width of the image as stored.
+	 * @param h	The height of the image as stored.
+	 * @return	The transform.
+	 */
+	private static AffineTransform orientationTransform(final int orientation, final int w, final int h){
+		return switch(orientation){
+			//mirrored horizontally
+			case 2 -> new AffineTransform(-1., 0., 0., 1., w, 0.);
+			//rotated by a half turn
+			case 3 -> new AffineTransform(-1., 0., 0., -1., w, h);
+			//mirrored vertically
+			case 4 -> new AffineTransform(1., 0., 0., -1., 0., h);
+			//transposed
+			case 5 -> new AffineTransform(0., 1., 1., 0., 0., 0.);
+			//rotated by a quarter turn clockwise
+			case 6 -> new AffineTransform(0., 1., -1., 0., h, 0.);
+			//transversed
+			case 7 -> new AffineTransform(0., -1., -1., 0., h, w);
+			//rotated by a quarter turn counterclockwise
+			case 8 -> new AffineTransform(0., -1., 1., 0., 0., w);
+			default -> new AffineTransform();
+		};
+	}
+
+	/**
+	 * Scales an image down, by halves as long as the result is at least twice the target, then to the target.
+	 *
+	 * @param image	The image.
+	 * @param width	The width of the scaled image.
+	 * @param height	The height of the scaled image.
+	 * @return	The scaled image.
+	 */
+	private static BufferedImage scale(BufferedImage image, final int width, final int height){
+		while(image.getWidth() > width){
+			final int w = (image.getWidth() >= width << 1? image.getWidth() >> 1: width);
+			final int h = (image.getWidth() >= width << 1? Math.max(image.getHeight() >> 1, height): height);
+			final BufferedImage scaled = new BufferedImage(w, h, image.getType());
+			final Graphics2D graphics = scaled.createGraphics();
+			try{
+				graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+				graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+				graphics.drawImage(image, 0, 0, w, h, null);
+			}
+			finally{
+				graphics.dispose();
+			}
+			image = scaled;
+		}
+		return image;
+	}
+
+	/**
+	 * Writes a copy through a temporary sibling moved over it, so a page never references a partially written copy.
+	 *
+	 * @param image	The copy.
+	 * @param format	The format of the copy.
+	 * @param path	The file of the copy.
+	 * @throws IOException	If an I/O error occurs while writing the file.
+	 */
+	private static void write(final BufferedImage image, final String format, final Path path) throws IOException{
+		final ImageWriter writer = ImageIO.getImageWritersByFormatName(format)
+			.next();
+		final ImageWriteParam parameters = writer.getDefaultWriteParam();
+		if(FORMAT_JPEG.equals(format)){
+			parameters.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+			parameters.setCompressionQuality(JPEG_QUALITY);
+		}
+
+		final Path temporary = Service.temporarySibling(path);
+		try{
+			try(final ImageOutputStream ios = ImageIO.createImageOutputStream(temporary.toFile())){
+				writer.setOutput(ios);
+				writer.write(null, new IIOImage(image, null, null), parameters);
+			}
+			finally{
+				writer.dispose();
+			}
+			Service.moveOver(temporary, path);
+		}
+		finally{
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+
+/**
+ * Writes the {@link DocumentStatistics statistics} of a batch of documents, one row (or object) per document.
+ * <p>The format is JSON if the name of the report file ends with {@code .json}, CSV otherwise; in CSV the node counts take
+ * one column for each node type found in the batch.</p>
+ */
+final class StatisticsReport{
+
+	private static final String JSON_EXTENSION = ".json";
+
+	private static final String[] COLUMNS = {"path", "inputBytes", "outputBytes", "conversionMillis", "nodes", "headings",
+		"maxHeadingLevel", "tables", "tableCells", "footnoteDefinitions", "footnoteReferences", "unreferencedFootnotes",
+		"attributeGroups", "katexFormulas"};
+	private static final String NODE_COLUMN_PREFIX = "nodes.";
+
+	private static final double NANOS_PER_MILLI = 1_000_000.;
+
+
+	private StatisticsReport(){}
+
+
+	/**
+	 * Writes the report of a batch into a file.
+	 *
+	 * @param statistics	The statistics of the documents.
+	 * @param file	The report file.
+	 * @throws IOException	If an I/O error occurs while writing the file.
+	 */
+	static void write(final List<DocumentStatistics> statistics, final Path file) throws IOException{
+		try(final Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)){
+			if(file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(JSON_EXTENSION))
+				writeJSON(statistics, writer);
+			else
+				writeCSV(statistics, writer);
+		}
+	}
+
+	static void writeCSV(final List<DocumentStatistics> statistics, final Writer writer) throws IOException{
+		final Set<String> nodeTypes = new TreeSet<>();
+		for(final DocumentStatistics documentStatistics : statistics)
+			nodeTypes.addAll(documentStatistics.getNodeCounts().keySet());
+
+		writer.write(String.join(",", COLUMNS));
+		for(final String nodeType : nodeTypes)
+			writer.write("," + NODE_COLUMN_PREFIX + nodeType);
+		writer.write('\n');
+
+		for(final DocumentStatistics documentStatistics : statistics){
+			final Object[] values = values(documentStatistics);
+			writer.write(escapeCSV((String)values[0]));
+			for(int i = 1; i < values.length; i ++)
+				writer.write("," + values[i]);
+
+			final Map<String, Integer> nodeCounts = documentStatistics.getNodeCounts();
+			for(final String nodeType : nodeTypes)
+				writer.write("," + nodeCounts.getOrDefault(nodeType, 0));
+			writer.write('\n');
+		}
+	}
+
+	static void writeJSON(final List<DocumentStatistics> statistics, final Writer writer) throws IOException{
+		writer.write("[");
+		for(int i = 0; i < statistics.size(); i ++){
+			final DocumentStatistics documentStatistics = statistics.get(i);
+			writer.write(i > 0? ",\n\t{": "\n\t{");
+
+			final Object[] values = values(documentStatistics);
+			writer.write("\"" + COLUMNS[0] + "\": " + escapeJSON((String)values[0]));
+			for(int j = 1; j < values.length; j ++)
+				writer.write(", \"" + COLUMNS[j] + "\": " + values[j]);
+
+			writer.write(", \"nodeCounts\": {");
+			boolean first = true;
+			for(final Map.Entry<String, Integer> entry : documentStatistics.getNodeCounts().entrySet()){
+				writer.write((first? "": ", ") + escapeJSON(entry.getKey()) + ": " + entry.getValue());
+				first = false;
+			}
+			writer.write("}}");
+		}
+		writer.write(statistics.isEmpty()? "]\n": "\n]\n");
+	}
+
+	private static Object[] values(final DocumentStatistics statistics){
+		return new Object[]{statistics.getPath(), statistics.getInputSize(), statistics.getOutputSize(),
+			String.format(Locale.ROOT, "%.3f", statistics.getConversionNanos() / NANOS_PER_MILLI), statistics.getNodes(),
+			statistics.getHeadings(), statistics.getMaxHeadingLevel(), statistics.getTables(), statistics.getTableCells(),
+			statistics.getFootnoteDefinitions(), statistics.getFootnoteReferences(), statistics.getUnreferencedFootnotes(),
+			statistics.getAttributeGroups(), statistics.getKatexFormulas()};
+	}
+
+	private static String escapeCSV(final String value){
+		if(value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0)
+			return value;
+
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+
+	private static String escapeJSON(final String value){
+		final StringBuilder sb = new StringBuilder(value.length() + 2)
+			.append('"');
+		for(int i = 0; i < value.length(); i ++){
+			final char chr = value.charAt(i);
+			switch(chr){
+				case '"' -> sb.append("\\\"");
+				case '\\' -> sb.append("\\\\");
+				case '\n' -> sb.append("\\n");
+				case '\r' -> sb.append("\\r");
+				case '\t' -> sb.append("\\t");
+				default -> {
+					if(chr < 0x20)
+						sb.append(String.format(Locale.ROOT, "\\u%04x", (int)chr));
+					else
+						sb.append(chr);
+				}
+			}
+		}
+		return sb.append('"')
+			.toString();
+	}
+
+}
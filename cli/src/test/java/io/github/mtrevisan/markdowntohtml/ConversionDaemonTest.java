@@ -0,0 +1,71 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+
+class ConversionDaemonTest{
+
+	private static String absolute(final String path){
+		return Path.of(path)
+			.toAbsolutePath()
+			.toString();
+	}
+
+
+	@Test
+	void makesFilesAbsolute(){
+		Assertions.assertEquals(List.of("--toc", absolute("docs"), absolute("readme.md")),
+			ConversionDaemon.toAbsolutePaths(List.of("--toc", "docs", "readme.md")));
+	}
+
+	@Test
+	void makesPathOptionsAbsolute(){
+		Assertions.assertEquals(List.of("--stats", absolute("report.json"), "--history", absolute("history.tsv"),
+				absolute("docs")),
+			ConversionDaemon.toAbsolutePaths(List.of("--stats", "report.json", "--history", "history.tsv", "docs")));
+	}
+
+	@Test
+	void keepsOtherOptionValues(){
+		Assertions.assertEquals(List.of("--jobs", "4", "--memory", "64", "--gzip", "6", "--srcset", "480,960",
+				absolute("docs")),
+			ConversionDaemon.toAbsolutePaths(List.of("--jobs", "4", "--memory", "64", "--gzip", "6", "--srcset", "480,960",
+				"docs")));
+	}
+
+	@Test
+	void keepsAbsolutePaths(){
+		final String path = absolute("docs");
+
+		Assertions.assertEquals(List.of(path), ConversionDaemon.toAbsolutePaths(List.of(path)));
+	}
+
+}
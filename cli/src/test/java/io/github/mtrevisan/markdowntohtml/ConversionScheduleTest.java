@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+
+class ConversionScheduleTest{
+
+	//large enough for any number of small files
+	private static final long LARGE_BUDGET = 1L << 40;
+	private static final long DEFAULT_BUDGET = 256L << 20;
+
+
+	@TempDir
+	private Path directory;
+
+
+	private List<File> createFiles(final int count) throws IOException{
+		final List<File> files = new ArrayList<>(count);
+		for(int i = 0; i < count; i ++){
+			final Path path = directory.resolve("file" + i + ".md");
+			Files.writeString(path, "# File " + i, StandardCharsets.UTF_8);
+			files.add(path.toFile());
+		}
+		return files;
+	}
+
+	/**
+	 * Loads a schedule whose history holds the given times.
+	 *
+	 * @param files	The converted files.
+	 * @param nanos	The time taken by the conversion of each file.
+	 * @return	The schedule.
+	 */
+	private ConversionSchedule loadSchedule(final List<File> files, final long... nanos) throws IOException{
+		final StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < files.size(); i ++)
+			sb.append(nanos[i]).append('\t')
+				.append(files.get(i).length()).append('\t')
+				.append(files.get(i).getAbsolutePath()).append('\n');
+		final Path history = directory.resolve("history.tsv");
+		Files.writeString(history, sb, StandardCharsets.UTF_8);
+		return ConversionSchedule.load(history);
+	}
+
+
+	@Test
+	void ordersByRecordedTime() throws IOException{
+		final long[] nanos = {100L, 300L, 200L};
+		final List<File> files = createFiles(nanos.length);
+		final ConversionSchedule schedule = loadSchedule(files, nanos);
+
+		Assertions.assertEquals(List.of(files.get(1), files.get(2), files.get(0)), schedule.order(files));
+	}
+
+	@Test
+	void ordersNewFilesBySize() throws IOException{
+		final Path small = directory.resolve("small.md");
+		final Path large = directory.resolve("large.md");
+		Files.writeString(small, "a", StandardCharsets.UTF_8);
+		Files.writeString(large, "a".repeat(1_000), StandardCharsets.UTF_8);
+		final ConversionSchedule schedule = ConversionSchedule.load(null);
+
+		Assertions.assertEquals(List.of(large.toFile(), small.toFile()),
+			schedule.order(List.of(small.toFile(), large.toFile())));
+	}
+
+	@Test
+	void scalesRecordedTimeBySize() throws IOException{
+		final List<File> files = createFiles(1);
+		final ConversionSchedule schedule = loadSchedule(files, 100L);
+		Files.writeString(files.get(0).toPath(), "a".repeat((int)files.get(0).length() * 2), StandardCharsets.UTF_8);
+
+		Assertions.assertEquals(200L, schedule.estimate(files.get(0)));
+	}
+
+	@Test
+	void predictsMakespanOfLongestJobFirst() throws IOException{
+		final long[] nanos = {100L, 100L, 200L};
+		final List<File> files = createFiles(nanos.length);
+		final ConversionSchedule schedule = loadSchedule(files, nanos);
+
+		//the longest file started last runs alone at the end
+		Assertions.assertEquals(300L, schedule.predictMakespan(files, 2, LARGE_BUDGET));
+		Assertions.assertEquals(200L, schedule.predictMakespan(schedule.order(files), 2, LARGE_BUDGET));
+	}
+
+	@Test
+	void predictsMakespanWithinMemoryBudget() throws IOException{
+		final long[] nanos = {100L, 100L, 100L};
+		final List<File> files = createFiles(nanos.length);
+		final ConversionSchedule schedule = loadSchedule(files, nanos);
+
+		Assertions.assertEquals(100L, schedule.predictMakespan(files, 3, LARGE_BUDGET));
+		//each document takes half the budget, so the third waits for one of the first two
+		Assertions.assertEquals(200L, schedule.predictMakespan(files, 3, 4L << 20));
+	}
+
+	@Test
+	void convertsAlongsideDocumentLargerThanBudget() throws IOException{
+		final long[] nanos = {1_000L, 100L, 100L, 100L, 100L};
+		final List<File> files = createFiles(nanos.length);
+		try(final RandomAccessFile huge = new RandomAccessFile(files.get(0), "rw")){
+			huge.setLength(64L << 20);
+		}
+		final ConversionSchedule schedule = loadSchedule(files, nanos);
+
+		final int[] footprints = ConversionPipeline.estimateFootprints(files, 3, DEFAULT_BUDGET);
+		final int budget = ConversionPipeline.toPermits(DEFAULT_BUDGET);
+		Assertions.assertTrue(footprints[0] < budget);
+		Assertions.assertTrue(footprints[0] + 2 * footprints[1] <= budget);
+		//the small files are converted by the other threads while the large one is
+		Assertions.assertEquals(1_000L, schedule.predictMakespan(files, 3, DEFAULT_BUDGET));
+	}
+
+}
@@ -0,0 +1,310 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+
+/**
+ * Generates deterministic synthetic markdown corpora for load testing.
+ * <p>Documents mix paragraphs, headings, tables, footnotes (references and definitions), attributes
+ * ({@code {#id .class}}), highlights ({@code ==text==}), KaTeX formulas, local links ({@code [[Page]]}), raw
+ * {@code <details>} blocks and {@code mailto:} anchors, in ratios that can be tuned with
+ * {@link #withRatio(Construct, double)}.</p>
+ * <p>The same seed always produces the same corpus, every file of a tree is generated from its own seed (derived from the
+ * corpus seed and the index of the file), so files can also be generated in any order.</p>
+ */
+public class CorpusGenerator{
+
+	/** The constructs whose frequency can be tuned. */
+	public enum Construct{
+		/** Probability of a block to be a table. */
+		TABLE,
+		/** Probability of a block to be a raw {@code <details>} element. */
+		DETAILS,
+		/** Probability of a block to be a fenced code block. */
+		CODE,
+		/** Probability of a block to be a heading. */
+		HEADING,
+		/** Probability of a paragraph to contain a footnote reference (along with its definition). */
+		FOOTNOTE,
+		/** Probability of a paragraph to carry attributes. */
+		ATTRIBUTES,
+		/** Probability of a paragraph to contain a highlight. */
+		HIGHLIGHT,
+		/** Probability of a paragraph to contain a formula. */
+		MATH,
+		/** Probability of a paragraph to contain a local link. */
+		LOCAL_LINK,
+		/** Probability of a paragraph to contain a {@code mailto:} anchor. */
+		MAILTO
+	}
+
+
+	private static final String[] WORDS = ("lorem ipsum dolor sit amet consectetur adipiscing elit sed do eiusmod tempor"
+		+ " incididunt ut labore et dolore magna aliqua enim ad minim veniam quis nostrud exercitation ullamco laboris nisi"
+		+ " aliquip ex ea commodo consequat duis aute irure in reprehenderit voluptate velit esse cillum eu fugiat nulla"
+		+ " pariatur excepteur sint occaecat cupidatat non proident sunt culpa qui officia deserunt mollit anim id est"
+		+ " laborum àccentàto perché città")
+		.split(" ");
+	private static final String[] LANGUAGES = {"java", "javascript", "json", "xml", "bash"};
+
+	private static final int FILES_PER_DIRECTORY = 64;
+	private static final long FILE_SEED_MULTIPLIER = 0x9E37_79B9_7F4A_7C15L;
+
+
+	private final long seed;
+	private final Map<Construct, Double> ratios = new EnumMap<>(Construct.class);
+
+
+	public CorpusGenerator(final long seed){
+		this.seed = seed;
+
+		ratios.put(Construct.TABLE, 0.05);
+		ratios.put(Construct.DETAILS, 0.02);
+		ratios.put(Construct.CODE, 0.05);
+		ratios.put(Construct.HEADING, 0.1);
+		ratios.put(Construct.FOOTNOTE, 0.1);
+		ratios.put(Construct.ATTRIBUTES, 0.05);
+		ratios.put(Construct.HIGHLIGHT, 0.1);
+		ratios.put(Construct.MATH, 0.1);
+		ratios.put(Construct.LOCAL_LINK, 0.1);
+		ratios.put(Construct.MAILTO, 0.02);
+	}
+
+	/**
+	 * @param construct	The construct.
+	 * @param ratio	The probability, in {@code [0, 1]}, of the construct to appear in a block (or paragraph).
+	 * @return	This instance.
+	 */
+	public CorpusGenerator withRatio(final Construct construct, final double ratio){
+		if(ratio < 0. || ratio > 1.)
+			throw new IllegalArgumentException("Ratio must be between 0 and 1, was " + ratio);
+
+		ratios.put(construct, ratio);
+		return this;
+	}
+
+
+	/**
+	 * Generates a single document.
+	 *
+	 * @param index	The index of the document inside the corpus (determines its content along with the seed).
+	 * @param size	The approximate size of the document, in characters.
+	 * @return	The markdown document.
+	 */
+	public String generateDocument(final int index, final int size){
+		final Random random = new Random(seed ^ (index * FILE_SEED_MULTIPLIER));
+		final StringBuilder sb = new StringBuilder(size + 1024);
+		final StringBuilder footnotes = new StringBuilder();
+
+		sb.append("# ").append(capitalize(sentence(random, 3))).append("\n\n");
+		int block = 0;
+		while(sb.length() + footnotes.length() < size){
+			final double draw = random.nextDouble();
+			double threshold = ratios.get(Construct.TABLE);
+			if(draw < threshold)
+				appendTable(random, sb);
+			else if(draw < (threshold += ratios.get(Construct.DETAILS)))
+				sb.append("<details><summary>").append(capitalize(sentence(random, 2))).append("</summary>")
+					.append(sentence(random, 20)).append("</details>\n\n");
+			else if(draw < (threshold += ratios.get(Construct.CODE)))
+				appendCode(random, sb);
+			else if(draw < threshold + ratios.get(Construct.HEADING))
+				sb.append(random.nextInt(4) == 0? "# ": "## ").append(capitalize(sentence(random, 3))).append("\n\n");
+			else
+				appendParagraph(random, index, block, sb, footnotes);
+			block ++;
+		}
+		return sb.append(footnotes)
+			.toString();
+	}
+
+	/**
+	 * Generates the sidecar properties of a document.
+	 *
+	 * @param index	The index of the document inside the corpus.
+	 * @return	The content of the properties file.
+	 */
+	public String generateProperties(final int index){
+		final Random random = new Random(~seed ^ (index * FILE_SEED_MULTIPLIER));
+		final String title = capitalize(sentence(random, 4));
+		final String description = capitalize(sentence(random, 15));
+		return "title=" + title + "\n"
+			+ "description=" + description + "\n"
+			+ "author=Author " + random.nextInt(100) + "\n"
+			+ "keywords=" + sentence(random, 5).replace(' ', ',') + "\n"
+			+ "social-locale=it_IT\n"
+			+ "social-type=article\n"
+			+ "social-title=" + title + "\n"
+			+ "social-description=" + description + "\n"
+			+ "social-card=summary\n"
+			+ String.format(Locale.ROOT, "published-datetime=2023-%02d-%02dT10:00:00+01:00%n", 1 + random.nextInt(12),
+				1 + random.nextInt(28));
+	}
+
+	/**
+	 * Writes a single document, along with its sidecar properties.
+	 *
+	 * @param file	The markdown file to be written.
+	 * @param size	The approximate size of the document, in characters.
+	 * @throws IOException	If an I/O error occurs.
+	 */
+	public void writeDocument(final Path file, final int size) throws IOException{
+		writeDocument(file, 0, size);
+	}
+
+	/**
+	 * Writes a tree of documents, along with their sidecar properties, in nested directories of at most
+	 * {@value #FILES_PER_DIRECTORY} files each.
+	 *
+	 * @param root	The root directory.
+	 * @param files	The number of documents.
+	 * @param size	The approximate size of each document, in characters.
+	 * @throws IOException	If an I/O error occurs.
+	 */
+	public void writeTree(final Path root, final int files, final int size) throws IOException{
+		for(int index = 0; index < files; index ++){
+			Path directory = root;
+			for(int level = index / FILES_PER_DIRECTORY; level > 0; level /= FILES_PER_DIRECTORY)
+				directory = directory.resolve(String.format(Locale.ROOT, "dir-%02d", level % FILES_PER_DIRECTORY));
+			Files.createDirectories(directory);
+
+			writeDocument(directory.resolve(String.format(Locale.ROOT, "document-%06d.md", index)), index, size);
+		}
+	}
+
+	private void writeDocument(final Path file, final int index, final int size) throws IOException{
+		try(final Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)){
+			writer.write(generateDocument(index, size));
+		}
+		final String filename = file.getFileName().toString();
+		final Path properties = file.resolveSibling(filename.replaceFirst("\\.[^.]+$", ".properties"));
+		Files.writeString(properties, generateProperties(index), StandardCharsets.UTF_8);
+	}
+
+
+	private void appendParagraph(final Random random, final int index, final int block, final StringBuilder sb,
+			final StringBuilder footnotes){
+		final int words = 20 + random.nextInt(60);
+		for(int i = 0; i < words; i ++){
+			if(i > 0)
+				sb.append(' ');
+			sb.append(i == 0? capitalize(word(random)): word(random));
+		}
+		sb.append('.');
+
+		if(random.nextDouble() < ratios.get(Construct.HIGHLIGHT))
+			sb.append(" Some ==").append(sentence(random, 2)).append("== text.");
+		if(random.nextDouble() < ratios.get(Construct.MATH))
+			sb.append(" A formula $x_").append(random.nextInt(10)).append("^2 + \\frac{a}{b}$ inline.");
+		if(random.nextDouble() < ratios.get(Construct.LOCAL_LINK))
+			sb.append(" See [[").append(capitalize(sentence(random, 2))).append("]].");
+		if(random.nextDouble() < ratios.get(Construct.MAILTO))
+			sb.append(" Write to <a href=\"mailto:").append(word(random)).append(random.nextInt(1000))
+				.append("@example.com\">the author</a>.");
+		if(random.nextDouble() < ratios.get(Construct.FOOTNOTE)){
+			final String id = "n" + index + "-" + block;
+			sb.append(" Noted[^").append(id).append("].");
+			footnotes.append("[^").append(id).append("]: ").append(capitalize(sentence(random, 10))).append(".\n\n");
+		}
+		if(random.nextDouble() < ratios.get(Construct.ATTRIBUTES))
+			sb.append(" {#p").append(index).append('-').append(block).append(" .")
+				.append(random.nextBoolean()? "_center": "_small-caps").append('}');
+		sb.append("\n\n");
+	}
+
+	private static void appendTable(final Random random, final StringBuilder sb){
+		final int columns = 2 + random.nextInt(4);
+		final int rows = 1 + random.nextInt(8);
+		for(int row = -2; row < rows; row ++){
+			sb.append('|');
+			for(int column = 0; column < columns; column ++)
+				sb.append(' ').append(row == -1? "---": (row == -2? capitalize(word(random)): word(random))).append(" |");
+			sb.append('\n');
+		}
+		sb.append('\n');
+	}
+
+	private static void appendCode(final Random random, final StringBuilder sb){
+		sb.append("```").append(LANGUAGES[random.nextInt(LANGUAGES.length)]).append('\n');
+		final int lines = 1 + random.nextInt(10);
+		for(int line = 0; line < lines; line ++)
+			sb.append(word(random)).append(" = \"").append(word(random)).append("\";\n");
+		sb.append("```\n\n");
+	}
+
+	private static String sentence(final Random random, final int words){
+		final StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < words; i ++){
+			if(i > 0)
+				sb.append(' ');
+			sb.append(word(random));
+		}
+		return sb.toString();
+	}
+
+	private static String word(final Random random){
+		return WORDS[random.nextInt(WORDS.length)];
+	}
+
+	private static String capitalize(final String text){
+		return Character.toUpperCase(text.charAt(0)) + text.substring(1);
+	}
+
+
+	/**
+	 * Writes a corpus.
+	 * <p>Usage: {@code CorpusGenerator <output> <seed> <files> <size>}, where {@code output} is the markdown file to be
+	 * written if {@code files} is 1, the root directory of the tree otherwise.</p>
+	 *
+	 * @param args	The arguments.
+	 * @throws IOException	If an I/O error occurs.
+	 */
+	public static void main(final String[] args) throws IOException{
+		if(args.length != 4){
+			System.err.println("Usage: CorpusGenerator <output> <seed> <files> <size>");
+			System.exit(1);
+		}
+
+		final Path output = Path.of(args[0]);
+		final CorpusGenerator generator = new CorpusGenerator(Long.parseLong(args[1]));
+		final int files = Integer.parseInt(args[2]);
+		final int size = Integer.parseInt(args[3]);
+		if(files == 1)
+			generator.writeDocument(output, size);
+		else
+			generator.writeTree(output, files, size);
+	}
+
+}
@@ -0,0 +1,173 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import com.vladsch.flexmark.util.ast.Node;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Benchmarks each stage of {@link Service#convert(File, boolean, boolean)} over small, medium and very large inputs
+ * produced by the {@link CorpusGenerator}.
+ * <p>Run with {@code mvn -Pbenchmark compile exec:exec@benchmarks} (the GC profiler reports the allocation rate), or through
+ * {@link #main(String[])}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServiceBenchmark{
+
+	private static final long CORPUS_SEED = 20231019L;
+
+
+	//approximate size of the document, in characters
+	@Param({"1024", "102400", "5242880"})
+	private int size;
+
+	private File file;
+	private String content;
+	private String contentWithoutLocalLinks;
+	private List<String> katexCodes;
+	private String contentWithKaTeXPlaceholders;
+	private String preprocessedContent;
+	private Node document;
+	private String renderedWithKaTeXPlaceholders;
+	private ParsedDocument parsedDocument;
+	private RenderVariant variant;
+
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException{
+		file = File.createTempFile("benchmark", ".md");
+		new CorpusGenerator(CORPUS_SEED)
+			.writeDocument(file.toPath(), size);
+
+		content = Service.readContent(file);
+		contentWithoutLocalLinks = Service.removeLocalLinks(content);
+		katexCodes = Service.extractKaTeXCode(contentWithoutLocalLinks);
+		contentWithKaTeXPlaceholders = Service.replaceKaTeXCodeWithPlaceholders(contentWithoutLocalLinks, katexCodes);
+		preprocessedContent = Service.obfuscateEmails(contentWithKaTeXPlaceholders);
+		document = Service.Pipeline.PARSER.parse(preprocessedContent);
+		renderedWithKaTeXPlaceholders = Service.Pipeline.RENDERER.render(document);
+		parsedDocument = Service.parse(file);
+		variant = RenderVariant.create(false, false);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown(){
+		file.delete();
+		new File(file.getPath().replaceFirst("\\.[^.]+$", ".properties"))
+			.delete();
+	}
+
+
+	@Benchmark
+	public String decode() throws IOException{
+		return Service.readContent(file);
+	}
+
+	@Benchmark
+	public String removeLocalLinks(){
+		return Service.removeLocalLinks(content);
+	}
+
+	@Benchmark
+	public String katexExtraction(){
+		final List<String> codes = Service.extractKaTeXCode(contentWithoutLocalLinks);
+		return Service.replaceKaTeXCodeWithPlaceholders(contentWithoutLocalLinks, codes);
+	}
+
+	@Benchmark
+	public String katexReinsertion(){
+		return Service.reinsertKaTeXCode(renderedWithKaTeXPlaceholders, katexCodes);
+	}
+
+	@Benchmark
+	public String obfuscateEmails(){
+		return Service.obfuscateEmails(contentWithKaTeXPlaceholders);
+	}
+
+	@Benchmark
+	public Node parse(){
+		return Service.Pipeline.PARSER.parse(preprocessedContent);
+	}
+
+	@Benchmark
+	public String render(){
+		return Service.Pipeline.RENDERER.render(document);
+	}
+
+	@Benchmark
+	public String generateTOC() throws IOException{
+		return Service.generateBodyWithTOC(document);
+	}
+
+	@Benchmark
+	public String replacePlaceholders() throws IOException{
+		return Service.replacePlaceholders(parsedDocument, variant);
+	}
+
+	@Benchmark
+	public ByteBuffer[] renderEncoded() throws IOException{
+		return Service.renderEncoded(parsedDocument, variant);
+	}
+
+
+	public static void main(final String[] args) throws RunnerException{
+		final Options options = new OptionsBuilder()
+			.include(ServiceBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.build();
+		new Runner(options)
+			.run();
+	}
+
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * Flight Recorder event emitted for the conversion of a batch of documents.
+ */
+@Name("io.github.mtrevisan.markdowntohtml.BatchConversion")
+@Label("Batch Conversion")
+@Category("MarkDownToHTML")
+@Description("The conversion of a batch of markdown documents")
+@StackTrace(false)
+public class BatchConversionEvent extends Event{
+
+	@Label("Driver")
+	@Description("The component that started the batch")
+	private String driver;
+	@Label("Documents")
+	private int documents;
+	@Label("Failures")
+	private int failures;
+	@Label("Input Size")
+	@DataAmount
+	private long inputSize;
+	@Label("Output Size")
+	@DataAmount
+	private long outputSize;
+
+
+	/**
+	 * Starts timing a batch.
+	 *
+	 * @param driver	The component that started the batch.
+	 * @return	The started event.
+	 */
+	public static BatchConversionEvent start(final String driver){
+		final BatchConversionEvent event = new BatchConversionEvent();
+		event.driver = driver;
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Accounts for a converted document.
+	 *
+	 * @param inputSize	The size of the source, in bytes.
+	 * @param outputSize	The size of the output, in bytes.
+	 * @param succeeded	Whether the conversion succeeded.
+	 */
+	public void addDocument(final long inputSize, final long outputSize, final boolean succeeded){
+		documents ++;
+		if(!succeeded)
+			failures ++;
+		this.inputSize += inputSize;
+		this.outputSize += outputSize;
+	}
+
+	/**
+	 * Stops timing the batch, committing the event if enabled.
+	 */
+	public void complete(){
+		end();
+		if(shouldCommit())
+			commit();
+	}
+
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import com.vladsch.flexmark.ast.FencedCodeBlock;
+import com.vladsch.flexmark.html.HtmlRenderer;
+import com.vladsch.flexmark.html.HtmlRendererOptions;
+import com.vladsch.flexmark.html.HtmlWriter;
+import com.vladsch.flexmark.html.renderer.CoreNodeRenderer;
+import com.vladsch.flexmark.html.renderer.NodeRenderer;
+import com.vladsch.flexmark.html.renderer.NodeRendererContext;
+import com.vladsch.flexmark.html.renderer.NodeRendererFactory;
+import com.vladsch.flexmark.html.renderer.NodeRenderingHandler;
+import com.vladsch.flexmark.util.data.DataHolder;
+import com.vladsch.flexmark.util.data.DataKey;
+import com.vladsch.flexmark.util.data.MutableDataHolder;
+import com.vladsch.flexmark.util.sequence.BasedSequence;
+
+import java.util.Set;
+
+
+/**
+ * Highlights the syntax of the fenced code blocks of a known language while they are rendered, so the pages need no
+ * highlighting script.
+ * <p>The block is rendered as the core renderer does, only its content is the highlighted code; the blocks of an unknown
+ * language, and all the blocks when highlighting is disabled (see {@link RenderVariant#withCodeHighlighting(boolean)}), are
+ * left to the core renderer.</p>
+ */
+final class CodeHighlightExtension implements HtmlRenderer.HtmlRendererExtension{
+
+	/** Whether the code is highlighted in the variant being rendered. */
+	static final DataKey<Boolean> CODE_HIGHLIGHTING = new DataKey<>("CODE_HIGHLIGHTING", false);
+
+
+	static CodeHighlightExtension create(){
+		return new CodeHighlightExtension();
+	}
+
+	private CodeHighlightExtension(){}
+
+
+	@Override
+	public void rendererOptions(final MutableDataHolder options){}
+
+	@Override
+	public void extend(final HtmlRenderer.Builder htmlRendererBuilder, final String rendererType){
+		if(htmlRendererBuilder.isRendererType("HTML"))
+			htmlRendererBuilder.nodeRendererFactory(new FencedCodeBlockRenderer.Factory());
+	}
+
+
+	private static final class FencedCodeBlockRenderer implements NodeRenderer{
+		@Override
+		public Set<NodeRenderingHandler<?>> getNodeRenderingHandlers(){
+			return Set.of(new NodeRenderingHandler<>(FencedCodeBlock.class, this::render));
+		}
+
+		private void render(final FencedCodeBlock node, final NodeRendererContext context, final HtmlWriter html){
+			final HtmlRendererOptions options = context.getHtmlOptions();
+			final BasedSequence info = node.getInfo();
+			final String language = (info.isNotNull() && !info.isBlank()
+				? node.getInfoDelimitedByAny(options.languageDelimiterSet).unescape()
+				: null);
+			if(language == null || !CODE_HIGHLIGHTING.get(context.getDocument()) || !CodeHighlighter.isSupported(language)){
+				context.delegateRender();
+				return;
+			}
+
+			final String highlighted = CodeHighlighter.highlight(language, node.getContentChars().normalizeEOL());
+			html.line();
+			html.srcPosWithTrailingEOL(node.getChars()).withAttr().tag("pre").openPre();
+			html.attr("class", options.languageClassMap.getOrDefault(language, options.languageClassPrefix + language));
+			html.srcPosWithEOL(node.getContentChars()).withAttr(CoreNodeRenderer.CODE_CONTENT).tag("code");
+			html.raw(highlighted);
+			html.tag("/code");
+			html.tag("/pre").closePre();
+			html.lineIf(options.htmlBlockCloseTagEol);
+		}
+
+
+		private static final class Factory implements NodeRendererFactory{
+			@Override
+			public NodeRenderer apply(final DataHolder options){
+				return new FencedCodeBlockRenderer();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,386 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import com.vladsch.flexmark.util.sequence.Escaping;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Highlights the syntax of code, wrapping its tokens (keywords, strings, comments, numbers, ...) into {@code span}s whose
+ * class is given by the kind of token ({@code hl-keyword}, {@code hl-string}, ...).
+ * <p>Each language is tokenized by a single regular expression, alternating the patterns of the kinds of token, compiled on
+ * first use and shared by all the pages.</p>
+ * <p>The highlighted code is cached by language and hash of the code, so a snippet repeated across the pages is
+ * highlighted once; the cache stops growing past a given total size.</p>
+ * <p>This class is thread-safe.</p>
+ */
+final class CodeHighlighter{
+
+	private static final String CLASS_PREFIX = "hl-";
+	private static final String KIND_KEYWORD = "keyword";
+	private static final String KIND_LITERAL = "literal";
+	private static final String KIND_STRING = "string";
+	private static final String KIND_COMMENT = "comment";
+	private static final String KIND_NUMBER = "number";
+	private static final String KIND_META = "meta";
+	private static final String KIND_VARIABLE = "variable";
+	private static final String KIND_TAG = "tag";
+	private static final String KIND_ATTRIBUTE = "attribute";
+
+	private static final String LINE_COMMENT_SLASHES = "//[^\\n]*";
+	private static final String LINE_COMMENT_HASH = "#[^\\n]*";
+	private static final String LINE_COMMENT_DASHES = "--[^\\n]*";
+	private static final String BLOCK_COMMENT_C = "/\\*[\\s\\S]*?(?:\\*/|\\z)";
+	private static final String BLOCK_COMMENT_XML = "<!--[\\s\\S]*?(?:-->|\\z)";
+	private static final String STRING_DOUBLE = "\"(?:[^\"\\\\\\n]|\\\\.)*\"?";
+	private static final String STRING_SINGLE = "'(?:[^'\\\\\\n]|\\\\.)*'?";
+	private static final String STRING_BACKTICK = "`(?:[^`\\\\]|\\\\.)*`?";
+	private static final String STRING_TRIPLE = "\"\"\"[\\s\\S]*?(?:\"\"\"|\\z)|'''[\\s\\S]*?(?:'''|\\z)";
+	private static final String NUMBER = "\\b(?:0[xX][\\da-fA-F_]+|0[bB][01_]+|\\d[\\d_]*(?:\\.\\d[\\d_]*)?(?:[eE][+-]?\\d+)?)"
+		+ "[lLfFdDuU]*\\b";
+	private static final String ANNOTATION = "@[A-Za-z_][\\w.]*";
+	private static final String PREPROCESSOR = "^[ \\t]*#[ \\t]*[a-z]+";
+
+	private static final String C_KEYWORDS = "auto break case char const continue default do double else enum extern float for"
+		+ " goto if inline int long register restrict return short signed sizeof static struct switch typedef union unsigned"
+		+ " void volatile while";
+	private static final Map<String, Language> LANGUAGES = Map.ofEntries(
+		Map.entry("java", new Language()
+			.comment(LINE_COMMENT_SLASHES).comment(BLOCK_COMMENT_C)
+			.string("\"\"\"[\\s\\S]*?(?:\"\"\"|\\z)").string(STRING_DOUBLE).string(STRING_SINGLE)
+			.add(KIND_META, ANNOTATION)
+			.literals("true false null this super")
+			.keywords("abstract assert boolean break byte case catch char class const continue default do double else enum"
+				+ " extends final finally float for goto if implements import instanceof int interface long native new"
+				+ " package private protected public record return sealed short static strictfp switch synchronized throw"
+				+ " throws transient try var void volatile while yield")),
+		Map.entry("kotlin", new Language()
+			.comment(LINE_COMMENT_SLASHES).comment(BLOCK_COMMENT_C)
+			.string("\"\"\"[\\s\\S]*?(?:\"\"\"|\\z)").string(STRING_DOUBLE).string(STRING_SINGLE)
+			.add(KIND_META, ANNOTATION)
+			.literals("true false null this super")
+			.keywords("abstract as break by catch class companion const constructor continue data do else enum external"
+				+ " final finally for fun if import in infix init inline inner interface internal is lateinit object open"
+				+ " operator out override package private protected public reified return sealed suspend throw try typealias"
+				+ " val var vararg when where while")),
+		Map.entry("javascript", new Language()
+			.comment(LINE_COMMENT_SLASHES).comment(BLOCK_COMMENT_C)
+			.string(STRING_BACKTICK).string(STRING_DOUBLE).string(STRING_SINGLE)
+			.literals("true false null undefined this super NaN Infinity")
+			.keywords("async await break case catch class const continue debugger default delete do else export extends"
+				+ " finally for from function if import in instanceof let new of return static switch throw try typeof var"
+				+ " void while with yield")),
+		Map.entry("typescript", new Language()
+			.comment(LINE_COMMENT_SLASHES).comment(BLOCK_COMMENT_C)
+			.string(STRING_BACKTICK).string(STRING_DOUBLE).string(STRING_SINGLE)
+			.add(KIND_META, ANNOTATION)
+			.literals("true false null undefined this super NaN Infinity")
+			.keywords("abstract any as async await boolean break case catch class const constructor continue debugger"
+				+ " declare default delete do else enum export extends finally for from function if implements import in"
+				+ " infer instanceof interface keyof let module namespace never new number object of private protected"
+				+ " public readonly return static string switch symbol throw try type typeof unknown var void while"
+				+ " with yield")),
+		Map.entry("python", new Language()
+			.comment(LINE_COMMENT_HASH)
+			.string(STRING_TRIPLE).string(STRING_DOUBLE).string(STRING_SINGLE)
+			.add(KIND_META, ANNOTATION)
+			.literals("True False None self")
+			.keywords("and as assert async await break class continue def del elif else except finally for from global if"
+				+ " import in is lambda match nonlocal not or pass raise return try while with yield")),
+		Map.entry("c", new Language()
+			.comment(LINE_COMMENT_SLASHES).comment(BLOCK_COMMENT_C)
+			.string(STRING_DOUBLE).string(STRING_SINGLE)
+			.add(KIND_META, PREPROCESSOR)
+			.literals("NULL true false")
+			.keywords(C_KEYWORDS + " bool")),
+		Map.entry("cpp", new Language()
+			.comment(LINE_COMMENT_SLASHES).comment(BLOCK_COMMENT_C)
+			.string(STRING_DOUBLE).string(STRING_SINGLE)
+			.add(KIND_META, PREPROCESSOR)
+			.literals("nullptr NULL true false this")
+			.keywords(C_KEYWORDS + " bool catch class concept constexpr consteval const_cast co_await co_return"
+				+ " co_yield decltype delete dynamic_cast explicit friend mutable namespace new noexcept operator override"
+				+ " private protected public reinterpret_cast requires static_assert static_cast template throw try"
+				+ " typename using virtual")),
+		Map.entry("csharp", new Language()
+			.comment(LINE_COMMENT_SLASHES).comment(BLOCK_COMMENT_C)
+			.string("@\"(?:[^\"]|\"\")*\"?").string(STRING_DOUBLE).string(STRING_SINGLE)
+			.add(KIND_META, PREPROCESSOR)
+			.literals("true false null this base")
+			.keywords("abstract as async await bool break byte case catch char checked class const continue decimal default"
+				+ " delegate do double else enum event explicit extern finally fixed float for foreach goto if implicit in"
+				+ " int interface internal is lock long namespace new object operator out override params private"
+				+ " protected public readonly record ref return sbyte sealed short sizeof stackalloc static string struct"
+				+ " switch throw try typeof uint ulong unchecked unsafe ushort using var virtual void volatile while")),
+		Map.entry("go", new Language()
+			.comment(LINE_COMMENT_SLASHES).comment(BLOCK_COMMENT_C)
+			.string(STRING_BACKTICK).string(STRING_DOUBLE).string(STRING_SINGLE)
+			.literals("true false nil iota")
+			.keywords("break case chan const continue default defer else fallthrough for func go goto if import interface"
+				+ " map package range return select struct switch type var")),
+		Map.entry("rust", new Language()
+			.comment(LINE_COMMENT_SLASHES).comment(BLOCK_COMMENT_C)
+			.string(STRING_DOUBLE)
+			.add(KIND_META, "#!?\\[[^\\]\\n]*\\]")
+			.literals("true false self Self None Some Ok Err")
+			.keywords("as async await break const continue crate dyn else enum extern fn for if impl in let loop match mod"
+				+ " move mut pub ref return static struct super trait type unsafe use where while")),
+		Map.entry("sql", new Language()
+			.caseInsensitive()
+			.comment(LINE_COMMENT_DASHES).comment(BLOCK_COMMENT_C)
+			.string(STRING_SINGLE).string(STRING_DOUBLE)
+			.literals("null true false")
+			.keywords("add all alter and as asc begin between by case check column commit constraint create cross default"
+				+ " delete desc distinct drop else end exists foreign from full group having in index inner insert"
+				+ " into is join key left like limit not offset on or order outer primary references right rollback select"
+				+ " set table then union unique update values view when where with")),
+		Map.entry("bash", new Language()
+			.comment("(?<![\\w$])#[^\\n]*")
+			.string(STRING_DOUBLE).string("'[^']*'?")
+			.add(KIND_VARIABLE, "\\$(?:\\{[^}\\n]*}|[A-Za-z_]\\w*|[0-9#?@*$!-])")
+			.keywords("case do done elif else esac export fi for function if in local readonly return select shift then"
+				+ " until while")),
+		Map.entry("json", new Language()
+			.add(KIND_ATTRIBUTE, "\"(?:[^\"\\\\\\n]|\\\\.)*\"(?=\\s*:)")
+			.string(STRING_DOUBLE)
+			.literals("true false null")
+			.add(KIND_NUMBER, NUMBER)),
+		Map.entry("css", new Language()
+			.comment(BLOCK_COMMENT_C)
+			.string(STRING_DOUBLE).string(STRING_SINGLE)
+			.add(KIND_KEYWORD, "@[\\w-]+|!important")
+			.add(KIND_ATTRIBUTE, "[\\w-]+(?=\\s*:[^{}]*[;}])")
+			.add(KIND_NUMBER, "#[\\da-fA-F]{3,8}\\b|(?<![\\w-])-?(?:\\d+\\.?\\d*|\\.\\d+)(?:%|[a-zA-Z]+)?")),
+		Map.entry("xml", new Language()
+			.comment(BLOCK_COMMENT_XML)
+			.add(KIND_META, "<![^>]*>|<\\?[\\s\\S]*?(?:\\?>|\\z)")
+			.add(KIND_TAG, "</?[A-Za-z][\\w:.-]*|/?>")
+			.add(KIND_ATTRIBUTE, "[A-Za-z_:][\\w:.-]*(?=\\s*=)")
+			.string(STRING_DOUBLE).string(STRING_SINGLE))
+	);
+	private static final Map<String, String> ALIASES = Map.ofEntries(
+		Map.entry("js", "javascript"),
+		Map.entry("mjs", "javascript"),
+		Map.entry("jsx", "javascript"),
+		Map.entry("ts", "typescript"),
+		Map.entry("tsx", "typescript"),
+		Map.entry("py", "python"),
+		Map.entry("kt", "kotlin"),
+		Map.entry("h", "c"),
+		Map.entry("c++", "cpp"),
+		Map.entry("cc", "cpp"),
+		Map.entry("hpp", "cpp"),
+		Map.entry("cs", "csharp"),
+		Map.entry("c#", "csharp"),
+		Map.entry("golang", "go"),
+		Map.entry("rs", "rust"),
+		Map.entry("sh", "bash"),
+		Map.entry("shell", "bash"),
+		Map.entry("zsh", "bash"),
+		Map.entry("html", "xml"),
+		Map.entry("xhtml", "xml"),
+		Map.entry("svg", "xml")
+	);
+
+	//the highlighted code stops being cached past this total size, in characters
+	private static final long MAX_CACHED_SIZE = 16L << 20;
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+	private static final Base64.Encoder DIGEST_ENCODER = Base64.getEncoder()
+		.withoutPadding();
+
+	private static final ConcurrentHashMap<String, Lexer> LEXERS = new ConcurrentHashMap<>();
+	//highlighted code, keyed by language and hash of the code
+	private static final ConcurrentHashMap<String, String> HIGHLIGHTED = new ConcurrentHashMap<>();
+	private static final AtomicLong CACHED_SIZE = new AtomicLong();
+
+
+	private CodeHighlighter(){}
+
+
+	/**
+	 * Tells whether a language can be highlighted.
+	 *
+	 * @param language	The language (as given in the info string of a fenced code block).
+	 * @return	Whether the language is known.
+	 */
+	static boolean isSupported(final String language){
+		return LANGUAGES.containsKey(canonicalLanguage(language));
+	}
+
+	/**
+	 * Highlights the syntax of a piece of code.
+	 *
+	 * @param language	The language (as given in the info string of a fenced code block).
+	 * @param code	The code.
+	 * @return	The highlighted code, escaped, {@code null} if the language is not known.
+	 */
+	static String highlight(final String language, final String code){
+		final String canonicalLanguage = canonicalLanguage(language);
+		final Language definition = LANGUAGES.get(canonicalLanguage);
+		if(definition == null)
+			return null;
+
+		final String key = canonicalLanguage + ':' + digest(code);
+		String highlighted = HIGHLIGHTED.get(key);
+		if(highlighted == null){
+			highlighted = LEXERS.computeIfAbsent(canonicalLanguage, name -> definition.compile())
+				.highlight(code);
+			if(CACHED_SIZE.get() < MAX_CACHED_SIZE && HIGHLIGHTED.putIfAbsent(key, highlighted) == null)
+				CACHED_SIZE.addAndGet(key.length() + highlighted.length());
+		}
+		return highlighted;
+	}
+
+	private static String canonicalLanguage(final String language){
+		final String name = language.toLowerCase(Locale.ROOT);
+		return ALIASES.getOrDefault(name, name);
+	}
+
+	private static String digest(final String code){
+		try{
+			final MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+			return DIGEST_ENCODER.encodeToString(digest.digest(code.getBytes(StandardCharsets.UTF_8)));
+		}
+		catch(final NoSuchAlgorithmException nsae){
+			//every Java platform is required to support SHA-256
+			throw new IllegalStateException(nsae);
+		}
+	}
+
+
+	/**
+	 * The patterns of the kinds of token of a language, in order of precedence.
+	 * <p>The patterns must not have capturing groups, each one is wrapped into the group telling the kind of token.</p>
+	 */
+	static final class Language{
+		private final List<String> kinds = new ArrayList<>();
+		private final List<String> patterns = new ArrayList<>();
+		private int flags = Pattern.MULTILINE;
+
+
+		private Language caseInsensitive(){
+			flags |= Pattern.CASE_INSENSITIVE;
+			return this;
+		}
+
+		private Language comment(final String pattern){
+			return add(KIND_COMMENT, pattern);
+		}
+
+		private Language string(final String pattern){
+			return add(KIND_STRING, pattern);
+		}
+
+		private Language literals(final String words){
+			return add(KIND_LITERAL, wordsPattern(words));
+		}
+
+		private Language keywords(final String words){
+			add(KIND_KEYWORD, wordsPattern(words));
+			//numbers come last, not to match inside identifiers
+			return add(KIND_NUMBER, NUMBER);
+		}
+
+		private static String wordsPattern(final String words){
+			return "(?<![\\w$])(?:" + String.join("|", words.split(" ")) + ")(?![\\w$])";
+		}
+
+		Language add(final String kind, final String pattern){
+			kinds.add(kind);
+			patterns.add(pattern);
+			return this;
+		}
+
+		Lexer compile(){
+			final StringBuilder sb = new StringBuilder();
+			for(final String pattern : patterns){
+				if(!sb.isEmpty())
+					sb.append('|');
+				sb.append('(')
+					.append(pattern)
+					.append(')');
+			}
+			final String[] classes = new String[kinds.size()];
+			for(int i = 0; i < classes.length; i ++)
+				classes[i] = "<span class=\"" + CLASS_PREFIX + kinds.get(i) + "\">";
+			final Pattern pattern = Pattern.compile(sb.toString(), flags);
+			if(pattern.matcher("").groupCount() != classes.length)
+				throw new IllegalStateException("A pattern of a token has capturing groups: " + pattern);
+
+			return new Lexer(pattern, classes);
+		}
+	}
+
+	static final class Lexer{
+		private final Pattern pattern;
+		//the opening tag of each group
+		private final String[] openings;
+
+
+		private Lexer(final Pattern pattern, final String[] openings){
+			this.pattern = pattern;
+			this.openings = openings;
+		}
+
+		private String highlight(final String code){
+			final StringBuilder sb = new StringBuilder(code.length() + (code.length() >> 1));
+			final Matcher matcher = pattern.matcher(code);
+			int last = 0;
+			while(matcher.find()){
+				if(matcher.end() == matcher.start())
+					continue;
+
+				int group = 1;
+				while(matcher.start(group) < 0)
+					group ++;
+				sb.append(escape(code.substring(last, matcher.start())))
+					.append(openings[group - 1])
+					.append(escape(matcher.group()))
+					.append("</span>");
+				last = matcher.end();
+			}
+			return sb.append(escape(code.substring(last)))
+				.toString();
+		}
+
+		private static String escape(final String text){
+			return Escaping.escapeHtml(text, false);
+		}
+	}
+
+}
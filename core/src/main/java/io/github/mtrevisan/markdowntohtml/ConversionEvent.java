@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * Flight Recorder event emitted for the whole conversion of a document, from the reading of the source to the writing of
+ * the output.
+ */
+@Name("io.github.mtrevisan.markdowntohtml.Conversion")
+@Label("Conversion")
+@Category("MarkDownToHTML")
+@Description("The conversion of a markdown document")
+@StackTrace(false)
+public class ConversionEvent extends Event{
+
+	@Label("Path")
+	private String path;
+	@Label("Input Size")
+	@DataAmount
+	private long inputSize;
+	@Label("Output Size")
+	@DataAmount
+	private long outputSize;
+	@Label("Succeeded")
+	private boolean succeeded;
+
+
+	/**
+	 * Starts timing a conversion.
+	 *
+	 * @param path	The path of the document.
+	 * @param inputSize	The size of the source, in bytes.
+	 * @return	The started event.
+	 */
+	public static ConversionEvent start(final String path, final long inputSize){
+		final ConversionEvent event = new ConversionEvent();
+		event.path = path;
+		event.inputSize = inputSize;
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Stops timing the conversion, committing the event if enabled.
+	 *
+	 * @param outputSize	The size of the output, in bytes.
+	 * @param succeeded	Whether the conversion succeeded.
+	 */
+	public void complete(final long outputSize, final boolean succeeded){
+		end();
+		if(shouldCommit()){
+			this.outputSize = outputSize;
+			this.succeeded = succeeded;
+			commit();
+		}
+	}
+
+}
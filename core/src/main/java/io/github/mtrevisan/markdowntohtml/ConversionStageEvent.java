@@ -0,0 +1,104 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+
+/**
+ * Flight Recorder event emitted for each stage of the conversion of a document.
+ * <p>Sizes are in bytes for the stages reading or writing files, in characters otherwise.</p>
+ */
+@Name("io.github.mtrevisan.markdowntohtml.ConversionStage")
+@Label("Conversion Stage")
+@Category({"MarkDownToHTML", "Conversion"})
+@Description("A stage of the conversion of a markdown document")
+@StackTrace(false)
+public class ConversionStageEvent extends Event{
+
+	public static final String CACHE_LOOKUP = "cache lookup";
+	public static final String DECODE = "decode";
+	public static final String REMOVE_LOCAL_LINKS = "remove local links";
+	public static final String RESOLVE_LOCAL_LINKS = "resolve local links";
+	public static final String EXTRACT_KATEX = "extract KaTeX";
+	public static final String OBFUSCATE_EMAILS = "obfuscate emails";
+	public static final String PARSE = "parse";
+	public static final String ANALYZE = "analyze";
+	public static final String LOAD_PROPERTIES = "load properties";
+	public static final String RENDER = "render";
+	public static final String GENERATE_TOC = "generate TOC";
+	public static final String REPLACE_PLACEHOLDERS = "replace placeholders";
+	public static final String WRITE = "write";
+	public static final String COMPRESS = "compress";
+
+
+	@Label("Path")
+	private String path;
+	@Label("Stage")
+	private String stage;
+	@Label("Input Size")
+	@Description("Size of the input of the stage")
+	private long inputSize;
+	@Label("Output Size")
+	@Description("Size of the output of the stage")
+	private long outputSize;
+
+
+	/**
+	 * Starts timing a stage.
+	 *
+	 * @param path	The path of the document.
+	 * @param stage	The stage.
+	 * @return	The started event.
+	 */
+	static ConversionStageEvent start(final String path, final String stage){
+		final ConversionStageEvent event = new ConversionStageEvent();
+		event.path = path;
+		event.stage = stage;
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Stops timing the stage, committing the event if enabled.
+	 *
+	 * @param inputSize	The size of the input of the stage.
+	 * @param outputSize	The size of the output of the stage.
+	 */
+	void complete(final long inputSize, final long outputSize){
+		end();
+		if(shouldCommit()){
+			this.inputSize = inputSize;
+			this.outputSize = outputSize;
+			commit();
+		}
+	}
+
+}
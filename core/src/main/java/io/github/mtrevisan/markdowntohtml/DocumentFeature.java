@@ -0,0 +1,46 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+
+/**
+ * The constructs of a document that require dedicated scripts or styles in the rendered page.
+ */
+public enum DocumentFeature{
+
+	/** KaTeX formulas, require the KaTeX stylesheet and scripts. */
+	MATH,
+	/** Obfuscated {@code mailto:} links, require the decoding script. */
+	MAIL_LINKS,
+	/** {@code <details>} elements, require the script that opens them when printing. */
+	DETAILS,
+	/** Elements calling {@code toggleImageDisplay} or {@code toggleNSFWDisplay}, require the toggling script. */
+	IMAGE_TOGGLES,
+	/** Footnote references. */
+	FOOTNOTES,
+	/** Tables. */
+	TABLES
+
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import com.vladsch.flexmark.ast.HardLineBreak;
+import com.vladsch.flexmark.ast.Heading;
+import com.vladsch.flexmark.ast.HtmlInlineBase;
+import com.vladsch.flexmark.ast.Image;
+import com.vladsch.flexmark.ast.Paragraph;
+import com.vladsch.flexmark.ast.RefNode;
+import com.vladsch.flexmark.ast.SoftLineBreak;
+import com.vladsch.flexmark.ast.Text;
+import com.vladsch.flexmark.ext.typographic.TypographicQuotes;
+import com.vladsch.flexmark.ext.typographic.TypographicSmarts;
+import com.vladsch.flexmark.util.ast.Document;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.sequence.BasedSequence;
+import com.vladsch.flexmark.util.sequence.Escaping;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+
+
+/**
+ * The metadata of a page derived from its content while it is analyzed (in the same traversal that collects its features
+ * and statistics): the title, a description, the reading time and the type and size of the social image.
+ * <p>The derived values are used only where the properties of the page do not give them.</p>
+ * <p>The social image has to be an absolute URL: the first image of the page is used only if its URL is absolute, or if
+ * the properties give the URL of the page ({@code site-base}, e.g. {@code https://example.com/posts/}) to resolve it
+ * against.</p>
+ */
+final class DocumentMetadata{
+
+	static final String PROPERTY_TITLE = "title";
+	static final String PROPERTY_DESCRIPTION = "description";
+	static final String PROPERTY_SOCIAL_TITLE = "social-title";
+	static final String PROPERTY_SOCIAL_DESCRIPTION = "social-description";
+	static final String PROPERTY_SOCIAL_READING_TIME = "social-reading-time";
+	static final String PROPERTY_SOCIAL_IMAGE = "social-image";
+	static final String PROPERTY_SOCIAL_IMAGE_MIMETYPE = "social-image-mimetype";
+	static final String PROPERTY_SOCIAL_IMAGE_WIDTH = "social-image-width";
+	static final String PROPERTY_SOCIAL_IMAGE_HEIGHT = "social-image-height";
+	static final String PROPERTY_SITE_BASE = "site-base";
+
+	private static final int WORDS_PER_MINUTE = 200;
+	//longest description shown by the search engines
+	private static final int DESCRIPTION_LENGTH = 160;
+	private static final String ELLIPSIS = "…";
+
+
+	private final List<String> katexCodes;
+
+	private Heading titleHeading;
+	private String description;
+	private String imageUrl;
+	private int words;
+
+
+	/**
+	 * @param katexCodes	The KaTeX formulas replaced by placeholders in the document.
+	 * @return	The metadata, to be filled with the nodes of the document.
+	 */
+	static DocumentMetadata create(final List<String> katexCodes){
+		return new DocumentMetadata(katexCodes);
+	}
+
+	private DocumentMetadata(final List<String> katexCodes){
+		this.katexCodes = katexCodes;
+	}
+
+
+	/**
+	 * Accounts for a node of the document, the nodes being given in document order.
+	 *
+	 * @param node	The node.
+	 */
+	void add(final Node node){
+		if(node instanceof Text)
+			words += countWords(node.getChars());
+		//the first heading of the highest level
+		else if(node instanceof Heading heading){
+			if(titleHeading == null || heading.getLevel() < titleHeading.getLevel())
+				titleHeading = heading;
+		}
+		//the first top-level paragraph with some text
+		else if(node instanceof Paragraph && description == null && node.getParent() instanceof Document){
+			final String text = collectText(node, katexCodes);
+			if(!text.isEmpty())
+				description = text;
+		}
+		else if(node instanceof Image image && imageUrl == null)
+			imageUrl = image.getUrl().unescape();
+	}
+
+	private static int countWords(final BasedSequence text){
+		int count = 0;
+		boolean inWord = false;
+		for(int i = 0, length = text.length(); i < length; i ++){
+			final boolean wordCharacter = !Character.isWhitespace(text.charAt(i));
+			if(wordCharacter && !inWord)
+				count ++;
+			inWord = wordCharacter;
+		}
+		return count;
+	}
+
+	/**
+	 * Collects the text of a node, as it is rendered (typographic quotes and symbols, and formulas, included; images and
+	 * inline HTML excluded).
+	 *
+	 * @param node	The node.
+	 * @param katexCodes	The KaTeX formulas replaced by placeholders in the document.
+	 * @return	The text, with the whitespace collapsed.
+	 */
+	static String collectText(final Node node, final List<String> katexCodes){
+		final StringBuilder sb = new StringBuilder();
+		appendText(node, sb);
+		return Service.reinsertKaTeXCode(sb.toString(), katexCodes)
+			.replaceAll("\\s+", " ")
+			.trim();
+	}
+
+	private static void appendText(final Node node, final StringBuilder sb){
+		for(Node child = node.getFirstChild(); child != null; child = child.getNext()){
+			if(child instanceof Text)
+				sb.append(child.getChars().unescape());
+			//a reference without definition is rendered as it is written (e.g. the placeholder of a formula)
+			else if(child instanceof RefNode reference && !reference.isDefined())
+				sb.append(reference.getChars());
+			//the typographic symbols are given as entities
+			else if(child instanceof TypographicQuotes quotes){
+				sb.append(Escaping.unescapeHtml(quotes.getTypographicOpening()));
+				appendText(child, sb);
+				sb.append(Escaping.unescapeHtml(quotes.getTypographicClosing()));
+			}
+			else if(child instanceof TypographicSmarts smarts)
+				sb.append(Escaping.unescapeHtml(smarts.getTypographicText()));
+			else if(child instanceof SoftLineBreak || child instanceof HardLineBreak)
+				sb.append(' ');
+			else if(!(child instanceof Image || child instanceof HtmlInlineBase))
+				appendText(child, sb);
+		}
+	}
+
+	/**
+	 * Completes the properties of the page with the derived metadata.
+	 *
+	 * @param properties	The properties of the page.
+	 * @param directory	The directory of the markdown file, its images are resolved against; {@code null} if the content does
+	 * 	not come from a file.
+	 * @return	The properties, falling back to the derived metadata for the keys they do not give.
+	 */
+	Properties complete(final Properties properties, final Path directory){
+		final Properties derived = new Properties();
+		final String title = properties.getProperty(PROPERTY_TITLE, (titleHeading != null
+			? escape(collectText(titleHeading, katexCodes))
+			: null));
+		setIfPresent(derived, PROPERTY_TITLE, title);
+		setIfPresent(derived, PROPERTY_SOCIAL_TITLE, title);
+
+		final String pageDescription = properties.getProperty(PROPERTY_DESCRIPTION, (description != null
+			? escape(truncate(description))
+			: null));
+		setIfPresent(derived, PROPERTY_DESCRIPTION, pageDescription);
+		setIfPresent(derived, PROPERTY_SOCIAL_DESCRIPTION, pageDescription);
+
+		if(words > 0)
+			derived.setProperty(PROPERTY_SOCIAL_READING_TIME,
+				((words + WORDS_PER_MINUTE - 1) / WORDS_PER_MINUTE) + " min");
+
+		final String siteBase = properties.getProperty(PROPERTY_SITE_BASE);
+		final String image = properties.getProperty(PROPERTY_SOCIAL_IMAGE);
+		//the URL of the image relative to the page, if it is a local one
+		String localImage = image;
+		if(image == null && imageUrl != null){
+			final String url = Escaping.percentEncodeUrl(imageUrl);
+			final String absoluteUrl = resolveAbsolute(siteBase, url);
+			if(absoluteUrl != null){
+				derived.setProperty(PROPERTY_SOCIAL_IMAGE, absoluteUrl);
+				localImage = url;
+			}
+		}
+		else if(image != null && siteBase != null && image.startsWith(siteBase))
+			localImage = image.substring(siteBase.length());
+		final ImageDimensions dimensions = ImageExtension.readDimensions(ImageExtension.resolveLocalImage(directory,
+			localImage));
+		if(dimensions != null){
+			derived.setProperty(PROPERTY_SOCIAL_IMAGE_MIMETYPE, dimensions.getMimeType());
+			derived.setProperty(PROPERTY_SOCIAL_IMAGE_WIDTH, Integer.toString(dimensions.getWidth()));
+			derived.setProperty(PROPERTY_SOCIAL_IMAGE_HEIGHT, Integer.toString(dimensions.getHeight()));
+		}
+
+		if(derived.isEmpty())
+			return properties;
+
+		final Properties completed = new Properties(derived);
+		completed.putAll(properties);
+		return completed;
+	}
+
+	private static void setIfPresent(final Properties properties, final String key, final String value){
+		if(value != null)
+			properties.setProperty(key, value);
+	}
+
+	/**
+	 * @param siteBase	The URL of the page, {@code null} if not known.
+	 * @param url	The (encoded) URL.
+	 * @return	The URL resolved against the one of the page, escaped; {@code null} if it cannot be made absolute.
+	 */
+	private static String resolveAbsolute(final String siteBase, final String url){
+		try{
+			URI uri = new URI(url);
+			if(siteBase != null)
+				uri = new URI(siteBase).resolve(uri);
+			return (uri.isAbsolute()? escape(uri.toString()): null);
+		}
+		catch(final URISyntaxException ignored){
+			return null;
+		}
+	}
+
+	private static String truncate(final String text){
+		if(text.length() <= DESCRIPTION_LENGTH)
+			return text;
+
+		//cut at the last word that fits
+		final int space = text.lastIndexOf(' ', DESCRIPTION_LENGTH - ELLIPSIS.length());
+		return text.substring(0, (space > 0? space: DESCRIPTION_LENGTH - ELLIPSIS.length())) + ELLIPSIS;
+	}
+
+	//the values are replaced into attributes of the template
+	private static String escape(final String text){
+		return Escaping.escapeHtml(text, false);
+	}
+
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import com.vladsch.flexmark.ast.Heading;
+import com.vladsch.flexmark.ext.attributes.AttributesNode;
+import com.vladsch.flexmark.ext.footnotes.Footnote;
+import com.vladsch.flexmark.ext.footnotes.FootnoteBlock;
+import com.vladsch.flexmark.ext.tables.TableBlock;
+import com.vladsch.flexmark.ext.tables.TableCell;
+import com.vladsch.flexmark.ext.tables.TableSeparator;
+import com.vladsch.flexmark.util.ast.Node;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+
+/**
+ * Structural statistics of a document, gathered while looking for its {@link DocumentFeature features}, to correlate the
+ * structure of the documents with their conversion time.
+ * <p>The output size and the conversion time are known only to the caller, that sets them once the document is written.</p>
+ */
+public final class DocumentStatistics{
+
+	private final String path;
+	private final long inputSize;
+	private final int katexFormulas;
+
+	private final Map<Class<?>, int[]> nodeCounts = new HashMap<>();
+	private int nodes;
+	private int headings;
+	private int maxHeadingLevel;
+	private int tables;
+	private int tableCells;
+	private int footnoteReferences;
+	private final Set<String> referencedFootnotes = new HashSet<>();
+	private final Set<String> definedFootnotes = new HashSet<>();
+	private int attributeGroups;
+
+	private long outputSize;
+	private long conversionNanos;
+
+
+	DocumentStatistics(final String path, final long inputSize, final int katexFormulas){
+		this.path = path;
+		this.inputSize = inputSize;
+		this.katexFormulas = katexFormulas;
+	}
+
+	/**
+	 * Accounts for a node of the document.
+	 *
+	 * @param node	The node.
+	 */
+	void add(final Node node){
+		nodeCounts.computeIfAbsent(node.getClass(), type -> new int[1])[0] ++;
+		nodes ++;
+
+		if(node instanceof Heading heading){
+			headings ++;
+			maxHeadingLevel = Math.max(maxHeadingLevel, heading.getLevel());
+		}
+		else if(node instanceof TableBlock)
+			tables ++;
+		//the cells of the separator row (`|---|`) are not rendered
+		else if(node instanceof TableCell && !(node.getGrandParent() instanceof TableSeparator))
+			tableCells ++;
+		else if(node instanceof Footnote footnote){
+			footnoteReferences ++;
+			referencedFootnotes.add(footnote.getText().toString());
+		}
+		else if(node instanceof FootnoteBlock footnoteBlock)
+			definedFootnotes.add(footnoteBlock.getText().toString());
+		else if(node instanceof AttributesNode)
+			attributeGroups ++;
+	}
+
+
+	public String getPath(){
+		return path;
+	}
+
+	/**
+	 * @return	The size of the source, in bytes.
+	 */
+	public long getInputSize(){
+		return inputSize;
+	}
+
+	public int getKatexFormulas(){
+		return katexFormulas;
+	}
+
+	/**
+	 * @return	The number of nodes for each node type, sorted by name of the type.
+	 */
+	public Map<String, Integer> getNodeCounts(){
+		final Map<String, Integer> counts = new TreeMap<>();
+		for(final Map.Entry<Class<?>, int[]> entry : nodeCounts.entrySet())
+			counts.merge(entry.getKey().getSimpleName(), entry.getValue()[0], Integer::sum);
+		return Collections.unmodifiableMap(counts);
+	}
+
+	public int getNodes(){
+		return nodes;
+	}
+
+	public int getHeadings(){
+		return headings;
+	}
+
+	/**
+	 * @return	The level of the deepest heading, {@code 0} if there are no headings.
+	 */
+	public int getMaxHeadingLevel(){
+		return maxHeadingLevel;
+	}
+
+	public int getTables(){
+		return tables;
+	}
+
+	public int getTableCells(){
+		return tableCells;
+	}
+
+	public int getFootnoteDefinitions(){
+		return definedFootnotes.size();
+	}
+
+	public int getFootnoteReferences(){
+		return footnoteReferences;
+	}
+
+	/**
+	 * @return	The number of footnotes defined but never referenced.
+	 */
+	public int getUnreferencedFootnotes(){
+		int unreferenced = 0;
+		for(final String footnote : definedFootnotes)
+			if(!referencedFootnotes.contains(footnote))
+				unreferenced ++;
+		return unreferenced;
+	}
+
+	/**
+	 * @return	The number of attribute groups (<code>{...}</code>), if the attributes extension is in use.
+	 */
+	public int getAttributeGroups(){
+		return attributeGroups;
+	}
+
+	/**
+	 * @return	The size of the output, in bytes.
+	 */
+	public long getOutputSize(){
+		return outputSize;
+	}
+
+	public void setOutputSize(final long outputSize){
+		this.outputSize = outputSize;
+	}
+
+	/**
+	 * @return	The time spent converting the document, from reading to writing, in nanoseconds.
+	 */
+	public long getConversionNanos(){
+		return conversionNanos;
+	}
+
+	public void setConversionNanos(final long conversionNanos){
+		this.conversionNanos = conversionNanos;
+	}
+
+}
@@ -0,0 +1,281 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Removes from a stylesheet the embedded fonts that are not used by the text of a given page.
+ * <p>The text of the whole page (template and body) is traced through the elements that change the font (italic, bold,
+ * monospace) to find out which faces actually draw at least one glyph; the {@code @font-face} blocks of the other faces are
+ * dropped.</p>
+ * <p>The subset stylesheets are cached by stylesheet and set of used faces, so pages using the same faces share the same
+ * result; the caches hold the most recently used stylesheets and subsets only.</p>
+ */
+final class FontFaceSubsetter{
+
+	private static final Pattern FONT_FACE_PATTERN = Pattern.compile("@font-face\\s*\\{[^}]*}\\s*");
+	private static final Pattern FONT_FAMILY_PATTERN = Pattern.compile("font-family\\s*:\\s*([^;}]+)");
+	private static final Pattern FONT_STYLE_PATTERN = Pattern.compile("font-style\\s*:\\s*([^;}]+)");
+	private static final Pattern FONT_WEIGHT_PATTERN = Pattern.compile("font-weight\\s*:\\s*([^;}]+)");
+
+	private static final String FAMILY_TEXT = "lato";
+	private static final String FAMILY_MONOSPACE = "roboto mono";
+	private static final String STYLE_NORMAL = "normal";
+	private static final String STYLE_ITALIC = "italic";
+	private static final String WEIGHT_REGULAR = "400";
+	private static final String WEIGHT_BOLD = "600";
+
+	private static final Set<String> ITALIC_TAGS = Set.of("em", "i", "dfn", "cite", "var", "address");
+	private static final Set<String> BOLD_TAGS = Set.of("strong", "b", "h1", "h2", "h3", "h4", "h5", "h6", "th", "dt");
+	private static final Set<String> MONOSPACE_TAGS = Set.of("code", "pre", "samp");
+	private static final Set<String> SKIPPED_TAGS = Set.of("script", "style");
+	private static final String ITALIC_LINK_CLASS = "italic-link";
+
+	//the stylesheets in use at once are few (base and layers), the least recently used are evicted
+	private static final int MAX_STYLESHEETS = 16;
+	private static final Map<String, List<FontFace>> FONT_FACES = new LinkedHashMap<>(MAX_STYLESHEETS, 0.75f, true){
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, List<FontFace>> eldest){
+			return (size() > MAX_STYLESHEETS);
+		}
+	};
+	//subset stylesheets, keyed by stylesheet and set of used faces; each is as large as the stylesheet, so only a few are kept
+	private static final int MAX_SUBSETS = 32;
+	private static final Map<List<Object>, String> SUBSETS = new LinkedHashMap<>(MAX_SUBSETS, 0.75f, true){
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<List<Object>, String> eldest){
+			return (size() > MAX_SUBSETS);
+		}
+	};
+
+
+	private FontFaceSubsetter(){}
+
+
+	/**
+	 * Removes the embedded fonts that are not used by the given page.
+	 *
+	 * @param stylesheet	The stylesheet.
+	 * @param page	The HTML of the page, template included.
+	 * @return	The stylesheet with only the used fonts.
+	 */
+	static String subset(final String stylesheet, final String page){
+		List<FontFace> fontFaces;
+		synchronized(FONT_FACES){
+			fontFaces = FONT_FACES.get(stylesheet);
+		}
+		if(fontFaces == null){
+			//parsed outside the lock, so the pages using other stylesheets do not wait
+			fontFaces = parseFontFaces(stylesheet);
+			synchronized(FONT_FACES){
+				FONT_FACES.put(stylesheet, fontFaces);
+			}
+		}
+		if(fontFaces.isEmpty())
+			return stylesheet;
+
+		final Set<String> usedFaces = resolveAvailableFaces(collectUsedFaces(page), fontFaces);
+		final List<Object> key = List.of(stylesheet, usedFaces);
+		String subset;
+		synchronized(SUBSETS){
+			subset = SUBSETS.get(key);
+		}
+		if(subset == null){
+			subset = removeUnusedFaces(stylesheet, fontFaces, usedFaces);
+			synchronized(SUBSETS){
+				SUBSETS.put(key, subset);
+			}
+		}
+		return subset;
+	}
+
+	private static List<FontFace> parseFontFaces(final String stylesheet){
+		final List<FontFace> fontFaces = new ArrayList<>();
+		final Matcher matcher = FONT_FACE_PATTERN.matcher(stylesheet);
+		while(matcher.find()){
+			final String block = matcher.group();
+			final String family = extractDescriptor(FONT_FAMILY_PATTERN, block, "")
+				.replace("\"", "")
+				.replace("'", "");
+			final String style = extractDescriptor(FONT_STYLE_PATTERN, block, STYLE_NORMAL);
+			final String weight = normalizeWeight(extractDescriptor(FONT_WEIGHT_PATTERN, block, WEIGHT_REGULAR));
+			fontFaces.add(new FontFace(faceKey(family, style, weight), matcher.start(), matcher.end()));
+		}
+		return fontFaces;
+	}
+
+	private static String extractDescriptor(final Pattern pattern, final String block, final String defaultValue){
+		final Matcher matcher = pattern.matcher(block);
+		return (matcher.find()
+			? matcher.group(1).trim().toLowerCase(Locale.ROOT)
+			: defaultValue);
+	}
+
+	private static String normalizeWeight(final String weight){
+		return switch(weight){
+			case "normal" -> WEIGHT_REGULAR;
+			case "bold" -> "700";
+			default -> weight;
+		};
+	}
+
+	private static String faceKey(final String family, final String style, final String weight){
+		return family + "|" + style + "|" + weight;
+	}
+
+	/**
+	 * Traces the text of the page through the font-changing elements, collecting the faces that draw at least one glyph.
+	 *
+	 * @param body	The HTML of the page.
+	 * @return	The set of used faces.
+	 */
+	private static Set<String> collectUsedFaces(final String body){
+		final Set<String> usedFaces = new HashSet<>();
+		int italic = 0;
+		int bold = 0;
+		int monospace = 0;
+		int skipped = 0;
+		//stack of the italic links opened, to be closed by the matching `</a>`
+		final List<Boolean> links = new ArrayList<>();
+
+		final int length = body.length();
+		int index = 0;
+		while(index < length){
+			final char chr = body.charAt(index);
+			if(chr == '<'){
+				final int tagEnd = body.indexOf('>', index);
+				if(tagEnd < 0)
+					break;
+
+				final boolean closing = (index + 1 < length && body.charAt(index + 1) == '/');
+				final int nameStart = index + (closing? 2: 1);
+				int nameEnd = nameStart;
+				while(nameEnd < tagEnd && Character.isLetterOrDigit(body.charAt(nameEnd)))
+					nameEnd ++;
+				final String tagName = body.substring(nameStart, nameEnd).toLowerCase(Locale.ROOT);
+				final boolean selfClosing = (body.charAt(tagEnd - 1) == '/');
+				final int delta = (closing? -1: (selfClosing? 0: 1));
+
+				if(ITALIC_TAGS.contains(tagName))
+					italic += delta;
+				else if(BOLD_TAGS.contains(tagName))
+					bold += delta;
+				else if(MONOSPACE_TAGS.contains(tagName))
+					monospace += delta;
+				else if(SKIPPED_TAGS.contains(tagName))
+					skipped += delta;
+				else if(tagName.equals("a")){
+					if(closing){
+						if(!links.isEmpty() && links.remove(links.size() - 1))
+							italic --;
+					}
+					else{
+						final boolean italicLink = body.substring(nameEnd, tagEnd).contains(ITALIC_LINK_CLASS);
+						links.add(italicLink);
+						if(italicLink)
+							italic ++;
+					}
+				}
+
+				index = tagEnd + 1;
+			}
+			else{
+				if(skipped <= 0 && !Character.isWhitespace(chr))
+					usedFaces.add(faceKey((monospace > 0? FAMILY_MONOSPACE: FAMILY_TEXT),
+						(italic > 0? STYLE_ITALIC: STYLE_NORMAL),
+						(bold > 0? WEIGHT_BOLD: WEIGHT_REGULAR)));
+
+				index ++;
+			}
+		}
+		return usedFaces;
+	}
+
+	/**
+	 * Maps each used face to the face the browser would choose among the available ones (same family, falling back to the
+	 * regular style, then to the regular weight).
+	 *
+	 * @param usedFaces	The used faces.
+	 * @param fontFaces	The available faces.
+	 * @return	The set of the available faces that are used.
+	 */
+	private static Set<String> resolveAvailableFaces(final Set<String> usedFaces, final List<FontFace> fontFaces){
+		final Set<String> available = new HashSet<>(fontFaces.size());
+		for(final FontFace fontFace : fontFaces)
+			available.add(fontFace.key);
+
+		final Set<String> resolved = new HashSet<>(usedFaces.size());
+		for(final String usedFace : usedFaces){
+			final String[] components = usedFace.split("\\|");
+			final String family = components[0];
+			final String style = components[1];
+			final String weight = components[2];
+			for(final String candidate : new String[]{usedFace, faceKey(family, STYLE_NORMAL, weight),
+					faceKey(family, style, WEIGHT_REGULAR), faceKey(family, STYLE_NORMAL, WEIGHT_REGULAR)})
+				if(available.contains(candidate)){
+					resolved.add(candidate);
+					break;
+				}
+		}
+		return resolved;
+	}
+
+	private static String removeUnusedFaces(final String stylesheet, final List<FontFace> fontFaces, final Set<String> usedFaces){
+		final StringBuilder sb = new StringBuilder(stylesheet.length());
+		int last = 0;
+		for(final FontFace fontFace : fontFaces)
+			if(!usedFaces.contains(fontFace.key)){
+				sb.append(stylesheet, last, fontFace.start);
+				last = fontFace.end;
+			}
+		sb.append(stylesheet, last, stylesheet.length());
+		return sb.toString();
+	}
+
+
+	private static final class FontFace{
+		private final String key;
+		private final int start;
+		private final int end;
+
+
+		private FontFace(final String key, final int start, final int end){
+			this.key = key;
+			this.start = start;
+			this.end = end;
+		}
+	}
+
+}
@@ -0,0 +1,365 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Set;
+
+
+/**
+ * Minifies HTML while it is written into another writer: runs of whitespace are collapsed into one character (a newline if
+ * they hold one) and comments are removed.
+ * <p>The content of {@code pre}, {@code textarea} and {@code code} elements, of tags, and of {@code script} and
+ * {@code style} elements is left as it is, so the page renders and behaves the same.</p>
+ * <p>The stylesheets and scripts of the resources are minified apart, once, by {@link #minifyStylesheet(String)} and
+ * {@link #minifyResource(String)}.</p>
+ * <p>This class is not thread-safe.</p>
+ */
+final class HtmlMinifier extends Writer{
+
+	private static final Set<String> PRESERVE_WHITESPACE_ELEMENTS = Set.of("pre", "textarea", "code");
+	private static final Set<String> RAW_TEXT_ELEMENTS = Set.of("script", "style");
+
+	private static final String COMMENT_START = "<!--";
+	//characters around which the whitespace of a stylesheet is useless
+	private static final String STYLESHEET_SEPARATORS = "{};,>";
+
+	private static final int BUFFER_SIZE = 8 << 10;
+
+
+	private enum State{TEXT, TAG, COMMENT, RAW_TEXT}
+
+	private final Writer out;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int buffered;
+
+	private State state = State.TEXT;
+	//whitespace still to be written before the next text or tag, 0 if none
+	private char pendingWhitespace;
+	//nesting of the elements whose whitespace is preserved
+	private int preserveDepth;
+	//the tag being read, from its '<', or the part of the closing tag of a raw text element read so far
+	private final StringBuilder tag = new StringBuilder();
+	private char quote;
+	private int commentDashes;
+	private String rawTextEnd;
+
+
+	HtmlMinifier(final Writer out){
+		this.out = out;
+	}
+
+
+	/**
+	 * Minifies a resource holding HTML snippets and scripts: lines are trimmed, blank and comment lines are removed, then the
+	 * HTML is minified.
+	 * <p>Meant for the resources shipped with the application only, whose scripts do not span lines inside strings.</p>
+	 *
+	 * @param resource	The resource content.
+	 * @return	The minified resource.
+	 */
+	static String minifyResource(final String resource){
+		final StringWriter sw = new StringWriter(resource.length());
+		try(final HtmlMinifier minifier = new HtmlMinifier(sw)){
+			for(final String line : resource.split("\n")){
+				final String trimmed = line.trim();
+				if(!trimmed.isEmpty() && !trimmed.startsWith("//"))
+					minifier.append(trimmed)
+						.append('\n');
+			}
+		}
+		catch(final IOException ioe){
+			//cannot happen writing into a string
+			throw new UncheckedIOException(ioe);
+		}
+		return sw.toString()
+			.trim();
+	}
+
+	/**
+	 * Minifies a stylesheet: comments are removed, whitespace is collapsed and removed around braces, semicolons, commas and
+	 * child combinators, as is the last semicolon of each block.
+	 *
+	 * @param stylesheet	The stylesheet.
+	 * @return	The minified stylesheet.
+	 */
+	static String minifyStylesheet(final String stylesheet){
+		final int length = stylesheet.length();
+		final StringBuilder sb = new StringBuilder(length);
+		boolean pendingSpace = false;
+		int index = 0;
+		while(index < length){
+			final char chr = stylesheet.charAt(index);
+			if(Character.isWhitespace(chr)){
+				pendingSpace = true;
+				index ++;
+				continue;
+			}
+			if(chr == '/' && stylesheet.startsWith("/*", index)){
+				final int commentEnd = stylesheet.indexOf("*/", index + 2);
+				pendingSpace = true;
+				index = (commentEnd < 0? length: commentEnd + 2);
+				continue;
+			}
+
+			if(pendingSpace && !sb.isEmpty() && STYLESHEET_SEPARATORS.indexOf(chr) < 0
+					&& (STYLESHEET_SEPARATORS + ':').indexOf(sb.charAt(sb.length() - 1)) < 0)
+				sb.append(' ');
+			pendingSpace = false;
+
+			if(chr == '"' || chr == '\''){
+				//copy the string as it is
+				final int start = index ++;
+				while(index < length && stylesheet.charAt(index) != chr)
+					index += (stylesheet.charAt(index) == '\\'? 2: 1);
+				index = Math.min(index + 1, length);
+				sb.append(stylesheet, start, index);
+				continue;
+			}
+
+			if(chr == '}' && !sb.isEmpty() && sb.charAt(sb.length() - 1) == ';')
+				sb.setLength(sb.length() - 1);
+			sb.append(chr);
+			index ++;
+		}
+		return sb.toString();
+	}
+
+
+	@Override
+	public void write(final char[] cbuf, final int off, final int len) throws IOException{
+		final int end = off + len;
+		int i = off;
+		while(i < end){
+			if(isCopyingRawText()){
+				//copy the content of scripts and styles (e.g. the inlined stylesheet) up to the next tag in one go
+				int next = i;
+				while(next < end && cbuf[next] != '<')
+					next ++;
+				if(next > i){
+					flushBuffer();
+					out.write(cbuf, i, next - i);
+					i = next;
+					continue;
+				}
+			}
+			process(cbuf[i ++]);
+		}
+	}
+
+	@Override
+	public void write(final String str, final int off, final int len) throws IOException{
+		final int end = off + len;
+		int i = off;
+		while(i < end){
+			if(isCopyingRawText()){
+				//copy the content of scripts and styles (e.g. the inlined stylesheet) up to the next tag in one go
+				int next = str.indexOf('<', i);
+				if(next < 0 || next > end)
+					next = end;
+				if(next > i){
+					flushBuffer();
+					out.write(str, i, next - i);
+					i = next;
+					continue;
+				}
+			}
+			process(str.charAt(i ++));
+		}
+	}
+
+	private boolean isCopyingRawText(){
+		return (state == State.RAW_TEXT && tag.isEmpty());
+	}
+
+	/**
+	 * Prepares for a content to be written straight into the underlying writer, skipping this filter: possible if the
+	 * content would be copied as it is (inside a script or a style), or between elements if it is minified already.
+	 *
+	 * @return	Whether the content can skip this filter, if so everything written so far reached the underlying writer.
+	 * @throws IOException	If an I/O error occurs while writing.
+	 */
+	boolean bypass() throws IOException{
+		final boolean betweenElements = (state == State.TEXT && preserveDepth == 0);
+		if(!betweenElements && !isCopyingRawText())
+			return false;
+
+		if(betweenElements)
+			emitPendingWhitespace();
+		flushBuffer();
+		return true;
+	}
+
+	@Override
+	public void write(final int c) throws IOException{
+		process((char)c);
+	}
+
+	private void process(final char chr) throws IOException{
+		switch(state){
+			case TEXT -> processText(chr);
+			case TAG -> processTag(chr);
+			case COMMENT -> processComment(chr);
+			case RAW_TEXT -> processRawText(chr);
+		}
+	}
+
+	private void processText(final char chr) throws IOException{
+		if(chr == '<'){
+			//the whitespace before is written along with the tag, it is kept pending across a comment
+			state = State.TAG;
+			tag.setLength(0);
+			tag.append(chr);
+			quote = 0;
+		}
+		else if(preserveDepth == 0 && Character.isWhitespace(chr)){
+			if(pendingWhitespace != '\n')
+				pendingWhitespace = (chr == '\n'? '\n': ' ');
+		}
+		else{
+			emitPendingWhitespace();
+			emit(chr);
+		}
+	}
+
+	private void processTag(final char chr) throws IOException{
+		tag.append(chr);
+		final int length = tag.length();
+		if(length == 2 && !Character.isLetter(chr) && chr != '/' && chr != '!' && chr != '?'){
+			//not a tag (e.g. `a < b`)
+			state = State.TEXT;
+			emitPendingWhitespace();
+			emit('<');
+			processText(chr);
+		}
+		else if(length == COMMENT_START.length() && COMMENT_START.contentEquals(tag)){
+			state = State.COMMENT;
+			commentDashes = 0;
+		}
+		else if(quote != 0){
+			if(chr == quote)
+				quote = 0;
+		}
+		else if(chr == '"' || chr == '\'')
+			quote = chr;
+		else if(chr == '>'){
+			state = State.TEXT;
+			emitPendingWhitespace();
+			emit(tag);
+			endTag();
+		}
+	}
+
+	private void endTag(){
+		final boolean closing = (tag.charAt(1) == '/');
+		int end = (closing? 2: 1);
+		while(end < tag.length() && Character.isLetterOrDigit(tag.charAt(end)))
+			end ++;
+		final String name = tag.substring(closing? 2: 1, end)
+			.toLowerCase(Locale.ROOT);
+
+		if(PRESERVE_WHITESPACE_ELEMENTS.contains(name)){
+			if(closing)
+				preserveDepth = Math.max(preserveDepth - 1, 0);
+			else if(tag.charAt(tag.length() - 2) != '/')
+				preserveDepth ++;
+		}
+		else if(!closing && RAW_TEXT_ELEMENTS.contains(name)){
+			state = State.RAW_TEXT;
+			rawTextEnd = "</" + name;
+			tag.setLength(0);
+		}
+	}
+
+	private void processComment(final char chr){
+		if(chr == '>' && commentDashes >= 2)
+			state = State.TEXT;
+		else
+			commentDashes = (chr == '-'? commentDashes + 1: 0);
+	}
+
+	private void processRawText(final char chr) throws IOException{
+		final int matched = tag.length();
+		if(Character.toLowerCase(chr) == rawTextEnd.charAt(matched)){
+			tag.append(chr);
+			if(tag.length() == rawTextEnd.length()){
+				//the closing tag goes on as any other tag
+				state = State.TAG;
+				quote = 0;
+			}
+		}
+		else{
+			emit(tag);
+			tag.setLength(0);
+			if(chr == '<')
+				tag.append(chr);
+			else
+				emit(chr);
+		}
+	}
+
+	private void emitPendingWhitespace() throws IOException{
+		if(pendingWhitespace != 0){
+			emit(pendingWhitespace);
+			pendingWhitespace = 0;
+		}
+	}
+
+	private void emit(final CharSequence chars) throws IOException{
+		for(int i = 0; i < chars.length(); i ++)
+			emit(chars.charAt(i));
+	}
+
+	private void emit(final char chr) throws IOException{
+		if(buffered == buffer.length)
+			flushBuffer();
+		buffer[buffered ++] = chr;
+	}
+
+	private void flushBuffer() throws IOException{
+		out.write(buffer, 0, buffered);
+		buffered = 0;
+	}
+
+	@Override
+	public void flush() throws IOException{
+		flushBuffer();
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException{
+		//a truncated tag is written as it is, a truncated comment is dropped
+		if(state == State.TAG || state == State.RAW_TEXT)
+			emit(tag);
+		flushBuffer();
+		out.close();
+	}
+
+}
@@ -0,0 +1,320 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * The intrinsic size of an image, read from the header of its file only (PNG, GIF, JPEG, WebP and BMP), without decoding
+ * it.
+ * <p>The size is the one the image is displayed at, that is, with the width and height of a JPEG swapped if its EXIF
+ * orientation rotates it by a quarter turn.</p>
+ * <p>The sizes are cached by path, size and modification time of the file, so an image shared by many pages is read
+ * once.</p>
+ */
+final class ImageDimensions{
+
+	private static final byte[] SIGNATURE_PNG = {(byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+	private static final byte[] SIGNATURE_GIF = {'G', 'I', 'F', '8'};
+	private static final byte[] SIGNATURE_RIFF = {'R', 'I', 'F', 'F'};
+	private static final byte[] SIGNATURE_WEBP = {'W', 'E', 'B', 'P'};
+	private static final byte[] SIGNATURE_BMP = {'B', 'M'};
+	private static final byte[] SIGNATURE_EXIF = {'E', 'x', 'i', 'f', 0, 0};
+	private static final int HEADER_LENGTH = 32;
+
+	private static final String MIME_TYPE_PNG = "image/png";
+	private static final String MIME_TYPE_GIF = "image/gif";
+	private static final String MIME_TYPE_WEBP = "image/webp";
+	private static final String MIME_TYPE_BMP = "image/bmp";
+	private static final String MIME_TYPE_JPEG = "image/jpeg";
+
+	private static final int JPEG_MARKER = 0xFF;
+	private static final int JPEG_SOI = 0xD8;
+	private static final int JPEG_EOI = 0xD9;
+	private static final int JPEG_SOS = 0xDA;
+	private static final int JPEG_APP1 = 0xE1;
+	private static final int EXIF_TAG_ORIENTATION = 0x0112;
+
+	//cached sizes, an image that is not recognized is cached too
+	private static final ConcurrentHashMap<Path, ImageDimensions> CACHE = new ConcurrentHashMap<>();
+
+
+	private final int width;
+	private final int height;
+	private final int orientation;
+	private final String mimeType;
+
+	private long size;
+	private long lastModified;
+
+
+	/**
+	 * Reads the size of an image.
+	 *
+	 * @param path	The image file.
+	 * @return	The size of the image, {@code null} if the format is not recognized.
+	 * @throws IOException	If an I/O error occurs while reading the file.
+	 */
+	static ImageDimensions read(final Path path) throws IOException{
+		final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		final long size = attributes.size();
+		final long lastModified = attributes.lastModifiedTime().toMillis();
+		ImageDimensions dimensions = CACHE.get(path);
+		if(dimensions == null || dimensions.size != size || dimensions.lastModified != lastModified){
+			try(final InputStream is = new BufferedInputStream(Files.newInputStream(path))){
+				dimensions = parse(is);
+			}
+			if(dimensions == null)
+				dimensions = new ImageDimensions(0, 0, 1, null);
+			dimensions.size = size;
+			dimensions.lastModified = lastModified;
+			CACHE.put(path, dimensions);
+		}
+		return (dimensions.width > 0 && dimensions.height > 0? dimensions: null);
+	}
+
+	private static ImageDimensions parse(final InputStream is) throws IOException{
+		final byte[] header = new byte[HEADER_LENGTH];
+		final int length = is.readNBytes(header, 0, HEADER_LENGTH);
+		if(length >= 24 && startsWith(header, 0, SIGNATURE_PNG))
+			return new ImageDimensions(readIntBigEndian(header, 16), readIntBigEndian(header, 20), 1, MIME_TYPE_PNG);
+		if(length >= 10 && startsWith(header, 0, SIGNATURE_GIF))
+			return new ImageDimensions(readShortLittleEndian(header, 6), readShortLittleEndian(header, 8), 1,
+				MIME_TYPE_GIF);
+		if(length >= 30 && startsWith(header, 0, SIGNATURE_RIFF) && startsWith(header, 8, SIGNATURE_WEBP))
+			return parseWebP(header);
+		if(length >= 26 && startsWith(header, 0, SIGNATURE_BMP))
+			return parseBMP(header);
+		if(length >= 2 && (header[0] & 0xFF) == JPEG_MARKER && (header[1] & 0xFF) == JPEG_SOI)
+			return parseJPEG(Arrays.copyOfRange(header, 2, length), is);
+		return null;
+	}
+
+	private static ImageDimensions parseWebP(final byte[] header){
+		final String chunk = new String(header, 12, 4, StandardCharsets.US_ASCII);
+		return switch(chunk){
+			//lossy: the frame header follows the start code
+			case "VP8 " -> new ImageDimensions(readShortLittleEndian(header, 26) & 0x3FFF,
+				readShortLittleEndian(header, 28) & 0x3FFF, 1, MIME_TYPE_WEBP);
+			//lossless: 14 bits each, minus one, after the signature byte
+			case "VP8L" -> {
+				final int b0 = header[21] & 0xFF;
+				final int b1 = header[22] & 0xFF;
+				final int b2 = header[23] & 0xFF;
+				final int b3 = header[24] & 0xFF;
+				yield new ImageDimensions(1 + (((b1 & 0x3F) << 8) | b0),
+					1 + (((b3 & 0x0F) << 10) | (b2 << 2) | ((b1 & 0xC0) >> 6)), 1, MIME_TYPE_WEBP);
+			}
+			//extended: 24 bits each, minus one, of the canvas
+			case "VP8X" -> new ImageDimensions(1 + readInt24LittleEndian(header, 24),
+				1 + readInt24LittleEndian(header, 27), 1, MIME_TYPE_WEBP);
+			default -> null;
+		};
+	}
+
+	private static ImageDimensions parseBMP(final byte[] header){
+		final int headerSize = readIntLittleEndian(header, 14);
+		//the old OS/2 header has 16-bit sizes
+		if(headerSize == 12)
+			return new ImageDimensions(readShortLittleEndian(header, 18), readShortLittleEndian(header, 20), 1,
+				MIME_TYPE_BMP);
+		//a negative height marks a top-down bitmap
+		return new ImageDimensions(readIntLittleEndian(header, 18), Math.abs(readIntLittleEndian(header, 22)), 1,
+			MIME_TYPE_BMP);
+	}
+
+	/**
+	 * Walks the segments of a JPEG up to the start of frame, skipping their content but the EXIF one.
+	 *
+	 * @param start	The bytes already read after the start of image marker.
+	 * @param rest	The rest of the file.
+	 * @return	The size of the image, {@code null} if no start of frame is found.
+	 * @throws IOException	If an I/O error occurs while reading the file.
+	 */
+	private static ImageDimensions parseJPEG(final byte[] start, final InputStream rest) throws IOException{
+		final InputStream is = new SequenceInputStream(new ByteArrayInputStream(start), rest);
+		int orientation = 1;
+		try{
+			while(true){
+				int marker = is.read();
+				if(marker != JPEG_MARKER)
+					return null;
+				//skip the fill bytes
+				while(marker == JPEG_MARKER)
+					marker = readByte(is);
+				//standalone markers
+				if(marker == 0x01 || marker >= 0xD0 && marker <= 0xD7)
+					continue;
+				if(marker == JPEG_EOI || marker == JPEG_SOS)
+					return null;
+
+				final int segmentLength = (readByte(is) << 8 | readByte(is)) - 2;
+				if(segmentLength < 0)
+					return null;
+				if(isStartOfFrame(marker)){
+					final byte[] frame = is.readNBytes(5);
+					if(frame.length < 5)
+						return null;
+					final int height = readShortBigEndian(frame, 1);
+					final int width = readShortBigEndian(frame, 3);
+					//orientations from 5 to 8 rotate the image by a quarter turn
+					return (orientation >= 5 && orientation <= 8
+						? new ImageDimensions(height, width, orientation, MIME_TYPE_JPEG)
+						: new ImageDimensions(width, height, orientation, MIME_TYPE_JPEG));
+				}
+				if(marker == JPEG_APP1){
+					final byte[] segment = is.readNBytes(segmentLength);
+					if(segment.length < segmentLength)
+						return null;
+					if(startsWith(segment, 0, SIGNATURE_EXIF))
+						orientation = parseExifOrientation(segment, SIGNATURE_EXIF.length);
+				}
+				else
+					is.skipNBytes(segmentLength);
+			}
+		}
+		catch(final EOFException ignored){
+			return null;
+		}
+	}
+
+	//all the SOFn markers but DHT, JPG and DAC
+	private static boolean isStartOfFrame(final int marker){
+		return (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC);
+	}
+
+	private static int parseExifOrientation(final byte[] segment, final int tiff){
+		if(segment.length < tiff + 8)
+			return 1;
+
+		final boolean littleEndian = (segment[tiff] == 'I');
+		final int ifd = tiff + readInt(segment, tiff + 4, littleEndian);
+		if(ifd < tiff || ifd + 2 > segment.length)
+			return 1;
+
+		final int entries = readShort(segment, ifd, littleEndian);
+		for(int i = 0; i < entries; i ++){
+			final int entry = ifd + 2 + i * 12;
+			if(entry + 12 > segment.length)
+				break;
+			if(readShort(segment, entry, littleEndian) == EXIF_TAG_ORIENTATION){
+				final int orientation = readShort(segment, entry + 8, littleEndian);
+				return (orientation >= 1 && orientation <= 8? orientation: 1);
+			}
+		}
+		return 1;
+	}
+
+
+	private ImageDimensions(final int width, final int height, final int orientation, final String mimeType){
+		this.width = width;
+		this.height = height;
+		this.orientation = orientation;
+		this.mimeType = mimeType;
+	}
+
+
+	/**
+	 * @return	The width the image is displayed at, in pixels.
+	 */
+	int getWidth(){
+		return width;
+	}
+
+	/**
+	 * @return	The height the image is displayed at, in pixels.
+	 */
+	int getHeight(){
+		return height;
+	}
+
+	/**
+	 * @return	The EXIF orientation of the image (from 1, upright, to 8), 1 if not given.
+	 */
+	int getOrientation(){
+		return orientation;
+	}
+
+	/**
+	 * @return	The MIME type of the image.
+	 */
+	String getMimeType(){
+		return mimeType;
+	}
+
+
+	private static boolean startsWith(final byte[] array, final int offset, final byte[] prefix){
+		return (array.length >= offset + prefix.length
+			&& Arrays.equals(array, offset, offset + prefix.length, prefix, 0, prefix.length));
+	}
+
+	private static int readByte(final InputStream is) throws IOException{
+		final int value = is.read();
+		if(value < 0)
+			throw new EOFException();
+		return value;
+	}
+
+	private static int readShort(final byte[] array, final int offset, final boolean littleEndian){
+		return (littleEndian? readShortLittleEndian(array, offset): readShortBigEndian(array, offset));
+	}
+
+	private static int readInt(final byte[] array, final int offset, final boolean littleEndian){
+		return (littleEndian? readIntLittleEndian(array, offset): readIntBigEndian(array, offset));
+	}
+
+	private static int readShortBigEndian(final byte[] array, final int offset){
+		return ((array[offset] & 0xFF) << 8) | (array[offset + 1] & 0xFF);
+	}
+
+	private static int readShortLittleEndian(final byte[] array, final int offset){
+		return (array[offset] & 0xFF) | ((array[offset + 1] & 0xFF) << 8);
+	}
+
+	private static int readInt24LittleEndian(final byte[] array, final int offset){
+		return readShortLittleEndian(array, offset) | ((array[offset + 2] & 0xFF) << 16);
+	}
+
+	private static int readIntBigEndian(final byte[] array, final int offset){
+		return (readShortBigEndian(array, offset) << 16) | readShortBigEndian(array, offset + 2);
+	}
+
+	private static int readIntLittleEndian(final byte[] array, final int offset){
+		return readShortLittleEndian(array, offset) | (readShortLittleEndian(array, offset + 2) << 16);
+	}
+
+}
@@ -0,0 +1,268 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import com.vladsch.flexmark.ast.Image;
+import com.vladsch.flexmark.ast.ImageRef;
+import com.vladsch.flexmark.html.AttributeProvider;
+import com.vladsch.flexmark.html.HtmlRenderer;
+import com.vladsch.flexmark.html.IndependentAttributeProviderFactory;
+import com.vladsch.flexmark.html.renderer.AttributablePart;
+import com.vladsch.flexmark.html.renderer.LinkResolverContext;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.data.MutableDataHolder;
+import com.vladsch.flexmark.util.data.NullableDataKey;
+import com.vladsch.flexmark.util.html.MutableAttributes;
+import com.vladsch.flexmark.util.sequence.Escaping;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+
+
+/**
+ * Completes the images of a page whose files are found beside the markdown file.
+ * <p>Each image is given its intrinsic size (read from the header of the file only), so the browser reserves its space
+ * before loading it and the page does not shift; the images but the first, likely below the fold, are loaded lazily and
+ * decoded off the main thread; if the variant being rendered has an {@link ImageVariants image variants} generator, the
+ * downscaled copies of each image are offered through a {@code srcset} (an image whose copies cannot be generated is
+ * offered alone).</p>
+ * <p>The attributes given explicitly are kept.</p>
+ */
+final class ImageExtension implements HtmlRenderer.HtmlRendererExtension{
+
+	/**
+	 * The directory of the markdown file the document was parsed from, its images are resolved against; {@code null} if the
+	 * content does not come from a file.
+	 */
+	static final NullableDataKey<Path> SOURCE_DIRECTORY = new NullableDataKey<>("SOURCE_DIRECTORY");
+	/** The generator of the copies of the images for the variant being rendered; {@code null} to not generate copies. */
+	static final NullableDataKey<ImageVariants> IMAGE_VARIANTS = new NullableDataKey<>("IMAGE_VARIANTS");
+
+	//images at the top of the page, likely visible without scrolling, loaded eagerly
+	private static final int EAGER_IMAGES = 1;
+
+	private static final String ATTRIBUTE_SOURCE = "src";
+	private static final String ATTRIBUTE_WIDTH = "width";
+	private static final String ATTRIBUTE_HEIGHT = "height";
+	private static final String ATTRIBUTE_LOADING = "loading";
+	private static final String ATTRIBUTE_DECODING = "decoding";
+	private static final String ATTRIBUTE_SOURCE_SET = "srcset";
+	private static final String ATTRIBUTE_SIZES = "sizes";
+
+
+	static ImageExtension create(){
+		return new ImageExtension();
+	}
+
+	private ImageExtension(){}
+
+
+	@Override
+	public void rendererOptions(final MutableDataHolder options){}
+
+	@Override
+	public void extend(final HtmlRenderer.Builder htmlRendererBuilder, final String rendererType){
+		if(htmlRendererBuilder.isRendererType("HTML"))
+			htmlRendererBuilder.attributeProviderFactory(new ImageAttributeProvider.Factory());
+	}
+
+
+	/**
+	 * @param sourcePath	The path of the markdown file.
+	 * @return	The directory the images of the file are resolved against, {@code null} if the content does not come from a
+	 * 	file.
+	 */
+	static Path getSourceDirectory(final String sourcePath){
+		if(sourcePath == null)
+			return null;
+
+		try{
+			final Path source = Path.of(sourcePath).toAbsolutePath();
+			return (Files.isRegularFile(source)? source.getParent(): null);
+		}
+		catch(final InvalidPathException ignored){
+			return null;
+		}
+	}
+
+	/**
+	 * Resolves the URL of an image into its file, if it is relative to the page.
+	 *
+	 * @param directory	The directory of the markdown file, {@code null} if the content does not come from a file.
+	 * @param url	The (encoded) URL of the image.
+	 * @return	The image file, {@code null} if the URL is not relative to the page or the file does not exist.
+	 */
+	static Path resolveLocalImage(final Path directory, final String url){
+		final URI uri = parseLocalUri(directory, url);
+		return (uri != null? resolve(directory, uri): null);
+	}
+
+	/**
+	 * Parses the URL of an image, if it is relative to the page.
+	 *
+	 * @param directory	The directory of the markdown file, {@code null} if the content does not come from a file.
+	 * @param url	The (encoded) URL of the image.
+	 * @return	The URL, {@code null} if it is not relative to the page (e.g. it has a scheme, or it starts from the
+	 * 	root of the site), or if the page does not come from a file.
+	 */
+	private static URI parseLocalUri(final Path directory, final String url){
+		if(directory == null || url == null || url.isEmpty())
+			return null;
+
+		try{
+			final URI uri = new URI(url);
+			final String path = uri.getPath();
+			return (uri.getScheme() == null && uri.getRawAuthority() == null && path != null && !path.isEmpty()
+				&& path.charAt(0) != '/'
+				? uri
+				: null);
+		}
+		catch(final URISyntaxException ignored){
+			return null;
+		}
+	}
+
+	private static Path resolve(final Path directory, final URI uri){
+		try{
+			final Path image = directory.resolve(uri.getPath())
+				.normalize();
+			return (Files.isRegularFile(image)? image: null);
+		}
+		catch(final InvalidPathException ignored){
+			return null;
+		}
+	}
+
+	/**
+	 * @param image	The image file, possibly {@code null}.
+	 * @return	The size of the image, {@code null} if it cannot be read.
+	 */
+	static ImageDimensions readDimensions(final Path image){
+		if(image == null)
+			return null;
+
+		try{
+			return ImageDimensions.read(image);
+		}
+		catch(final IOException ignored){
+			//an unreadable image is left as it is, like a missing one
+			return null;
+		}
+	}
+
+
+	private static final class ImageAttributeProvider implements AttributeProvider{
+		//the directory of the markdown file, `null` if the content does not come from a file
+		private final Path directory;
+		private final ImageVariants imageVariants;
+		private int images;
+
+
+		private ImageAttributeProvider(final LinkResolverContext context){
+			directory = SOURCE_DIRECTORY.get(context.getDocument());
+			imageVariants = IMAGE_VARIANTS.get(context.getDocument());
+		}
+
+		@Override
+		public void setAttributes(final Node node, final AttributablePart part, final MutableAttributes attributes){
+			if(part != AttributablePart.LINK || !(node instanceof Image || node instanceof ImageRef))
+				return;
+
+			images ++;
+			if(images > EAGER_IMAGES){
+				if(!attributes.contains(ATTRIBUTE_LOADING))
+					attributes.addValue(ATTRIBUTE_LOADING, "lazy");
+				if(!attributes.contains(ATTRIBUTE_DECODING))
+					attributes.addValue(ATTRIBUTE_DECODING, "async");
+			}
+
+			final URI uri = parseLocalUri(directory, attributes.getValue(ATTRIBUTE_SOURCE));
+			if(uri == null)
+				return;
+			final Path image = resolve(directory, uri);
+			final ImageDimensions dimensions = readDimensions(image);
+			if(dimensions == null)
+				return;
+
+			final int width = dimensions.getWidth();
+			final int height = dimensions.getHeight();
+			if(!attributes.contains(ATTRIBUTE_WIDTH) && !attributes.contains(ATTRIBUTE_HEIGHT)){
+				attributes.addValue(ATTRIBUTE_WIDTH, Integer.toString(width));
+				attributes.addValue(ATTRIBUTE_HEIGHT, Integer.toString(height));
+			}
+
+			if(imageVariants != null && !attributes.contains(ATTRIBUTE_SOURCE_SET)){
+				NavigableMap<Integer, Path> variants;
+				try{
+					variants = imageVariants.generate(image, width, height);
+				}
+				catch(final IOException | RuntimeException e){
+					//an image that cannot be decoded (e.g. a CMYK JPEG) is offered as it is
+					variants = Collections.emptyNavigableMap();
+				}
+				if(!variants.isEmpty()){
+					attributes.addValue(ATTRIBUTE_SOURCE_SET, composeSourceSet(uri, attributes.getValue(ATTRIBUTE_SOURCE),
+						width, variants));
+					attributes.addValue(ATTRIBUTE_SIZES, "(max-width: " + width + "px) 100vw, " + width + "px");
+				}
+			}
+		}
+
+		private static String composeSourceSet(final URI uri, final String url, final int width,
+				final NavigableMap<Integer, Path> variants){
+			//the copies are in the directory of the image
+			final String rawPath = uri.getRawPath();
+			final String directoryUrl = rawPath.substring(0, rawPath.lastIndexOf('/') + 1);
+			final StringBuilder sb = new StringBuilder();
+			for(final Map.Entry<Integer, Path> variant : variants.entrySet())
+				sb.append(directoryUrl)
+					.append(Escaping.percentEncodeUrl(variant.getValue().getFileName().toString()))
+					.append(' ')
+					.append(variant.getKey())
+					.append("w, ");
+			return sb.append(url)
+				.append(' ')
+				.append(width)
+				.append('w')
+				.toString();
+		}
+
+
+		private static final class Factory extends IndependentAttributeProviderFactory{
+			@Override
+			public AttributeProvider apply(final LinkResolverContext context){
+				return new ImageAttributeProvider(context);
+			}
+		}
+	}
+
+}
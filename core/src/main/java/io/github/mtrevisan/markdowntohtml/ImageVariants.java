@@ -0,0 +1,57 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.NavigableMap;
+
+
+/**
+ * Generates the downscaled copies of an image referenced by a page, offered to the browser through a {@code srcset}.
+ * <p>Implementations must be thread-safe, since pages are rendered in parallel.</p>
+ */
+public interface ImageVariants{
+
+	/**
+	 * Generates (or finds, if already generated) the downscaled copies of an image.
+	 *
+	 * @param image	The image file.
+	 * @param width	The width the image is displayed at, in pixels.
+	 * @param height	The height the image is displayed at, in pixels.
+	 * @return	The copies, by width, each in the same directory of the image; empty if the image is not supported.
+	 * @throws IOException	If an I/O error occurs while reading the image or writing a copy.
+	 */
+	NavigableMap<Integer, Path> generate(Path image, int width, int height) throws IOException;
+
+	/**
+	 * @return	A description of the copies generated, used to identify cached pages: pages rendered with generators of the
+	 * 	same description are the same (by default, the generator itself).
+	 */
+	default String getCacheKey(){
+		return getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(this));
+	}
+
+}
@@ -0,0 +1,244 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * A page split into the segments it is written from: the template, the properties of the document already replaced, and the
+ * contents of its placeholders.
+ * <p>The contents coming from the resources (stylesheet, scripts) are the same for every page, so they are encoded only once
+ * and the encoded page shares them, leaving to each page the cost of encoding its own parts only.</p>
+ */
+final class PageSegments{
+
+	static final String STYLESHEET = "${stylesheet}";
+	static final String KATEX = "${katex}";
+	static final String SCRIPTS = "${scripts}";
+	static final String BODY = "${body}";
+
+	//keyed by the cached resources themselves: a lookup compares the (cached) hash codes, then the references before the
+	//contents, so finding the same resource does not scan its text
+	//the resources in use at once are few (scripts, stylesheet layers, each possibly minified), the least recently used
+	//encodings are evicted (and their memory given back once no page refers to them)
+	private static final int MAX_ENCODED_CONSTANTS = 32;
+	private static final Map<String, ByteBuffer> ENCODED_CONSTANTS = new LinkedHashMap<>(MAX_ENCODED_CONSTANTS, 0.75f,
+			true){
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, ByteBuffer> eldest){
+			return (size() > MAX_ENCODED_CONSTANTS);
+		}
+	};
+
+
+	private interface Visitor{
+		void text(String text, int start, int end) throws IOException;
+
+		void segment(Segment segment) throws IOException;
+	}
+
+
+	private final String template;
+	private final Map<String, List<Segment>> placeholders = new LinkedHashMap<>(4);
+
+
+	/**
+	 * @param template	The template, all the placeholders but the ones of the segments already replaced.
+	 * @return	The page, with empty placeholders.
+	 */
+	static PageSegments create(final String template){
+		return new PageSegments(template);
+	}
+
+	private PageSegments(final String template){
+		this.template = template;
+
+		for(final String placeholder : List.of(STYLESHEET, KATEX, SCRIPTS, BODY))
+			placeholders.put(placeholder, new ArrayList<>(1));
+	}
+
+
+	/**
+	 * Appends a content to a placeholder.
+	 *
+	 * @param placeholder	The placeholder.
+	 * @param text	The content.
+	 * @param constant	Whether the content is the same for every page (a cached resource, possibly minified).
+	 */
+	void add(final String placeholder, final String text, final boolean constant){
+		if(!text.isEmpty())
+			placeholders.get(placeholder)
+				.add(new Segment(text, constant));
+	}
+
+	/**
+	 * @return	The length of the page, in characters.
+	 */
+	int length(){
+		return length(true);
+	}
+
+	private int length(final boolean includeConstants){
+		int length = template.length();
+		for(final List<Segment> segments : placeholders.values())
+			for(final Segment segment : segments)
+				if(includeConstants || !segment.constant)
+					length += segment.text.length();
+		return length;
+	}
+
+	/**
+	 * Writes the page.
+	 *
+	 * @param writer	The writer.
+	 * @throws IOException	If an I/O error occurs while writing.
+	 */
+	void write(final Writer writer) throws IOException{
+		walk(new Visitor(){
+			@Override
+			public void text(final String text, final int start, final int end) throws IOException{
+				writer.write(text, start, end - start);
+			}
+
+			@Override
+			public void segment(final Segment segment) throws IOException{
+				writer.write(segment.text);
+			}
+		});
+	}
+
+	/**
+	 * Encodes the page in UTF-8.
+	 * <p>The constant segments are shared, read-only, by all the pages: the returned buffers are to be read only through
+	 * their duplicates, or once.</p>
+	 *
+	 * @param minify	Whether to minify the page (the constant segments are expected to be minified already).
+	 * @return	The buffers composing the page, in order.
+	 * @throws IOException	If an I/O error occurs while minifying.
+	 */
+	ByteBuffer[] encode(final boolean minify) throws IOException{
+		final List<ByteBuffer> buffers = new ArrayList<>();
+		//holds the text between the segments, and the segments being minified
+		final StringWriter sw = new StringWriter(minify? length(false): template.length());
+		final HtmlMinifier minifier = (minify? new HtmlMinifier(sw): null);
+		final Writer writer = (minifier != null? minifier: sw);
+		walk(new Visitor(){
+			@Override
+			public void text(final String text, final int start, final int end) throws IOException{
+				writer.write(text, start, end - start);
+			}
+
+			@Override
+			public void segment(final Segment segment) throws IOException{
+				if(segment.constant && (minifier == null || minifier.bypass())){
+					encodeText(sw, buffers);
+					buffers.add(encodeConstant(segment.text).duplicate());
+				}
+				else if(minifier == null){
+					encodeText(sw, buffers);
+					buffers.add(ByteBuffer.wrap(segment.text.getBytes(StandardCharsets.UTF_8)));
+				}
+				else
+					writer.write(segment.text);
+			}
+		});
+		writer.close();
+		encodeText(sw, buffers);
+		return buffers.toArray(ByteBuffer[]::new);
+	}
+
+	private static void encodeText(final StringWriter sw, final List<ByteBuffer> buffers){
+		final StringBuffer text = sw.getBuffer();
+		if(!text.isEmpty()){
+			buffers.add(ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8)));
+			text.setLength(0);
+		}
+	}
+
+	private static ByteBuffer encodeConstant(final String text){
+		ByteBuffer encoded;
+		synchronized(ENCODED_CONSTANTS){
+			encoded = ENCODED_CONSTANTS.get(text);
+		}
+		if(encoded == null){
+			//encoded outside the lock, so the pages using other resources do not wait
+			final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+			encoded = ByteBuffer.allocateDirect(bytes.length)
+				.put(bytes)
+				.flip()
+				.asReadOnlyBuffer();
+			synchronized(ENCODED_CONSTANTS){
+				ENCODED_CONSTANTS.put(text, encoded);
+			}
+		}
+		return encoded;
+	}
+
+	private void walk(final Visitor visitor) throws IOException{
+		int start = 0;
+		while(true){
+			//find the next placeholder
+			int index = -1;
+			String placeholder = null;
+			for(final String name : placeholders.keySet()){
+				final int nameIndex = template.indexOf(name, start);
+				if(nameIndex >= 0 && (index < 0 || nameIndex < index)){
+					index = nameIndex;
+					placeholder = name;
+				}
+			}
+			if(placeholder == null)
+				break;
+
+			visitor.text(template, start, index);
+			for(final Segment segment : placeholders.get(placeholder))
+				visitor.segment(segment);
+			start = index + placeholder.length();
+		}
+		visitor.text(template, start, template.length());
+	}
+
+
+	private static final class Segment{
+		private final String text;
+		private final boolean constant;
+
+
+		private Segment(final String text, final boolean constant){
+			this.text = text;
+			this.constant = constant;
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import com.vladsch.flexmark.util.ast.Node;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+
+/**
+ * The result of reading, pre-processing and parsing a markdown file, ready to be rendered in any number of
+ * {@link RenderVariant variants}.
+ * <p>The rendered body is computed on first use and then shared by all the variants with the same body options (see
+ * {@link RenderVariant#getBodyCacheKey()}).</p>
+ * <p>This class is not thread-safe.</p>
+ */
+public final class ParsedDocument{
+
+	private final String path;
+	private final Node document;
+	private final Properties properties;
+	private final List<String> katexCodes;
+	private final Set<DocumentFeature> features;
+	private final DocumentStatistics statistics;
+
+	//the body options the bodies were rendered with
+	private String bodyKey;
+	private String body;
+	private String bodyWithTOC;
+
+
+	ParsedDocument(final String path, final Node document, final Properties properties, final List<String> katexCodes,
+			final Set<DocumentFeature> features, final DocumentStatistics statistics){
+		this.path = path;
+		this.document = document;
+		this.properties = properties;
+		this.katexCodes = katexCodes;
+		this.features = features;
+		this.statistics = statistics;
+	}
+
+	/**
+	 * @return	The path of the source file.
+	 */
+	public String getPath(){
+		return path;
+	}
+
+	public Node getDocument(){
+		return document;
+	}
+
+	public Properties getProperties(){
+		return properties;
+	}
+
+	List<String> getKatexCodes(){
+		return katexCodes;
+	}
+
+	/**
+	 * @return	The constructs found in the document that require dedicated scripts or styles.
+	 */
+	public Set<DocumentFeature> getFeatures(){
+		return features;
+	}
+
+	/**
+	 * @return	The structural statistics of the document.
+	 */
+	public DocumentStatistics getStatistics(){
+		return statistics;
+	}
+
+	String getBody(final String bodyKey){
+		return (bodyKey.equals(this.bodyKey)? body: null);
+	}
+
+	void setBody(final String bodyKey, final String body){
+		changeBodyKey(bodyKey);
+		this.body = body;
+	}
+
+	String getBodyWithTOC(final String bodyKey){
+		return (bodyKey.equals(this.bodyKey)? bodyWithTOC: null);
+	}
+
+	void setBodyWithTOC(final String bodyKey, final String bodyWithTOC){
+		changeBodyKey(bodyKey);
+		this.bodyWithTOC = bodyWithTOC;
+	}
+
+	private void changeBodyKey(final String bodyKey){
+		//the bodies rendered with other options are stale
+		if(!bodyKey.equals(this.bodyKey)){
+			this.bodyKey = bodyKey;
+			body = null;
+			bodyWithTOC = null;
+		}
+	}
+
+}
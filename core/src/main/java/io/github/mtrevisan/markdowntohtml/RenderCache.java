@@ -0,0 +1,362 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Cache of rendered pages, keyed by the location, the modification time and the content of the markdown file and by the
+ * content of its properties file, and by the {@link RenderVariant variant} (which names the resources the page is composed
+ * of; the resources themselves do not change during the lifetime of the application); the images a page references are not
+ * part of the key, so a page is not renewed if only the size of one of its images changes.
+ * <p>The least recently used pages are evicted when their total size exceeds the given bound; the pages can be stored
+ * gzip-compressed and/or outside the heap, trading some decoding time for memory.</p>
+ * <p>This class is thread-safe.</p>
+ */
+public final class RenderCache{
+
+	private static final String DIGEST_ALGORITHM = "SHA-256";
+	private static final HexFormat HEX_FORMAT = HexFormat.of();
+
+
+	private final long maxSize;
+	private final boolean compressed;
+	private final boolean offHeap;
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long size;
+	private long hits;
+	private long misses;
+
+
+	/**
+	 * Creates a cache.
+	 *
+	 * @param maxSize	The maximum total size of the stored pages, in bytes (characters for uncompressed on-heap pages).
+	 * @param compressed	Whether to store the pages gzip-compressed.
+	 * @param offHeap	Whether to store the pages in direct buffers, outside the heap.
+	 * @return	The cache.
+	 */
+	public static RenderCache create(final long maxSize, final boolean compressed, final boolean offHeap){
+		return new RenderCache(maxSize, compressed, offHeap);
+	}
+
+	private RenderCache(final long maxSize, final boolean compressed, final boolean offHeap){
+		this.maxSize = maxSize;
+		this.compressed = compressed;
+		this.offHeap = offHeap;
+	}
+
+
+	/**
+	 * Computes the part of the key given by the source of a page read from a file.
+	 * <p>The images of the page are resolved against the location of the file, and the modification time is the default
+	 * one of the page, so both are part of the key.</p>
+	 *
+	 * @param path	The normalized absolute path of the markdown file.
+	 * @param modified	The modification time of the markdown file, or of its properties file if later.
+	 * @param source	The content of the markdown file.
+	 * @param properties	The content of the properties file, {@code null} if there is none.
+	 * @return	The digest of the source.
+	 */
+	static byte[] digestSource(final Path path, final long modified, final byte[] source, final byte[] properties){
+		final MessageDigest digest = createDigest();
+		final byte[] location = path.toString().getBytes(StandardCharsets.UTF_8);
+		//the length of the path makes the encoding unambiguous
+		digest.update(ByteBuffer.allocate(Integer.BYTES + Long.BYTES)
+			.putInt(location.length)
+			.putLong(modified)
+			.flip());
+		digest.update(location);
+		update(digest, source, properties);
+		return digest.digest();
+	}
+
+	/**
+	 * Computes the part of the key given by the source of a page.
+	 *
+	 * @param source	The content of the markdown file.
+	 * @param properties	The content of the properties file, {@code null} if there is none.
+	 * @return	The digest of the source.
+	 */
+	static byte[] digestSource(final byte[] source, final byte[] properties){
+		final MessageDigest digest = createDigest();
+		update(digest, source, properties);
+		return digest.digest();
+	}
+
+	private static void update(final MessageDigest digest, final byte[] source, final byte[] properties){
+		digest.update(source);
+		//separates the source from the properties, marking their presence
+		digest.update((byte)(properties != null? 1: 0));
+		if(properties != null)
+			digest.update(properties);
+	}
+
+	/**
+	 * Computes the part of the key given by the source of a page whose properties are not read from a file.
+	 *
+	 * @param source	The markdown content.
+	 * @param properties	The properties.
+	 * @return	The digest of the source.
+	 */
+	static byte[] digestSource(final byte[] source, final Properties properties){
+		final StringBuilder sb = new StringBuilder();
+		for(final String key : new TreeSet<>(properties.stringPropertyNames()))
+			//the length of the key makes the encoding unambiguous
+			sb.append(key.length())
+				.append(':')
+				.append(key)
+				.append('=')
+				.append(properties.getProperty(key))
+				.append('\n');
+		return digestSource(source, sb.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Computes the key of a page.
+	 *
+	 * @param sourceDigest	The digest of the source, as returned by {@link #digestSource(byte[], byte[])}.
+	 * @param variant	The variant of the page.
+	 * @return	The key.
+	 */
+	static String key(final byte[] sourceDigest, final RenderVariant variant){
+		final MessageDigest digest = createDigest();
+		digest.update(sourceDigest);
+		digest.update(variant.getCacheKey().getBytes(StandardCharsets.UTF_8));
+		return HEX_FORMAT.formatHex(digest.digest());
+	}
+
+	private static MessageDigest createDigest(){
+		try{
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		}
+		catch(final NoSuchAlgorithmException nsae){
+			//every implementation of the platform is required to support it
+			throw new IllegalStateException(nsae);
+		}
+	}
+
+
+	/**
+	 * @param key	The key of the page.
+	 * @return	The page, {@code null} if not cached.
+	 */
+	String get(final String key){
+		final Entry entry;
+		synchronized(this){
+			entry = entries.get(key);
+			if(entry == null){
+				misses ++;
+				return null;
+			}
+
+			hits ++;
+		}
+		return decode(entry.content);
+	}
+
+	/**
+	 * @param key	The key of the page.
+	 * @return	The page compressed with gzip, {@code null} if not cached or if the cache does not compress the pages.
+	 */
+	byte[] getCompressed(final String key){
+		if(!compressed)
+			return null;
+
+		final Entry entry;
+		synchronized(this){
+			entry = entries.get(key);
+			if(entry == null){
+				misses ++;
+				return null;
+			}
+
+			hits ++;
+		}
+		return toBytes(entry.content);
+	}
+
+	/**
+	 * Stores a page, evicting the least recently used ones if needed.
+	 *
+	 * @param key	The key of the page.
+	 * @param html	The page.
+	 * @return	The page compressed with gzip, {@code null} if the cache does not compress the pages.
+	 */
+	byte[] put(final String key, final String html){
+		final Object content = encode(html);
+		final byte[] compressedContent = (compressed? toBytes(content): null);
+		final long contentSize = sizeOf(content);
+		if(contentSize > maxSize){
+			//the page previously stored under the same key is stale
+			synchronized(this){
+				final Entry previous = entries.remove(key);
+				if(previous != null)
+					size -= previous.size;
+			}
+			return compressedContent;
+		}
+
+		synchronized(this){
+			final Entry previous = entries.put(key, new Entry(content, contentSize));
+			if(previous != null)
+				size -= previous.size;
+			size += contentSize;
+
+			final Iterator<Entry> itr = entries.values().iterator();
+			while(size > maxSize && itr.hasNext()){
+				size -= itr.next().size;
+				itr.remove();
+			}
+		}
+		return compressedContent;
+	}
+
+	public synchronized void clear(){
+		entries.clear();
+		size = 0L;
+	}
+
+
+	private Object encode(final String html){
+		if(!compressed && !offHeap)
+			return html;
+
+		final byte[] bytes = (compressed? compress(html): html.getBytes(StandardCharsets.UTF_8));
+		if(!offHeap)
+			return bytes;
+
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+		buffer.put(bytes)
+			.flip();
+		return buffer;
+	}
+
+	private String decode(final Object content){
+		if(content instanceof String html)
+			return html;
+
+		final byte[] bytes = toBytes(content);
+		return (compressed? decompress(bytes): new String(bytes, StandardCharsets.UTF_8));
+	}
+
+	private static byte[] toBytes(final Object content){
+		if(content instanceof ByteBuffer buffer){
+			final byte[] bytes = new byte[buffer.remaining()];
+			//absolute read, the buffer is shared among threads
+			buffer.get(0, bytes);
+			return bytes;
+		}
+		return (byte[])content;
+	}
+
+	private static long sizeOf(final Object content){
+		if(content instanceof String html)
+			return html.length();
+		if(content instanceof ByteBuffer buffer)
+			return buffer.capacity();
+		return ((byte[])content).length;
+	}
+
+	private static byte[] compress(final String html){
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream(html.length() >> 2);
+		try(final OutputStream os = new GZIPOutputStream(baos)){
+			os.write(html.getBytes(StandardCharsets.UTF_8));
+		}
+		catch(final IOException ioe){
+			//cannot happen writing in memory
+			throw new UncheckedIOException(ioe);
+		}
+		return baos.toByteArray();
+	}
+
+	private static String decompress(final byte[] bytes){
+		try(final InputStream is = new GZIPInputStream(new ByteArrayInputStream(bytes))){
+			return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+		}
+		catch(final IOException ioe){
+			//cannot happen reading from memory
+			throw new UncheckedIOException(ioe);
+		}
+	}
+
+
+	/**
+	 * @return	The number of lookups that found the page.
+	 */
+	public synchronized long getHits(){
+		return hits;
+	}
+
+	/**
+	 * @return	The number of lookups that did not find the page.
+	 */
+	public synchronized long getMisses(){
+		return misses;
+	}
+
+	/**
+	 * @return	The total size of the stored pages.
+	 */
+	public synchronized long getSize(){
+		return size;
+	}
+
+	public synchronized int getEntries(){
+		return entries.size();
+	}
+
+
+	private static final class Entry{
+		private final Object content;
+		private final long size;
+
+
+		private Entry(final Object content, final long size){
+			this.content = content;
+			this.size = size;
+		}
+	}
+
+}
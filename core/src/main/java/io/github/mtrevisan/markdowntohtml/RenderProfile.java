@@ -0,0 +1,179 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+
+/**
+ * Call counts and times spent by the parser and renderer extensions, per extension and per construct (node class, block
+ * parser factory, post-processor).
+ * <p>While a profile is {@link #start() started} on a thread, the conversions made by that thread use a parser and a
+ * renderer whose extensions are wrapped to account for their cost here.</p>
+ * <p>The self time of a construct excludes the time spent rendering its children, the total time includes it.</p>
+ * <p>This class is not thread-safe.</p>
+ */
+public final class RenderProfile{
+
+	private static final ThreadLocal<RenderProfile> CURRENT = new ThreadLocal<>();
+
+	private static final double NANOS_PER_MILLI = 1_000_000.;
+
+
+	private final Map<String, Entry> entries = new HashMap<>();
+
+	//time spent in the nested calls, one slot for each nesting level
+	private long[] nestedNanos = new long[16];
+	private int depth;
+
+
+	/**
+	 * Starts profiling the conversions made by the current thread.
+	 *
+	 * @return	The profile collecting the costs.
+	 */
+	public static RenderProfile start(){
+		final RenderProfile profile = new RenderProfile();
+		CURRENT.set(profile);
+		return profile;
+	}
+
+	/**
+	 * Creates an empty profile, to be used to aggregate other profiles.
+	 *
+	 * @return	The profile.
+	 */
+	public static RenderProfile create(){
+		return new RenderProfile();
+	}
+
+	private RenderProfile(){}
+
+	/**
+	 * Stops profiling the conversions made by the current thread.
+	 */
+	public void stop(){
+		if(CURRENT.get() == this)
+			CURRENT.remove();
+	}
+
+	static RenderProfile current(){
+		return CURRENT.get();
+	}
+
+
+	/**
+	 * Starts accounting for a call.
+	 *
+	 * @return	The start time of the call.
+	 */
+	long enter(){
+		if(depth == nestedNanos.length)
+			nestedNanos = Arrays.copyOf(nestedNanos, depth << 1);
+		nestedNanos[depth ++] = 0L;
+		return System.nanoTime();
+	}
+
+	/**
+	 * Ends accounting for a call.
+	 *
+	 * @param key	The key identifying extension and construct.
+	 * @param extension	The name of the extension.
+	 * @param construct	The name of the construct.
+	 * @param start	The start time of the call, as returned by {@link #enter()}.
+	 */
+	void exit(final String key, final String extension, final String construct, final long start){
+		final long elapsed = System.nanoTime() - start;
+		final long nested = nestedNanos[-- depth];
+		if(depth > 0)
+			nestedNanos[depth - 1] += elapsed;
+
+		final Entry entry = entries.computeIfAbsent(key, k -> new Entry(extension, construct));
+		entry.calls ++;
+		entry.selfNanos += elapsed - nested;
+		entry.totalNanos += elapsed;
+	}
+
+	/**
+	 * Adds the costs of another profile to this one.
+	 *
+	 * @param other	The profile to be added.
+	 */
+	public void merge(final RenderProfile other){
+		for(final Map.Entry<String, Entry> otherEntry : other.entries.entrySet()){
+			final Entry source = otherEntry.getValue();
+			final Entry entry = entries.computeIfAbsent(otherEntry.getKey(), k -> new Entry(source.extension, source.construct));
+			entry.calls += source.calls;
+			entry.selfNanos += source.selfNanos;
+			entry.totalNanos += source.totalNanos;
+		}
+	}
+
+	public boolean isEmpty(){
+		return entries.isEmpty();
+	}
+
+	/**
+	 * @return	The table of the costs, sorted by decreasing self time.
+	 */
+	public String getReport(){
+		final List<Entry> sorted = new ArrayList<>(entries.values());
+		sorted.sort(Comparator.comparingLong((Entry entry) -> entry.selfNanos).reversed());
+		long overallNanos = 0L;
+		for(final Entry entry : sorted)
+			overallNanos += entry.selfNanos;
+
+		final StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.ROOT, "%-28s %-44s %10s %12s %12s %7s%n", "extension", "construct", "calls",
+			"self ms", "total ms", "self %"));
+		for(final Entry entry : sorted)
+			sb.append(String.format(Locale.ROOT, "%-28s %-44s %10d %12.3f %12.3f %6.1f%%%n", entry.extension, entry.construct,
+				entry.calls, entry.selfNanos / NANOS_PER_MILLI, entry.totalNanos / NANOS_PER_MILLI,
+				(overallNanos > 0L? entry.selfNanos * 100. / overallNanos: 0.)));
+		return sb.toString();
+	}
+
+
+	private static final class Entry{
+		private final String extension;
+		private final String construct;
+		private long calls;
+		private long selfNanos;
+		private long totalNanos;
+
+
+		private Entry(final String extension, final String construct){
+			this.extension = extension;
+			this.construct = construct;
+		}
+	}
+
+}
@@ -0,0 +1,547 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import com.vladsch.flexmark.html.AttributeProviderFactory;
+import com.vladsch.flexmark.html.HtmlRenderer;
+import com.vladsch.flexmark.html.LinkResolverFactory;
+import com.vladsch.flexmark.html.UriContentResolverFactory;
+import com.vladsch.flexmark.html.renderer.CoreNodeRenderer;
+import com.vladsch.flexmark.html.renderer.HeaderIdGeneratorFactory;
+import com.vladsch.flexmark.html.renderer.NodeRenderer;
+import com.vladsch.flexmark.html.renderer.NodeRendererFactory;
+import com.vladsch.flexmark.html.renderer.NodeRenderingHandler;
+import com.vladsch.flexmark.parser.InlineParserExtensionFactory;
+import com.vladsch.flexmark.parser.InlineParserFactory;
+import com.vladsch.flexmark.parser.LinkRefProcessorFactory;
+import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.parser.PostProcessor;
+import com.vladsch.flexmark.parser.PostProcessorFactory;
+import com.vladsch.flexmark.parser.block.BlockParserFactory;
+import com.vladsch.flexmark.parser.block.BlockPreProcessorFactory;
+import com.vladsch.flexmark.parser.block.BlockStart;
+import com.vladsch.flexmark.parser.block.CustomBlockParserFactory;
+import com.vladsch.flexmark.parser.block.ParagraphPreProcessorFactory;
+import com.vladsch.flexmark.parser.delimiter.DelimiterProcessor;
+import com.vladsch.flexmark.util.ast.Document;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.ast.NodeTracker;
+import com.vladsch.flexmark.util.data.DataHolder;
+import com.vladsch.flexmark.util.data.MutableDataHolder;
+import com.vladsch.flexmark.util.data.MutableDataSet;
+import com.vladsch.flexmark.util.misc.Extension;
+import com.vladsch.flexmark.util.sequence.mappers.SpecialLeadInHandler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Builds the parser and the renderer used while a {@link RenderProfile} is active, with the same options of the ones of
+ * {@link Service} but accounting for the cost of the node renderers, block parser factories and node post-processors
+ * registered by each extension (and of the core node renderer).
+ * <p>flexmark allows only one instance of each factory class, so the extensions are loaded through a single wrapping
+ * extension, the node renderers are timed by a single renderer that takes precedence over all the others and delegates
+ * to them, and the block parser factories and node post-processors are grouped in a single timing factory each (the
+ * ordering constraints among the grouped factories are replaced by their registration order; none of the registered
+ * extensions declares any).</p>
+ */
+final class RenderProfiler{
+
+	private static final String CORE = "core";
+
+
+	private RenderProfiler(){}
+
+
+	static Parser getParser(){
+		return ProfilingInstances.PARSER;
+	}
+
+	static HtmlRenderer getRenderer(){
+		return ProfilingInstances.RENDERER;
+	}
+
+
+	//built on first use, profiling is seldom needed
+	private static final class ProfilingInstances{
+		private static final Parser PARSER;
+		private static final HtmlRenderer RENDERER;
+		static{
+			final MutableDataSet options = new MutableDataSet(Service.Pipeline.OPTIONS)
+				//a single wrapper, extensions are loaded once per class
+				.set(Parser.EXTENSIONS, List.of(new ProfilingExtension(Parser.EXTENSIONS.get(Service.Pipeline.OPTIONS))));
+
+			PARSER = Parser.builder(options)
+				.build();
+			RENDERER = HtmlRenderer.builder(options)
+				.build();
+		}
+	}
+
+
+	private static String nameOf(final Object object){
+		final String name = object.getClass().getName();
+		return name.substring(name.lastIndexOf('.') + 1)
+			.replace('$', '.');
+	}
+
+	private static MutableDataSet withoutExtensions(final DataHolder options){
+		return new MutableDataSet(options)
+			.remove(Parser.EXTENSIONS);
+	}
+
+
+	private static final class ProfilingExtension implements Parser.ParserExtension, HtmlRenderer.HtmlRendererExtension{
+		private final Collection<Extension> extensions;
+
+
+		private ProfilingExtension(final Collection<Extension> extensions){
+			this.extensions = extensions;
+		}
+
+		@Override
+		public void parserOptions(final MutableDataHolder options){
+			for(final Extension extension : extensions)
+				if(extension instanceof Parser.ParserExtension parserExtension)
+					parserExtension.parserOptions(options);
+		}
+
+		@Override
+		public void extend(final Parser.Builder parserBuilder){
+			final ProfilingBlockParserFactory blockParserFactory = new ProfilingBlockParserFactory();
+			final ProfilingPostProcessorFactory postProcessorFactory = new ProfilingPostProcessorFactory();
+			for(final Extension extension : extensions)
+				if(extension instanceof Parser.ParserExtension parserExtension)
+					parserExtension.extend(new ProfilingParserBuilder(parserBuilder, nameOf(extension), blockParserFactory,
+						postProcessorFactory));
+
+			if(!blockParserFactory.factories.isEmpty())
+				parserBuilder.customBlockParserFactory(blockParserFactory);
+			if(!postProcessorFactory.factories.isEmpty())
+				parserBuilder.postProcessorFactory(postProcessorFactory);
+		}
+
+		@Override
+		public void rendererOptions(final MutableDataHolder options){
+			for(final Extension extension : extensions)
+				if(extension instanceof HtmlRenderer.HtmlRendererExtension rendererExtension)
+					rendererExtension.rendererOptions(options);
+		}
+
+		@Override
+		public void extend(final HtmlRenderer.Builder htmlRendererBuilder, final String rendererType){
+			final ProfilingNodeRendererFactory nodeRendererFactory = new ProfilingNodeRendererFactory();
+			for(final Extension extension : extensions)
+				if(extension instanceof HtmlRenderer.HtmlRendererExtension rendererExtension)
+					rendererExtension.extend(new ProfilingHtmlRendererBuilder(htmlRendererBuilder, nameOf(extension),
+						nodeRendererFactory), rendererType);
+
+			//registered last, so it takes precedence over the renderers of the extensions
+			htmlRendererBuilder.nodeRendererFactory(nodeRendererFactory);
+		}
+	}
+
+
+	/** Forwards the registrations of an extension to the real builder, grouping the ones to be profiled. */
+	private static final class ProfilingParserBuilder extends Parser.Builder{
+		private final Parser.Builder builder;
+		private final String extension;
+		private final ProfilingBlockParserFactory blockParserFactory;
+		private final ProfilingPostProcessorFactory postProcessorFactory;
+
+
+		private ProfilingParserBuilder(final Parser.Builder builder, final String extension,
+				final ProfilingBlockParserFactory blockParserFactory, final ProfilingPostProcessorFactory postProcessorFactory){
+			super(withoutExtensions(builder));
+
+			this.builder = builder;
+			this.extension = extension;
+			this.blockParserFactory = blockParserFactory;
+			this.postProcessorFactory = postProcessorFactory;
+		}
+
+		@Override
+		public Parser.Builder customBlockParserFactory(final CustomBlockParserFactory blockParserFactory){
+			this.blockParserFactory.factories.put(blockParserFactory, extension);
+			return this;
+		}
+
+		@Override
+		public Parser.Builder postProcessorFactory(final PostProcessorFactory postProcessorFactory){
+			final Map<Class<?>, Set<Class<?>>> nodeTypes = postProcessorFactory.getNodeTypes();
+			//document post-processors are left untouched
+			if(nodeTypes == null || nodeTypes.isEmpty())
+				builder.postProcessorFactory(postProcessorFactory);
+			else
+				this.postProcessorFactory.factories.put(postProcessorFactory, extension);
+			return this;
+		}
+
+		@Override
+		public Parser.Builder customInlineParserExtensionFactory(final InlineParserExtensionFactory inlineParserExtensionFactory){
+			builder.customInlineParserExtensionFactory(inlineParserExtensionFactory);
+			return this;
+		}
+
+		@Override
+		public Parser.Builder customInlineParserFactory(final InlineParserFactory inlineParserFactory){
+			builder.customInlineParserFactory(inlineParserFactory);
+			return this;
+		}
+
+		@Override
+		public Parser.Builder customDelimiterProcessor(final DelimiterProcessor delimiterProcessor){
+			builder.customDelimiterProcessor(delimiterProcessor);
+			return this;
+		}
+
+		@Override
+		public Parser.Builder paragraphPreProcessorFactory(final ParagraphPreProcessorFactory paragraphPreProcessorFactory){
+			builder.paragraphPreProcessorFactory(paragraphPreProcessorFactory);
+			return this;
+		}
+
+		@Override
+		public Parser.Builder blockPreProcessorFactory(final BlockPreProcessorFactory blockPreProcessorFactory){
+			builder.blockPreProcessorFactory(blockPreProcessorFactory);
+			return this;
+		}
+
+		@Override
+		public Parser.Builder linkRefProcessorFactory(final LinkRefProcessorFactory linkRefProcessorFactory){
+			builder.linkRefProcessorFactory(linkRefProcessorFactory);
+			return this;
+		}
+
+		@Override
+		public Parser.Builder specialLeadInHandler(final SpecialLeadInHandler specialLeadInHandler){
+			builder.specialLeadInHandler(specialLeadInHandler);
+			return this;
+		}
+	}
+
+	/** Forwards the registrations of an extension to the real builder, recording the node renderers to be profiled. */
+	private static final class ProfilingHtmlRendererBuilder extends HtmlRenderer.Builder{
+		private final HtmlRenderer.Builder builder;
+		private final String extension;
+		private final ProfilingNodeRendererFactory nodeRendererFactory;
+
+
+		private ProfilingHtmlRendererBuilder(final HtmlRenderer.Builder builder, final String extension,
+				final ProfilingNodeRendererFactory nodeRendererFactory){
+			super(withoutExtensions(builder));
+
+			this.builder = builder;
+			this.extension = extension;
+			this.nodeRendererFactory = nodeRendererFactory;
+		}
+
+		@Override
+		public boolean isRendererType(final String supportedRendererType){
+			return builder.isRendererType(supportedRendererType);
+		}
+
+		@Override
+		public HtmlRenderer.Builder nodeRendererFactory(final NodeRendererFactory nodeRendererFactory){
+			this.nodeRendererFactory.factories.put(nodeRendererFactory, extension);
+			builder.nodeRendererFactory(nodeRendererFactory);
+			return this;
+		}
+
+		@Override
+		public HtmlRenderer.Builder attributeProviderFactory(final AttributeProviderFactory attributeProviderFactory){
+			builder.attributeProviderFactory(attributeProviderFactory);
+			return this;
+		}
+
+		@Override
+		public HtmlRenderer.Builder linkResolverFactory(final LinkResolverFactory linkResolverFactory){
+			builder.linkResolverFactory(linkResolverFactory);
+			return this;
+		}
+
+		@Override
+		public HtmlRenderer.Builder contentResolverFactory(final UriContentResolverFactory contentResolverFactory){
+			builder.contentResolverFactory(contentResolverFactory);
+			return this;
+		}
+
+		@Override
+		public HtmlRenderer.Builder htmlIdGeneratorFactory(final HeaderIdGeneratorFactory htmlIdGeneratorFactory){
+			builder.htmlIdGeneratorFactory(htmlIdGeneratorFactory);
+			return this;
+		}
+	}
+
+
+	/**
+	 * Renders every node type handled by the extensions or the core renderer by timing the delegation to the renderer that
+	 * would have rendered it.
+	 */
+	private static final class ProfilingNodeRendererFactory implements NodeRendererFactory{
+		//node renderer factories of the extensions, in order of registration
+		private final Map<NodeRendererFactory, String> factories = new LinkedHashMap<>();
+
+
+		@Override
+		public NodeRenderer apply(final DataHolder options){
+			//the extension rendering each node type: the last registered one, then the core
+			final Map<Class<?>, String> nodeTypes = new HashMap<>();
+			final List<Map.Entry<NodeRendererFactory, String>> entries = new ArrayList<>(factories.entrySet());
+			for(int i = entries.size() - 1; i >= 0; i --)
+				addNodeTypes(nodeTypes, entries.get(i).getKey().apply(options), entries.get(i).getValue());
+			addNodeTypes(nodeTypes, new CoreNodeRenderer(options), CORE);
+
+			final Set<NodeRenderingHandler<?>> handlers = new HashSet<>(nodeTypes.size());
+			for(final Map.Entry<Class<?>, String> entry : nodeTypes.entrySet())
+				handlers.add(createHandler(entry.getKey(), entry.getValue()));
+			return () -> handlers;
+		}
+
+		private static void addNodeTypes(final Map<Class<?>, String> nodeTypes, final NodeRenderer renderer,
+				final String extension){
+			final Set<NodeRenderingHandler<?>> handlers = renderer.getNodeRenderingHandlers();
+			if(handlers != null)
+				for(final NodeRenderingHandler<?> handler : handlers)
+					nodeTypes.putIfAbsent(handler.getNodeType(), extension);
+		}
+
+		@SuppressWarnings("unchecked")
+		private static <N extends Node> NodeRenderingHandler<N> createHandler(final Class<?> nodeType, final String extension){
+			final String construct = nodeType.getSimpleName();
+			final String key = extension + " " + construct;
+			return new NodeRenderingHandler<>((Class<N>)nodeType, (node, context, html) -> {
+				final RenderProfile profile = RenderProfile.current();
+				if(profile == null){
+					context.delegateRender();
+					return;
+				}
+
+				final long start = profile.enter();
+				try{
+					context.delegateRender();
+				}
+				finally{
+					profile.exit(key, extension, construct, start);
+				}
+			});
+		}
+	}
+
+
+	/** Tries the block parser factories of the extensions in turn, timing each one. */
+	private static final class ProfilingBlockParserFactory implements CustomBlockParserFactory{
+		private final Map<CustomBlockParserFactory, String> factories = new LinkedHashMap<>();
+
+
+		@Override
+		public BlockParserFactory apply(final DataHolder options){
+			final int size = factories.size();
+			final BlockParserFactory[] blockParserFactories = new BlockParserFactory[size];
+			final String[] extensions = new String[size];
+			final String[] constructs = new String[size];
+			final String[] keys = new String[size];
+			int index = 0;
+			for(final Map.Entry<CustomBlockParserFactory, String> entry : factories.entrySet()){
+				blockParserFactories[index] = entry.getKey().apply(options);
+				extensions[index] = entry.getValue();
+				constructs[index] = nameOf(entry.getKey());
+				keys[index] = extensions[index] + " " + constructs[index];
+				index ++;
+			}
+
+			return (state, matchedBlockParser) -> {
+				final RenderProfile profile = RenderProfile.current();
+				for(int i = 0; i < size; i ++){
+					final long start = (profile != null? profile.enter(): 0L);
+					final BlockStart blockStart;
+					try{
+						blockStart = blockParserFactories[i].tryStart(state, matchedBlockParser);
+					}
+					finally{
+						if(profile != null)
+							profile.exit(keys[i], extensions[i], constructs[i], start);
+					}
+					if(blockStart != null)
+						return blockStart;
+				}
+				return null;
+			};
+		}
+
+		@Override
+		public SpecialLeadInHandler getLeadInHandler(final DataHolder options){
+			//only one handler can be returned, the first one wins
+			for(final CustomBlockParserFactory factory : factories.keySet()){
+				final SpecialLeadInHandler leadInHandler = factory.getLeadInHandler(options);
+				if(leadInHandler != null)
+					return leadInHandler;
+			}
+			return null;
+		}
+
+		@Override
+		public Set<Class<?>> getAfterDependents(){
+			final Set<Class<?>> dependents = new HashSet<>();
+			for(final CustomBlockParserFactory factory : factories.keySet())
+				addDependents(dependents, factory.getAfterDependents(), factories.keySet());
+			return (dependents.isEmpty()? null: dependents);
+		}
+
+		@Override
+		public Set<Class<?>> getBeforeDependents(){
+			final Set<Class<?>> dependents = new HashSet<>();
+			for(final CustomBlockParserFactory factory : factories.keySet())
+				addDependents(dependents, factory.getBeforeDependents(), factories.keySet());
+			return (dependents.isEmpty()? null: dependents);
+		}
+
+		@Override
+		public boolean affectsGlobalScope(){
+			for(final CustomBlockParserFactory factory : factories.keySet())
+				if(factory.affectsGlobalScope())
+					return true;
+			return false;
+		}
+	}
+
+	/** Dispatches each node to the post-processors of the extensions interested in it, timing each one. */
+	private static final class ProfilingPostProcessorFactory implements PostProcessorFactory{
+		private final Map<PostProcessorFactory, String> factories = new LinkedHashMap<>();
+
+
+		@Override
+		public Map<Class<?>, Set<Class<?>>> getNodeTypes(){
+			final Map<Class<?>, Set<Class<?>>> nodeTypes = new HashMap<>();
+			for(final PostProcessorFactory factory : factories.keySet())
+				for(final Map.Entry<Class<?>, Set<Class<?>>> entry : factory.getNodeTypes().entrySet()){
+					final Set<Class<?>> ancestors = nodeTypes.computeIfAbsent(entry.getKey(), key -> new HashSet<>());
+					if(entry.getValue() != null)
+						ancestors.addAll(entry.getValue());
+				}
+			return nodeTypes;
+		}
+
+		@Override
+		public PostProcessor apply(final Document document){
+			final List<ProfiledPostProcessor> postProcessors = new ArrayList<>(factories.size());
+			for(final Map.Entry<PostProcessorFactory, String> entry : factories.entrySet())
+				postProcessors.add(new ProfiledPostProcessor(entry.getKey(), entry.getKey().apply(document), entry.getValue()));
+
+			return new PostProcessor(){
+				@Override
+				public Document processDocument(final Document document){
+					return document;
+				}
+
+				@Override
+				public void process(final NodeTracker state, final Node node){
+					final RenderProfile profile = RenderProfile.current();
+					for(final ProfiledPostProcessor postProcessor : postProcessors)
+						if(postProcessor.nodeTypes.containsKey(node.getClass())){
+							final long start = (profile != null? profile.enter(): 0L);
+							try{
+								postProcessor.postProcessor.process(state, node);
+							}
+							finally{
+								if(profile != null)
+									profile.exit(postProcessor.key, postProcessor.extension, postProcessor.construct, start);
+							}
+						}
+				}
+			};
+		}
+
+		@Override
+		public Set<Class<?>> getAfterDependents(){
+			final Set<Class<?>> dependents = new HashSet<>();
+			for(final PostProcessorFactory factory : factories.keySet())
+				addDependents(dependents, factory.getAfterDependents(), factories.keySet());
+			return (dependents.isEmpty()? null: dependents);
+		}
+
+		@Override
+		public Set<Class<?>> getBeforeDependents(){
+			final Set<Class<?>> dependents = new HashSet<>();
+			for(final PostProcessorFactory factory : factories.keySet())
+				addDependents(dependents, factory.getBeforeDependents(), factories.keySet());
+			return (dependents.isEmpty()? null: dependents);
+		}
+
+		@Override
+		public boolean affectsGlobalScope(){
+			for(final PostProcessorFactory factory : factories.keySet())
+				if(factory.affectsGlobalScope())
+					return true;
+			return false;
+		}
+	}
+
+	private static final class ProfiledPostProcessor{
+		private final Map<Class<?>, Set<Class<?>>> nodeTypes;
+		private final PostProcessor postProcessor;
+		private final String extension;
+		private final String construct;
+		private final String key;
+
+
+		private ProfiledPostProcessor(final PostProcessorFactory factory, final PostProcessor postProcessor,
+				final String extension){
+			nodeTypes = factory.getNodeTypes();
+			this.postProcessor = postProcessor;
+			this.extension = extension;
+			construct = nameOf(postProcessor);
+			key = extension + " " + construct;
+		}
+	}
+
+	/**
+	 * Adds the dependencies of a grouped factory, skipping the ones among the grouped factories.
+	 *
+	 * @param dependents	The collected dependencies.
+	 * @param factoryDependents	The dependencies of a grouped factory.
+	 * @param grouped	The grouped factories.
+	 */
+	private static void addDependents(final Set<Class<?>> dependents, final Set<Class<?>> factoryDependents,
+			final Collection<?> grouped){
+		if(factoryDependents == null)
+			return;
+
+		final Set<Class<?>> groupedClasses = new HashSet<>(grouped.size());
+		for(final Object factory : grouped)
+			groupedClasses.add(factory.getClass());
+		for(final Class<?> dependent : factoryDependents)
+			if(!groupedClasses.contains(dependent))
+				dependents.add(dependent);
+	}
+
+}
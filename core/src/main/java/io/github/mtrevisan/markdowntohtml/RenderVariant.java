@@ -0,0 +1,236 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import java.util.List;
+
+
+/**
+ * Describes one output edition of a parsed document (table of contents, copy prevention, template, stylesheet layers,
+ * extra scripts, image copies, code highlighting).
+ * <p>Instances are not modified once created, use the {@code with*} methods to derive a customized variant.</p>
+ */
+public final class RenderVariant{
+
+	static final String DEFAULT_TEMPLATE = "html-template.html";
+
+	private static final List<String> DEFAULT_STYLESHEET_LAYERS = List.of("stylesheet-layer-default.css");
+	private static final List<String> PREVENT_COPY_STYLESHEET_LAYERS = List.of("stylesheet-layer-prevent-copy.css");
+
+
+	private final boolean generateTOC;
+	private final boolean preventCopying;
+	private final String templateResource;
+	private final List<String> stylesheetLayers;
+	private final String stylesheetLink;
+	private final boolean pruneStylesheet;
+	private final boolean subsetFonts;
+	private final boolean minify;
+	private final String additionalScripts;
+	private final ImageVariants imageVariants;
+	private final boolean codeHighlighting;
+
+
+	/**
+	 * Creates a variant using the default template and stylesheet.
+	 *
+	 * @param generateTOC	Flag indicating whether to generate a table of contents.
+	 * @param preventCopying	Flag indicating whether to prevent text copying in the generated HTML.
+	 * @return	The variant.
+	 */
+	public static RenderVariant create(final boolean generateTOC, final boolean preventCopying){
+		return new RenderVariant(generateTOC, preventCopying, DEFAULT_TEMPLATE, null, null, false, false, false, "", null,
+			false);
+	}
+
+	private RenderVariant(final boolean generateTOC, final boolean preventCopying, final String templateResource,
+			final List<String> stylesheetLayers, final String stylesheetLink, final boolean pruneStylesheet,
+			final boolean subsetFonts, final boolean minify, final String additionalScripts, final ImageVariants imageVariants,
+			final boolean codeHighlighting){
+		this.generateTOC = generateTOC;
+		this.preventCopying = preventCopying;
+		this.templateResource = templateResource;
+		this.stylesheetLayers = stylesheetLayers;
+		this.stylesheetLink = stylesheetLink;
+		this.pruneStylesheet = pruneStylesheet;
+		this.subsetFonts = subsetFonts;
+		this.minify = minify;
+		this.additionalScripts = additionalScripts;
+		this.imageVariants = imageVariants;
+		this.codeHighlighting = codeHighlighting;
+	}
+
+	/**
+	 * @param templateResource	The name of the resource to be used as HTML template.
+	 * @return	A copy of this variant with the given template.
+	 */
+	public RenderVariant withTemplate(final String templateResource){
+		return new RenderVariant(generateTOC, preventCopying, templateResource, stylesheetLayers, stylesheetLink,
+			pruneStylesheet, subsetFonts, minify, additionalScripts, imageVariants, codeHighlighting);
+	}
+
+	/**
+	 * @param stylesheetLayers	The names of the resources to be layered over the base stylesheet, {@code null} to choose them
+	 * 	based on the copy prevention flag.
+	 * @return	A copy of this variant with the given stylesheet layers.
+	 */
+	public RenderVariant withStylesheetLayers(final List<String> stylesheetLayers){
+		return new RenderVariant(generateTOC, preventCopying, templateResource,
+			(stylesheetLayers != null? List.copyOf(stylesheetLayers): null), stylesheetLink, pruneStylesheet, subsetFonts,
+			minify, additionalScripts, imageVariants, codeHighlighting);
+	}
+
+	/**
+	 * @param stylesheetLink	The URL of the base stylesheet (see {@link Service#writeBaseStylesheet(java.io.File)}) to be
+	 * 	linked instead of inlined, {@code null} to inline it.
+	 * @return	A copy of this variant with the given base stylesheet link.
+	 */
+	public RenderVariant withStylesheetLink(final String stylesheetLink){
+		return new RenderVariant(generateTOC, preventCopying, templateResource, stylesheetLayers, stylesheetLink,
+			pruneStylesheet, subsetFonts, minify, additionalScripts, imageVariants, codeHighlighting);
+	}
+
+	/**
+	 * @param pruneStylesheet	Whether to remove from the inlined stylesheet the rules that cannot match any element of the page.
+	 * @return	A copy of this variant with the given stylesheet pruning flag.
+	 */
+	public RenderVariant withStylesheetPruning(final boolean pruneStylesheet){
+		return new RenderVariant(generateTOC, preventCopying, templateResource, stylesheetLayers, stylesheetLink,
+			pruneStylesheet, subsetFonts, minify, additionalScripts, imageVariants, codeHighlighting);
+	}
+
+	/**
+	 * @param subsetFonts	Whether to remove from the inlined stylesheet the embedded fonts not used by the text of the page.
+	 * @return	A copy of this variant with the given font subsetting flag.
+	 */
+	public RenderVariant withFontSubsetting(final boolean subsetFonts){
+		return new RenderVariant(generateTOC, preventCopying, templateResource, stylesheetLayers, stylesheetLink,
+			pruneStylesheet, subsetFonts, minify, additionalScripts, imageVariants, codeHighlighting);
+	}
+
+	/**
+	 * @param minify	Whether to collapse the whitespace and remove the comments of the page, and to minify the stylesheet and
+	 * 	the scripts.
+	 * @return	A copy of this variant with the given minification flag.
+	 */
+	public RenderVariant withMinification(final boolean minify){
+		return new RenderVariant(generateTOC, preventCopying, templateResource, stylesheetLayers, stylesheetLink,
+			pruneStylesheet, subsetFonts, minify, additionalScripts, imageVariants, codeHighlighting);
+	}
+
+	/**
+	 * @param additionalScripts	Raw HTML to be appended to the scripts of the page.
+	 * @return	A copy of this variant with the given additional scripts.
+	 */
+	public RenderVariant withAdditionalScripts(final String additionalScripts){
+		return new RenderVariant(generateTOC, preventCopying, templateResource, stylesheetLayers, stylesheetLink,
+			pruneStylesheet, subsetFonts, minify, (additionalScripts != null? additionalScripts: ""),
+			imageVariants, codeHighlighting);
+	}
+
+
+	/**
+	 * @param imageVariants	The generator of the downscaled copies of the images found beside the markdown file, offered to the
+	 * 	browser through a {@code srcset}; {@code null} to not generate copies.
+	 * @return	A copy of this variant with the given image copies generator.
+	 */
+	public RenderVariant withImageVariants(final ImageVariants imageVariants){
+		return new RenderVariant(generateTOC, preventCopying, templateResource, stylesheetLayers, stylesheetLink,
+			pruneStylesheet, subsetFonts, minify, additionalScripts, imageVariants, codeHighlighting);
+	}
+
+	/**
+	 * @param codeHighlighting	Whether the syntax of the fenced code blocks of a known language is highlighted in the page,
+	 * 	instead of being left to a script in the browser.
+	 * @return	A copy of this variant with the given code highlighting flag.
+	 */
+	public RenderVariant withCodeHighlighting(final boolean codeHighlighting){
+		return new RenderVariant(generateTOC, preventCopying, templateResource, stylesheetLayers, stylesheetLink,
+			pruneStylesheet, subsetFonts, minify, additionalScripts, imageVariants, codeHighlighting);
+	}
+
+
+	public boolean isGenerateTOC(){
+		return generateTOC;
+	}
+
+	public boolean isPreventCopying(){
+		return preventCopying;
+	}
+
+	public String getTemplateResource(){
+		return templateResource;
+	}
+
+	public List<String> getStylesheetLayers(){
+		return (stylesheetLayers != null
+			? stylesheetLayers
+			: (preventCopying? PREVENT_COPY_STYLESHEET_LAYERS: DEFAULT_STYLESHEET_LAYERS));
+	}
+
+	public String getStylesheetLink(){
+		return stylesheetLink;
+	}
+
+	public boolean isPruneStylesheet(){
+		return pruneStylesheet;
+	}
+
+	public boolean isSubsetFonts(){
+		return subsetFonts;
+	}
+
+	public boolean isMinify(){
+		return minify;
+	}
+
+	public String getAdditionalScripts(){
+		return additionalScripts;
+	}
+
+	public ImageVariants getImageVariants(){
+		return imageVariants;
+	}
+
+	public boolean isCodeHighlighting(){
+		return codeHighlighting;
+	}
+
+	/**
+	 * @return	A description of everything that affects the rendered page, used to identify cached pages.
+	 */
+	String getCacheKey(){
+		return generateTOC + "|" + preventCopying + "|" + templateResource + "|" + getStylesheetLayers() + "|" + stylesheetLink
+			+ "|" + pruneStylesheet + "|" + subsetFonts + "|" + minify + "|" + additionalScripts + "|" + getBodyCacheKey();
+	}
+
+	/**
+	 * @return	A description of everything that affects the rendered body, used to share it among the variants.
+	 */
+	String getBodyCacheKey(){
+		return (imageVariants != null? imageVariants.getCacheKey(): "") + "|" + codeHighlighting;
+	}
+
+}
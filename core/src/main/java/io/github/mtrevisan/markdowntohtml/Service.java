@@ -0,0 +1,1063 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import com.vladsch.flexmark.ast.Heading;
+import com.vladsch.flexmark.ast.HtmlBlockBase;
+import com.vladsch.flexmark.ast.HtmlInlineBase;
+import com.vladsch.flexmark.ext.footnotes.Footnote;
+import com.vladsch.flexmark.ext.footnotes.FootnoteExtension;
+import com.vladsch.flexmark.ext.gfm.strikethrough.SubscriptExtension;
+import com.vladsch.flexmark.ext.tables.TableBlock;
+import com.vladsch.flexmark.ext.tables.TablesExtension;
+import com.vladsch.flexmark.ext.typographic.TypographicExtension;
+import com.vladsch.flexmark.html.HtmlRenderer;
+import com.vladsch.flexmark.parser.Parser;
+import com.vladsch.flexmark.util.ast.Document;
+import com.vladsch.flexmark.util.ast.KeepType;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.collection.iteration.ReversiblePeekingIterator;
+import com.vladsch.flexmark.util.data.DataHolder;
+import com.vladsch.flexmark.util.data.MutableDataSet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+
+public class Service{
+
+	private static final Pattern ID_PATTERN = Pattern.compile("id\\s*=\\s*\"([^\"]*?)\"",
+		Pattern.MULTILINE | Pattern.UNICODE_CASE);
+	static final Pattern LOCAL_LINK_PATTERN = Pattern.compile("\\[\\[(.+?)]](?!\\()",
+		Pattern.MULTILINE | Pattern.UNICODE_CASE);
+	private static final Pattern KATEX_PATTERN = Pattern.compile("(?<!\\\\)(?<!\\\\\\\\)(\\$.+?\\$)(?!\\$)",
+		Pattern.DOTALL | Pattern.UNICODE_CASE);
+
+	//delimiters of the formulas, other than `$`, recognized by the KaTeX auto-render script, as written in markdown (where
+	//`\(` and `\[` need their backslash escaped to reach the page)
+	private static final Pattern KATEX_DELIMITER_PATTERN = Pattern.compile(
+		"\\\\\\\\[(\\[]|\\\\\\\\?begin\\{(?:equation|align|alignat|gather|CD)}");
+
+	private static final Pattern PATTERN_MAILTO = Pattern.compile("<a\\b[^>]*href=\"mailto:([^\"]+)\"[^>]*>");
+
+	private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ssXXX");
+	private static final String PROPERTY_MODIFIED_DATETIME = "modified-datetime";
+
+	private static final String STYLESHEET_BASE = "stylesheet-base.css";
+	private static final String STYLESHEET_CODE_HIGHLIGHT = "stylesheet-code-highlight.css";
+
+	//resources are constant for the lifetime of the application, read them only once
+	private static final ConcurrentHashMap<String, String> RESOURCES = new ConcurrentHashMap<>();
+	//resources are minified only once
+	private static final ConcurrentHashMap<String, String> MINIFIED_RESOURCES = new ConcurrentHashMap<>();
+	//stylesheets composed by base and layers, keyed by the list of layers
+	private static final ConcurrentHashMap<List<String>, String> STYLESHEETS = new ConcurrentHashMap<>();
+	private static final ConcurrentHashMap<List<String>, String> MINIFIED_STYLESHEETS = new ConcurrentHashMap<>();
+
+	private static volatile RenderCache renderCache;
+
+
+	/**
+	 * Holds the parser and the renderer, built with all the extensions on first use only, so the paths that do not parse
+	 * (e.g. {@link #extractIDs(File)}) do not pay for them.
+	 */
+	static final class Pipeline{
+		static final DataHolder OPTIONS;
+		static final Parser PARSER;
+		static final HtmlRenderer RENDERER;
+		static{
+			OPTIONS = new MutableDataSet()
+				.set(Parser.REFERENCES_KEEP, KeepType.LAST)
+				.set(Parser.EXTENSIONS, List.of(TablesExtension.create(), TypographicExtension.create(),
+					SubscriptExtension.create(), FootnoteExtension.create(), ImageExtension.create(),
+					CodeHighlightExtension.create()))
+
+				.set(HtmlRenderer.INDENT_SIZE, 3)
+				.set(HtmlRenderer.PERCENT_ENCODE_URLS, true)
+				//convert soft-breaks to hard breaks
+				.set(HtmlRenderer.SOFT_BREAK, "<br />\n")
+				.set(HtmlRenderer.GENERATE_HEADER_ID, true)
+				.set(HtmlRenderer.HEADER_ID_GENERATOR_NO_DUPED_DASHES, true)
+				.set(HtmlRenderer.RENDER_HEADER_ID, true)
+
+				.set(TablesExtension.COLUMN_SPANS, false)
+				.set(TablesExtension.APPEND_MISSING_COLUMNS, true)
+				.set(TablesExtension.DISCARD_EXTRA_COLUMNS, true)
+				.set(TablesExtension.HEADER_SEPARATOR_COLUMN_MATCH, true)
+				.toImmutable();
+
+			PARSER = Parser.builder(OPTIONS)
+				.build();
+			RENDERER = HtmlRenderer.builder(OPTIONS)
+				.build();
+		}
+
+		private Pipeline(){}
+	}
+
+	/*
+	add this javascript code to manage `a[href^="mailto:"]` elements:
+	window.onload=function(){
+		document.querySelectorAll('a[href^=":"]').forEach(a =>{
+			let b = atob(a.getAttribute('href').slice(1));
+			let k = b.charCodeAt(0);
+			a.href = [...b].slice(1)
+				.map(c => String.fromCharCode(c.charCodeAt(0) ^ k))
+				.join('');
+		})
+	}
+	*/
+
+
+	/**
+	 * Builds the parser and the renderer ahead of the first conversion (e.g. in background while the user interface starts).
+	 */
+	static void preload(){
+		//reading a field initializes the holder
+		Objects.requireNonNull(Pipeline.PARSER);
+	}
+
+	public static List<String> extractIDs(final File file) throws IOException{
+		return extractIDs(readContent(file));
+	}
+
+	/**
+	 * Converts the content of a file to HTML with optional features.
+	 *
+	 * @param file	The file to be converted.
+	 * @param generateTOC	Flag indicating whether to generate a table of contents.
+	 * @param preventCopying	Flag indicating whether to prevent text copying in the generated HTML.
+	 * @return	The converted content as HTML.
+	 * @throws IOException	If an I/O error occurs while reading the file or loading resources.
+	 */
+	public static String convert(final File file, final boolean generateTOC, final boolean preventCopying)
+			throws IOException{
+		return convert(file, List.of(RenderVariant.create(generateTOC, preventCopying)))
+			.get(0);
+	}
+
+	/**
+	 * Converts the content of a file to HTML once for each of the given variants, parsing the file only once.
+	 *
+	 * @param file	The file to be converted.
+	 * @param variants	The variants to be rendered.
+	 * @return	The converted contents as HTML, in the same order as the variants.
+	 * @throws IOException	If an I/O error occurs while reading the file or loading resources.
+	 */
+	public static List<String> convert(final File file, final List<RenderVariant> variants) throws IOException{
+		final byte[] source = Files.readAllBytes(file.toPath());
+		final RenderCache cache = renderCache;
+		if(cache == null)
+			return render(parse(file, source), variants);
+
+		final String path = file.getPath();
+		final byte[] sourceDigest = RenderCache.digestSource(file.toPath().toAbsolutePath().normalize(), getModifiedTime(file),
+			source, readPropertiesSource(file));
+		ParsedDocument parsedDocument = null;
+		final List<String> htmls = new ArrayList<>(variants.size());
+		for(final RenderVariant variant : variants){
+			final String key = RenderCache.key(sourceDigest, variant);
+			final ConversionStageEvent event = ConversionStageEvent.start(path, ConversionStageEvent.CACHE_LOOKUP);
+			String html = cache.get(key);
+			event.complete(source.length, (html != null? html.length(): 0));
+			if(html == null){
+				//parse only if at least one variant is not cached
+				if(parsedDocument == null)
+					parsedDocument = parse(file, source);
+				html = replacePlaceholders(parsedDocument, variant);
+				cache.put(key, html);
+			}
+			htmls.add(html);
+		}
+		return htmls;
+	}
+
+	/**
+	 * Sets the cache of the pages rendered by the {@code convert} methods, so the conversion of unchanged files is skipped.
+	 *
+	 * @param cache	The cache, {@code null} to disable caching.
+	 */
+	public static void setRenderCache(final RenderCache cache){
+		renderCache = cache;
+	}
+
+	/**
+	 * Reads, pre-processes and parses a file (along with its sibling properties file).
+	 *
+	 * @param file	The file to be parsed.
+	 * @return	The parsed document, ready to be rendered.
+	 * @throws IOException	If an I/O error occurs while reading the file.
+	 */
+	public static ParsedDocument parse(final File file) throws IOException{
+		return parse(file, Files.readAllBytes(file.toPath()));
+	}
+
+	/**
+	 * Pre-processes and parses the content of a file (along with its sibling properties file).
+	 *
+	 * @param file	The file the content was read from.
+	 * @param source	The content of the file.
+	 * @return	The parsed document, ready to be rendered.
+	 */
+	static ParsedDocument parse(final File file, final byte[] source){
+		final ConversionStageEvent event = ConversionStageEvent.start(file.getPath(), ConversionStageEvent.LOAD_PROPERTIES);
+		final Properties properties = loadProperties(file);
+		event.complete(0, properties.size());
+
+		return parse(file, source, properties, null);
+	}
+
+	/**
+	 * Pre-processes and parses the content of a file, possibly belonging to a site, whose local links (e.g.
+	 * {@code [[Page]]}) are then resolved against the other pages of the site.
+	 * <p>The images are resolved against the directory of the file.</p>
+	 *
+	 * @param file	The file the content was read from.
+	 * @param source	The content of the file.
+	 * @param properties	The values of the placeholders of the template.
+	 * @param site	The index of the site, {@code null} to replace the local links with their text.
+	 * @return	The parsed document, ready to be rendered.
+	 */
+	public static ParsedDocument parse(final File file, final byte[] source, final Properties properties,
+			final SiteIndex site){
+		final String path = file.getPath();
+		return parse(path, ImageExtension.getSourceDirectory(path), source, properties, site);
+	}
+
+	/**
+	 * Pre-processes and parses a markdown content not coming from a file.
+	 * <p>The content is not trusted: its images are not looked for in the file system.</p>
+	 *
+	 * @param path	The path identifying the content (used for diagnostics only).
+	 * @param source	The markdown content, encoded in UTF-8.
+	 * @param properties	The values of the placeholders of the template.
+	 * @return	The parsed document, ready to be rendered.
+	 */
+	public static ParsedDocument parse(final String path, final byte[] source, final Properties properties){
+		return parse(path, null, source, properties, null);
+	}
+
+	private static ParsedDocument parse(final String path, final Path directory, final byte[] source,
+			final Properties properties, final SiteIndex site){
+		ConversionStageEvent event = ConversionStageEvent.start(path, ConversionStageEvent.DECODE);
+		String content = decode(source);
+		event.complete(source.length, content.length());
+
+		event = ConversionStageEvent.start(path, (site != null
+			? ConversionStageEvent.RESOLVE_LOCAL_LINKS
+			: ConversionStageEvent.REMOVE_LOCAL_LINKS));
+		final int inputLength = content.length();
+		content = (site != null? site.resolveLocalLinks(path, content): removeLocalLinks(content));
+		event.complete(inputLength, content.length());
+
+		//extract KaTeX code
+		event = ConversionStageEvent.start(path, ConversionStageEvent.EXTRACT_KATEX);
+		final int contentLength = content.length();
+		final List<String> katexCodes = extractKaTeXCode(content);
+		content = replaceKaTeXCodeWithPlaceholders(content, katexCodes);
+		event.complete(contentLength, content.length());
+
+		//obfuscate emails
+		event = ConversionStageEvent.start(path, ConversionStageEvent.OBFUSCATE_EMAILS);
+		final int plainLength = content.length();
+		content = obfuscateEmails(content);
+		event.complete(plainLength, content.length());
+
+		//generate AST
+		event = ConversionStageEvent.start(path, ConversionStageEvent.PARSE);
+		final Document document = getParser().parse(content);
+		//the images are resolved against the directory of the file
+		document.set(ImageExtension.SOURCE_DIRECTORY, directory);
+		event.complete(content.length(), 0);
+
+		event = ConversionStageEvent.start(path, ConversionStageEvent.ANALYZE);
+		final DocumentStatistics statistics = new DocumentStatistics(path, source.length, katexCodes.size());
+		final DocumentMetadata metadata = DocumentMetadata.create(katexCodes);
+		final Set<DocumentFeature> features = extractFeatures(document, katexCodes, statistics, metadata);
+		final Properties completedProperties = metadata.complete(properties, directory);
+		event.complete(content.length(), features.size());
+
+		return new ParsedDocument(path, document, completedProperties, katexCodes, features, statistics);
+	}
+
+	private static Parser getParser(){
+		return (RenderProfile.current() != null? RenderProfiler.getParser(): Pipeline.PARSER);
+	}
+
+	private static HtmlRenderer getRenderer(){
+		return (RenderProfile.current() != null? RenderProfiler.getRenderer(): Pipeline.RENDERER);
+	}
+
+	/**
+	 * Renders a parsed document into HTML.
+	 *
+	 * @param parsedDocument	The parsed document.
+	 * @param variant	The variant to be rendered.
+	 * @return	The rendered content as HTML.
+	 * @throws IOException	If an I/O error occurs while loading resources.
+	 */
+	public static String render(final ParsedDocument parsedDocument, final RenderVariant variant) throws IOException{
+		return replacePlaceholders(parsedDocument, variant);
+	}
+
+	/**
+	 * Renders a parsed document into HTML once for each of the given variants.
+	 * <p>The body of the document is rendered only once and shared among all the variants.</p>
+	 *
+	 * @param parsedDocument	The parsed document.
+	 * @param variants	The variants to be rendered.
+	 * @return	The rendered contents as HTML, in the same order as the variants.
+	 * @throws IOException	If an I/O error occurs while loading resources.
+	 */
+	public static List<String> render(final ParsedDocument parsedDocument, final List<RenderVariant> variants)
+			throws IOException{
+		final List<String> htmls = new ArrayList<>(variants.size());
+		for(final RenderVariant variant : variants)
+			htmls.add(replacePlaceholders(parsedDocument, variant));
+		return htmls;
+	}
+
+	/**
+	 * Reads the content of a file, normalizing the line terminators.
+	 *
+	 * @param file	The file to be read.
+	 * @return	The content of the file.
+	 * @throws IOException	If an I/O error occurs while reading the file.
+	 */
+	static String readContent(final File file) throws IOException{
+		return decode(Files.readAllBytes(file.toPath()));
+	}
+
+	/**
+	 * Decodes the content of a file, normalizing the line terminators.
+	 *
+	 * @param source	The content of the file.
+	 * @return	The decoded content.
+	 */
+	static String decode(final byte[] source){
+		return new String(source, StandardCharsets.UTF_8)
+			.lines()
+			.collect(Collectors.joining("\n"));
+	}
+
+	/**
+	 * Generates the body of an HTML document with a table of contents (TOC).
+	 *
+	 * @param document	The root node of the document.
+	 * @return	The generated HTML body with the table of contents or "${content}" if no section headings are found.
+	 * @throws IOException	If an I/O error occurs while reading the file or loading resources.
+	 */
+	static String generateBodyWithTOC(final Node document) throws IOException{
+		//extract list of h1 and h2
+		final List<Heading> sectionHeadings = extractSectionHeadings(document, 2);
+		if(!sectionHeadings.isEmpty()){
+			final String tocTemplateBegin = getFileContentFromResource("toc-template-begin.html");
+			final String tocTemplateItem = getFileContentFromResource("toc-template-item.html");
+			final String tocTemplateEnd = getFileContentFromResource("toc-template-end.html");
+
+			final StringBuilder toc = new StringBuilder();
+			for(int i = 0; i < sectionHeadings.size(); i ++){
+				final Heading sectionHeading = sectionHeadings.get(i);
+
+				if(sectionHeading.getLevel() == 1 && i > 0)
+					toc.append(tocTemplateEnd);
+
+				final String headingText = sectionHeading.getText().toString();
+				toc.append((sectionHeading.getLevel() == 1? tocTemplateBegin: tocTemplateItem)
+					.replace("${id}", sectionHeading.getAnchorRefId())
+					.replace("${heading}", headingText));
+			}
+			toc.append(tocTemplateEnd);
+
+			final String bodyTemplateWithTOC = getFileContentFromResource("body-template-with-toc.html");
+			return bodyTemplateWithTOC.replace("${toc}", toc.toString());
+		}
+		return "${content}";
+	}
+
+	/**
+	 * Extracts the section headings from a document up to a specified maximum level.
+	 *
+	 * @param document	The root node of the document.
+	 * @param maxLevel	The maximum level of headings to extract.
+	 * @return	A list of {@link Heading} objects representing the extracted section headings.
+	 */
+	private static List<Heading> extractSectionHeadings(final Node document, final int maxLevel){
+		final List<Heading> sectionHeadings = new ArrayList<>();
+		final ReversiblePeekingIterator<Node> itr = document.getChildIterator();
+		while(itr.hasNext()){
+			final Node node = itr.next();
+			if(node.getClass() == Heading.class && ((Heading)node).getLevel() <= maxLevel)
+				sectionHeadings.add((Heading)node);
+		}
+		return sectionHeadings;
+	}
+
+
+	/**
+	 * Extracts the constructs of a document that require dedicated scripts or styles, gathering its statistics and metadata
+	 * in the same traversal.
+	 *
+	 * @param document	The root node of the document.
+	 * @param katexCodes	The list of extracted KaTeX codes.
+	 * @param statistics	The statistics to be filled.
+	 * @param metadata	The metadata to be filled.
+	 * @return	The set of features found.
+	 */
+	private static Set<DocumentFeature> extractFeatures(final Node document, final List<String> katexCodes,
+			final DocumentStatistics statistics, final DocumentMetadata metadata){
+		final Set<DocumentFeature> features = EnumSet.noneOf(DocumentFeature.class);
+		if(!katexCodes.isEmpty() || KATEX_DELIMITER_PATTERN.matcher(document.getChars()).find())
+			features.add(DocumentFeature.MATH);
+
+		for(final Node node : document.getDescendants()){
+			statistics.add(node);
+			metadata.add(node);
+
+			if(node instanceof HtmlBlockBase || node instanceof HtmlInlineBase){
+				final String html = node.getChars().toString();
+				if(html.contains("href=\":"))
+					features.add(DocumentFeature.MAIL_LINKS);
+				if(html.contains("<details"))
+					features.add(DocumentFeature.DETAILS);
+				if(html.contains("toggleImageDisplay(") || html.contains("toggleNSFWDisplay("))
+					features.add(DocumentFeature.IMAGE_TOGGLES);
+			}
+			else if(node instanceof Footnote)
+				features.add(DocumentFeature.FOOTNOTES);
+			else if(node instanceof TableBlock)
+				features.add(DocumentFeature.TABLES);
+		}
+		return features;
+	}
+
+
+	/**
+	 * Reads the content of a file from a resource in the classpath, caching it for subsequent calls.
+	 *
+	 * @param filename	The filename of the resource to read.
+	 * @return	The string content of the file.
+	 * @throws IOException	If an I/O error occurs while reading the file.
+	 */
+	private static String getFileContentFromResource(final String filename) throws IOException{
+		try{
+			return RESOURCES.computeIfAbsent(filename, name -> {
+				try{
+					return readFileContentFromResource(name);
+				}
+				catch(final IOException ioe){
+					throw new UncheckedIOException(ioe);
+				}
+			});
+		}
+		catch(final UncheckedIOException uioe){
+			throw uioe.getCause();
+		}
+	}
+
+	/**
+	 * Retrieves the content of a file from a resource in the classpath, possibly minified, caching it for subsequent calls.
+	 *
+	 * @param filename	The filename of the resource to read.
+	 * @param minify	Whether to minify the content (as a stylesheet if its name ends with {@code .css}, as HTML otherwise).
+	 * @return	The string content of the file.
+	 * @throws IOException	If an I/O error occurs while reading the file.
+	 */
+	private static String getFileContentFromResource(final String filename, final boolean minify) throws IOException{
+		if(!minify)
+			return getFileContentFromResource(filename);
+
+		try{
+			return MINIFIED_RESOURCES.computeIfAbsent(filename, name -> {
+				try{
+					final String content = getFileContentFromResource(name);
+					return (name.endsWith(".css")
+						? HtmlMinifier.minifyStylesheet(content)
+						: HtmlMinifier.minifyResource(content));
+				}
+				catch(final IOException ioe){
+					throw new UncheckedIOException(ioe);
+				}
+			});
+		}
+		catch(final UncheckedIOException uioe){
+			throw uioe.getCause();
+		}
+	}
+
+	/**
+	 * Reads the content of a file from a resource in the classpath.
+	 *
+	 * @param filename	The filename of the resource to read.
+	 * @return	The string content of the file.
+	 * @throws IOException	If an I/O error occurs while reading the file.
+	 */
+	private static String readFileContentFromResource(String filename) throws IOException{
+		//the class loader that loaded the class
+		final ClassLoader classLoader = Service.class.getClassLoader();
+		filename = "resources/" + (filename.charAt(0) == '/'? filename.substring(1): filename);
+		try(final InputStream is = classLoader.getResourceAsStream(filename)){
+			//the stream holding the file content
+			if(is == null)
+				throw new IllegalArgumentException("File " + filename + " not found! ");
+
+			return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Composes the stylesheet made by the base and the given layers, caching it for subsequent calls.
+	 *
+	 * @param layers	The names of the resources to be layered over the base stylesheet.
+	 * @param includeBase	Whether to include the base stylesheet (otherwise it is expected to be linked).
+	 * @param minify	Whether to minify the stylesheet.
+	 * @return	The composed stylesheet.
+	 * @throws IOException	If an I/O error occurs while reading the resources.
+	 */
+	private static String getStylesheet(final List<String> layers, final boolean includeBase, final boolean minify)
+			throws IOException{
+		if(!includeBase)
+			return composeStylesheet(layers, minify);
+
+		try{
+			return (minify? MINIFIED_STYLESHEETS: STYLESHEETS).computeIfAbsent(layers, key -> {
+				try{
+					return getFileContentFromResource(STYLESHEET_BASE, minify) + "\n" + composeStylesheet(key, minify);
+				}
+				catch(final IOException ioe){
+					throw new UncheckedIOException(ioe);
+				}
+			});
+		}
+		catch(final UncheckedIOException uioe){
+			throw uioe.getCause();
+		}
+	}
+
+	private static String composeStylesheet(final List<String> layers, final boolean minify) throws IOException{
+		final StringBuilder sb = new StringBuilder();
+		for(final String layer : layers)
+			sb.append(getFileContentFromResource(layer, minify));
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the base stylesheet, the one shared by every variant, into a file, so it can be linked by the pages rendered
+	 * with a {@link RenderVariant#withStylesheetLink(String) stylesheet link}.
+	 *
+	 * @param file	The file to be written.
+	 * @throws IOException	If an I/O error occurs while reading the resource or writing the file.
+	 */
+	public static void writeBaseStylesheet(final File file) throws IOException{
+		writeIfChanged(file, getFileContentFromResource(STYLESHEET_BASE).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Writes a file only if its content differs from the given one, so the pages whose source did not change keep their
+	 * modification time (and are skipped by synchronization tools and caches).
+	 * <p>The content is written into a temporary file beside the target, then moved over it, so readers never see a
+	 * partially written file.</p>
+	 *
+	 * @param file	The file to be written.
+	 * @param content	The content of the file.
+	 * @return	Whether the file was written.
+	 * @throws IOException	If an I/O error occurs while reading or writing the file.
+	 */
+	public static boolean writeIfChanged(final File file, final byte[] content) throws IOException{
+		return writeIfChanged(file, ByteBuffer.wrap(content));
+	}
+
+	/**
+	 * Writes a file, with a single gathering write, only if its content differs from the given one.
+	 *
+	 * @param file	The file to be written.
+	 * @param content	The buffers composing the content of the file, they are read through duplicates and so left untouched.
+	 * @return	Whether the file was written.
+	 * @throws IOException	If an I/O error occurs while reading or writing the file.
+	 * @see #writeIfChanged(File, byte[])
+	 */
+	public static boolean writeIfChanged(final File file, final ByteBuffer... content) throws IOException{
+		final Path path = file.toPath();
+		final long size = remaining(content);
+		if(Files.isRegularFile(path) && Files.size(path) == size && contentEquals(path, content))
+			return false;
+
+		final ByteBuffer[] buffers = new ByteBuffer[content.length];
+		for(int i = 0; i < content.length; i ++)
+			buffers[i] = content[i].duplicate();
+		final Path temporary = temporarySibling(path);
+		try{
+			try(final FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW,
+					StandardOpenOption.WRITE)){
+				long written = 0L;
+				while(written < size)
+					written += channel.write(buffers);
+			}
+			moveOver(temporary, path);
+		}
+		finally{
+			Files.deleteIfExists(temporary);
+		}
+		return true;
+	}
+
+	private static boolean contentEquals(final Path path, final ByteBuffer[] content) throws IOException{
+		try(final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+			final ByteBuffer chunk = ByteBuffer.allocate(64 << 10)
+				.limit(0);
+			for(final ByteBuffer buffer : content){
+				final ByteBuffer expected = buffer.duplicate();
+				while(expected.hasRemaining()){
+					if(!chunk.hasRemaining()){
+						chunk.clear();
+						if(channel.read(chunk) < 0)
+							return false;
+
+						chunk.flip();
+						continue;
+					}
+
+					final int length = Math.min(chunk.remaining(), expected.remaining());
+					if(chunk.slice(chunk.position(), length).mismatch(expected.slice(expected.position(), length)) >= 0)
+						return false;
+
+					chunk.position(chunk.position() + length);
+					expected.position(expected.position() + length);
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * @param path	The file to be written.
+	 * @return	The temporary file to write into before moving it over the given one, unique among the processes and threads
+	 * 	that could write the same file.
+	 */
+	static Path temporarySibling(final Path path){
+		return path.resolveSibling("." + path.getFileName() + "." + ProcessHandle.current().pid() + "-"
+			+ Thread.currentThread().threadId() + ".tmp");
+	}
+
+	/**
+	 * Replaces a file with a temporary one, atomically if the file system allows it.
+	 *
+	 * @param temporary	The temporary file.
+	 * @param path	The file to be replaced.
+	 * @throws IOException	If an I/O error occurs while moving the file.
+	 */
+	static void moveOver(final Path temporary, final Path path) throws IOException{
+		try{
+			Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch(final AtomicMoveNotSupportedException ignored){
+			Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+
+	static String removeLocalLinks(final String input){
+		final Matcher matcher = LOCAL_LINK_PATTERN.matcher(input);
+		final StringBuilder sb = new StringBuilder();
+		while(matcher.find())
+			matcher.appendReplacement(sb, matcher.group(1));
+		matcher.appendTail(sb);
+		return sb.toString();
+	}
+
+
+	static List<String> extractIDs(final String input){
+		final List<String> ids = new ArrayList<>();
+		final Matcher matcher = ID_PATTERN.matcher(input);
+		while(matcher.find())
+			ids.add(matcher.group(1));
+		return ids;
+	}
+
+
+	/**
+	 * Extracts KaTeX code from the given input string.
+	 *
+	 * @param input	The input string with KaTeX code.
+	 * @return	The list of extracted KaTeX codes.
+	 */
+	static List<String> extractKaTeXCode(final String input){
+		final List<String> katexCodes = new ArrayList<>();
+		final Matcher inlineMatcher = KATEX_PATTERN.matcher(input);
+		while(inlineMatcher.find())
+			katexCodes.add(inlineMatcher.group(1));
+		return katexCodes;
+	}
+
+	/**
+	 * Replaces KaTeX code with placeholders in the given input string.
+	 *
+	 * @param input	The input string with KaTeX code.
+	 * @param katexCodes	The list of KaTeX codes to be replaced.
+	 * @return	The input string with KaTeX code replaced with placeholders.
+	 */
+	static String replaceKaTeXCodeWithPlaceholders(String input, final List<String> katexCodes){
+		final int size = katexCodes.size();
+		for(int i = 0; i < size; i ++)
+			input = input.replace(katexCodes.get(i), "[$$]{" + i + "}");
+		return input;
+	}
+
+	/**
+	 * Reinserts the KaTeX code into the input string.
+	 *
+	 * @param input	The input string with placeholders for KaTeX code.
+	 * @param katexCodes	The list of KaTeX codes to be reinserted.
+	 * @return	The input string with the KaTeX code replaced.
+	 */
+	static String reinsertKaTeXCode(String input, final List<String> katexCodes){
+		final int size = katexCodes.size();
+		for(int i = 0; i < size; i ++)
+			input = input.replace("[$$]{" + i + "}", katexCodes.get(i));
+		return input;
+	}
+
+
+	/**
+	 * Obfuscates emails in a given input string.
+	 *
+	 * @param input	The input string containing emails.
+	 * @return	The input string with obfuscated emails.
+	 */
+	static String obfuscateEmails(final String input){
+		final Matcher matcher = PATTERN_MAILTO.matcher(input);
+		final StringBuilder result = new StringBuilder();
+		while(matcher.find()){
+			final String emailPart = matcher.group(1);
+			//derived from the address, so the page does not change between conversions (a zero key would not obfuscate)
+			final String encrypted = encode(emailPart, 1 + Math.floorMod(emailPart.hashCode(), 255));
+			final String replacement = matcher.group(0)
+				.replaceFirst("href=\"mailto:[^\"]+\"", "href=\":" + encrypted + "\"");
+			matcher.appendReplacement(result, Matcher.quoteReplacement(replacement));
+		}
+		matcher.appendTail(result);
+		return result.toString();
+	}
+
+	/**
+	 * Encodes a given string using a specified key.
+	 *
+	 * @param decoded	The string to be encoded.
+	 * @param key	The key used for encoding.
+	 * @return	The encoded string.
+	 */
+	private static final java.util.Base64.Encoder encoder = java.util.Base64.getEncoder();
+	private static String encode(final String decoded, final int key){
+//		final StringBuilder sb = new StringBuilder(make2DigitsLong(key));
+//		for(int n = 0; n < decoded.length(); n ++)
+//			sb.append(make2DigitsLong(decoded.charAt(n) ^ key));
+//		return sb.toString();
+
+		final byte[] inputBytes = decoded.getBytes();
+		final byte[] result = new byte[inputBytes.length + 1];
+		result[0] = (byte)key;
+		for(int i = 0; i < inputBytes.length; i ++)
+			result[i + 1] = (byte)(inputBytes[i] ^ key);
+		return encoder.encodeToString(result);
+	}
+
+	/**
+	 * Converts an integer value to a 2-digit hexadecimal string.
+	 * <p>If the hexadecimal string is shorter than 2 characters, it prepends a 0.</p>
+	 *
+	 * @param value	The integer value to be converted.
+	 * @return	The 2-digit hexadecimal string.
+	 */
+	private static String make2DigitsLong(final int value){
+		final String hex = Integer.toHexString(value);
+		return (hex.length() < 2? "0" + hex: hex);
+	}
+
+
+	/**
+	 * Replaces placeholders in an HTML template with values from properties and generates the final HTML string.
+	 *
+	 * @param parsedDocument	The parsed document.
+	 * @param variant	The variant to be rendered.
+	 * @return	The generated HTML string with replaced placeholders.
+	 * @throws IOException	If an I/O error occurs while loading resources or reading the file.
+	 */
+	static String replacePlaceholders(final ParsedDocument parsedDocument, final RenderVariant variant)
+			throws IOException{
+		final String body = renderVariantBody(parsedDocument, variant);
+
+		final ConversionStageEvent event = ConversionStageEvent.start(parsedDocument.getPath(),
+			ConversionStageEvent.REPLACE_PLACEHOLDERS);
+		final PageSegments page = composePage(parsedDocument, variant, body);
+		//the page is written once, through the minifier if requested
+		final StringWriter sw = new StringWriter(page.length());
+		try(final Writer writer = (variant.isMinify()? new HtmlMinifier(sw): sw)){
+			page.write(writer);
+		}
+		final String html = sw.toString();
+		event.complete(body.length(), html.length());
+		return html;
+	}
+
+	/**
+	 * Renders a parsed document into HTML encoded in UTF-8, ready to be written with a gathering write.
+	 * <p>The parts of the page coming from the resources (stylesheet, scripts) are encoded only once and shared, read-only,
+	 * by all the pages; so the cost of a page depends on its body only.</p>
+	 *
+	 * @param parsedDocument	The parsed document.
+	 * @param variant	The variant to be rendered.
+	 * @return	The buffers composing the page, in order, to be read only through their duplicates, or once.
+	 * @throws IOException	If an I/O error occurs while loading resources.
+	 */
+	public static ByteBuffer[] renderEncoded(final ParsedDocument parsedDocument, final RenderVariant variant)
+			throws IOException{
+		final String body = renderVariantBody(parsedDocument, variant);
+
+		final ConversionStageEvent event = ConversionStageEvent.start(parsedDocument.getPath(),
+			ConversionStageEvent.REPLACE_PLACEHOLDERS);
+		final ByteBuffer[] buffers = composePage(parsedDocument, variant, body)
+			.encode(variant.isMinify());
+		event.complete(body.length(), remaining(buffers));
+		return buffers;
+	}
+
+	/**
+	 * @param buffers	The buffers.
+	 * @return	The number of bytes remaining in all the buffers.
+	 */
+	public static long remaining(final ByteBuffer... buffers){
+		long remaining = 0L;
+		for(final ByteBuffer buffer : buffers)
+			remaining += buffer.remaining();
+		return remaining;
+	}
+
+	private static String renderVariantBody(final ParsedDocument parsedDocument, final RenderVariant variant)
+			throws IOException{
+		return (variant.isGenerateTOC()
+			? renderBodyWithTOC(parsedDocument, variant)
+			: renderBody(parsedDocument, variant));
+	}
+
+	/**
+	 * Splits the page of a document into the template, with the properties replaced, and the contents of the placeholders.
+	 *
+	 * @param parsedDocument	The parsed document.
+	 * @param variant	The variant to be rendered.
+	 * @param body	The rendered body.
+	 * @return	The page.
+	 * @throws IOException	If an I/O error occurs while loading resources.
+	 */
+	private static PageSegments composePage(final ParsedDocument parsedDocument, final RenderVariant variant,
+			final String body) throws IOException{
+		String htmlTemplate = getFileContentFromResource(variant.getTemplateResource());
+
+		final Properties properties = parsedDocument.getProperties();
+		final Set<String> keys = properties.stringPropertyNames();
+		for(final String key : keys){
+			final String value = properties.getProperty(key);
+
+			htmlTemplate = htmlTemplate.replace("${" + key + "}", value);
+		}
+		//content not coming from a file, without an explicit modification time
+		htmlTemplate = htmlTemplate.replace("${" + PROPERTY_MODIFIED_DATETIME + "}",
+			DATE_TIME_FORMATTER.format(ZonedDateTime.now()));
+
+
+		final String stylesheetLink = variant.getStylesheetLink();
+		htmlTemplate = htmlTemplate.replace("${stylesheet-link}", (stylesheetLink != null
+			? "<link rel=\"stylesheet\" href=\"" + stylesheetLink + "\" />"
+			: ""));
+		final PageSegments page = PageSegments.create(htmlTemplate);
+
+		final boolean minify = variant.isMinify();
+		final Set<DocumentFeature> features = parsedDocument.getFeatures();
+		final String katex = (features.contains(DocumentFeature.MATH)
+			? getFileContentFromResource("katex.html", minify)
+			: "");
+		page.add(PageSegments.KATEX, katex, true);
+		final List<String> scripts = new ArrayList<>(4);
+		if(features.contains(DocumentFeature.MAIL_LINKS))
+			scripts.add(getFileContentFromResource("mailto-decoder.html", minify));
+		if(features.contains(DocumentFeature.IMAGE_TOGGLES))
+			scripts.add(getFileContentFromResource("image-toggle.html", minify));
+		if(features.contains(DocumentFeature.DETAILS))
+			scripts.add(getFileContentFromResource("open-details-when-printing.html", minify));
+		if(variant.isPreventCopying())
+			scripts.add(getFileContentFromResource("prevent-copy.html", minify));
+		for(final String script : scripts)
+			page.add(PageSegments.SCRIPTS, script, true);
+		page.add(PageSegments.SCRIPTS, variant.getAdditionalScripts(), false);
+
+		List<String> layers = variant.getStylesheetLayers();
+		//the colors of the highlighted code are needed only by the pages highlighting it
+		if(variant.isCodeHighlighting()){
+			layers = new ArrayList<>(layers);
+			layers.add(STYLESHEET_CODE_HIGHLIGHT);
+		}
+		String stylesheet = getStylesheet(layers, stylesheetLink == null, minify);
+		//subset first: the subsets are few and shared among pages, so the pruner can reuse their rule index
+		if(variant.isSubsetFonts())
+			//the text of the template (e.g. a footer) is drawn with the fonts too
+			stylesheet = FontFaceSubsetter.subset(stylesheet, htmlTemplate.replace(PageSegments.BODY, body));
+		if(variant.isPruneStylesheet())
+			stylesheet = StylesheetPruner.prune(stylesheet, htmlTemplate, katex, String.join("", scripts),
+				variant.getAdditionalScripts(), body);
+		//a stylesheet tailored to the page is not shared
+		page.add(PageSegments.STYLESHEET, stylesheet, !variant.isSubsetFonts() && !variant.isPruneStylesheet());
+		page.add(PageSegments.BODY, body, false);
+		return page;
+	}
+
+	/**
+	 * Renders the body of a parsed document, reusing the one already rendered if present for the same body options.
+	 *
+	 * @param parsedDocument	The parsed document.
+	 * @param variant	The variant to be rendered.
+	 * @return	The rendered body.
+	 */
+	private static String renderBody(final ParsedDocument parsedDocument, final RenderVariant variant){
+		final String bodyKey = variant.getBodyCacheKey();
+		String body = parsedDocument.getBody(bodyKey);
+		if(body == null){
+			final ConversionStageEvent event = ConversionStageEvent.start(parsedDocument.getPath(),
+				ConversionStageEvent.RENDER);
+			final Document document = (Document)parsedDocument.getDocument();
+			document.set(ImageExtension.IMAGE_VARIANTS, variant.getImageVariants());
+			document.set(CodeHighlightExtension.CODE_HIGHLIGHTING, variant.isCodeHighlighting());
+			final String html = getRenderer().render(document);
+			body = reinsertKaTeXCode(html, parsedDocument.getKatexCodes());
+			event.complete(0, body.length());
+			parsedDocument.setBody(bodyKey, body);
+		}
+		return body;
+	}
+
+	/**
+	 * Renders the body of a parsed document along with its table of contents, reusing the one already rendered if present.
+	 *
+	 * @param parsedDocument	The parsed document.
+	 * @param variant	The variant to be rendered.
+	 * @return	The rendered body with the table of contents.
+	 * @throws IOException	If an I/O error occurs while loading resources.
+	 */
+	private static String renderBodyWithTOC(final ParsedDocument parsedDocument, final RenderVariant variant)
+			throws IOException{
+		final String bodyKey = variant.getBodyCacheKey();
+		String bodyWithTOC = parsedDocument.getBodyWithTOC(bodyKey);
+		if(bodyWithTOC == null){
+			final String body = renderBody(parsedDocument, variant);
+
+			final ConversionStageEvent event = ConversionStageEvent.start(parsedDocument.getPath(),
+				ConversionStageEvent.GENERATE_TOC);
+			bodyWithTOC = generateBodyWithTOC(parsedDocument.getDocument())
+				.replace("${content}", body);
+			event.complete(body.length(), bodyWithTOC.length());
+			parsedDocument.setBodyWithTOC(bodyKey, bodyWithTOC);
+		}
+		return bodyWithTOC;
+	}
+
+	/**
+	 * Loads properties from a file.
+	 * <p>Unless given in the properties, the modification time of the page is the one of its source (or of its properties,
+	 * if later), so converting an unchanged file gives the same page.</p>
+	 *
+	 * @param file	The file containing the properties.
+	 * @return	The loaded properties.
+	 */
+	static Properties loadProperties(final File file){
+		final Properties properties = new Properties();
+		final File propertiesFile = getPropertiesFile(file);
+		try(final Reader in = new InputStreamReader(new FileInputStream(propertiesFile), StandardCharsets.UTF_8)){
+			properties.load(in);
+		}
+		catch(final IOException ignored){}
+
+		final long modified = getModifiedTime(file);
+		if(modified > 0L && !properties.containsKey(PROPERTY_MODIFIED_DATETIME))
+			properties.setProperty(PROPERTY_MODIFIED_DATETIME, DATE_TIME_FORMATTER.format(Instant.ofEpochMilli(modified)
+				.atZone(ZoneId.systemDefault())));
+		return properties;
+	}
+
+	/**
+	 * @param file	The markdown file.
+	 * @return	The modification time of the file, or of its properties file if later; {@code 0} if neither exists.
+	 */
+	private static long getModifiedTime(final File file){
+		return Math.max(file.lastModified(), getPropertiesFile(file).lastModified());
+	}
+
+	/**
+	 * Reads the raw content of the properties file of a file.
+	 *
+	 * @param file	The file the properties belong to.
+	 * @return	The content of the properties file, {@code null} if there is none.
+	 */
+	private static byte[] readPropertiesSource(final File file){
+		try{
+			return Files.readAllBytes(getPropertiesFile(file).toPath());
+		}
+		catch(final IOException ignored){
+			return null;
+		}
+	}
+
+	private static File getPropertiesFile(final File file){
+		return new File(file.getAbsolutePath()
+			.replaceFirst("\\.[^.]+$", ".properties"));
+	}
+
+}
@@ -0,0 +1,347 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import com.vladsch.flexmark.ast.Heading;
+import com.vladsch.flexmark.html.renderer.HeaderIdGenerator;
+import com.vladsch.flexmark.util.ast.Document;
+import com.vladsch.flexmark.util.ast.Node;
+import com.vladsch.flexmark.util.sequence.Escaping;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Index of the pages of a site (a set of markdown files linking each other), with their titles, the anchors of their
+ * headings and the IDs of their elements, so the local links (e.g. {@code [[Page]]}, {@code [[Page#Heading]]},
+ * {@code [[Page|label]]}, {@code [[#Heading]]}) of each page can be resolved into real links, and a page with the contents
+ * of the whole site can be generated.
+ * <p>The site is built in two passes: all the files are scanned in parallel to fill the index, then each one can be
+ * converted, in parallel too, against the complete index. A page is looked up by its path relative to the linking page
+ * (without extension), then by its file name or its title, ignoring case, whitespace, dashes and underscores.</p>
+ * <p>A link that cannot be resolved is replaced with its text (as outside a site) and reported.</p>
+ * <p>This class is thread-safe.</p>
+ */
+public final class SiteIndex{
+
+	private static final String MARKDOWN_EXTENSION = ".md";
+	private static final String HTML_EXTENSION = ".html";
+	private static final char ANCHOR_SEPARATOR = '#';
+	private static final char LABEL_SEPARATOR = '|';
+
+	private static final String CONTENTS_TITLE = "Contents";
+	//level of the headings listed under each page in the contents
+	private static final int CONTENTS_HEADING_LEVEL = 2;
+
+	//characters ignored when comparing names
+	private static final Pattern NAME_SEPARATORS = Pattern.compile("[\\s_-]+");
+	private static final Pattern MARKDOWN_PUNCTUATION = Pattern.compile("[!-/:-@\\[-`{-~]");
+
+
+	//pages by the absolute path of their markdown file
+	private final ConcurrentHashMap<Path, Page> pages = new ConcurrentHashMap<>();
+	//markdown files by the normalized file name and title of their page
+	private final ConcurrentHashMap<String, Path> names = new ConcurrentHashMap<>();
+	private final Set<String> unresolvedLinks = ConcurrentHashMap.newKeySet();
+
+	//whether all the pages are in the index, so the links are to be resolved
+	private volatile boolean complete;
+
+
+	/**
+	 * Scans the given files in parallel.
+	 * <p>A file that cannot be read or parsed is left out of the index, its conversion is expected to report the error.</p>
+	 *
+	 * @param files	The markdown files of the site.
+	 * @param parallelism	The number of threads parsing the files.
+	 * @return	The index of the site.
+	 */
+	public static SiteIndex scan(final Collection<File> files, final int parallelism){
+		final SiteIndex index = new SiteIndex();
+		try(final ExecutorService executor = Executors.newFixedThreadPool(parallelism)){
+			for(final File file : files)
+				executor.execute(() -> index.add(file));
+		}
+		index.complete = true;
+		return index;
+	}
+
+	private SiteIndex(){}
+
+
+	private void add(final File file){
+		final ParsedDocument parsedDocument;
+		final List<String> ids;
+		try{
+			final byte[] source = Files.readAllBytes(file.toPath());
+			//the index being incomplete, the local links are replaced with their labels only
+			parsedDocument = Service.parse(file, source, Service.loadProperties(file), this);
+			ids = Service.extractIDs(Service.decode(source));
+		}
+		catch(final IOException | RuntimeException ignored){
+			return;
+		}
+
+		final Path source = normalize(file.getPath());
+		final Page page = new Page(source, parsedDocument, ids);
+		pages.put(source, page);
+
+		//on a clash, the page first in path order wins, whatever the order the files are scanned in
+		names.merge(normalizeName(getNameOnly(source)), source, SiteIndex::first);
+		names.merge(normalizeName(page.title), source, SiteIndex::first);
+	}
+
+	private static Path first(final Path path1, final Path path2){
+		return (path1.compareTo(path2) <= 0? path1: path2);
+	}
+
+
+	/**
+	 * Replaces the local links of a page with links to the pages (and headings or elements) of the site.
+	 *
+	 * @param path	The path of the markdown file of the page.
+	 * @param content	The markdown content of the page.
+	 * @return	The content with the local links resolved.
+	 */
+	String resolveLocalLinks(final String path, final String content){
+		final Path source = normalize(path);
+		final Matcher matcher = Service.LOCAL_LINK_PATTERN.matcher(content);
+		final StringBuilder sb = new StringBuilder();
+		while(matcher.find())
+			matcher.appendReplacement(sb, Matcher.quoteReplacement(resolveLocalLink(source, matcher.group(1))));
+		matcher.appendTail(sb);
+		return sb.toString();
+	}
+
+	private String resolveLocalLink(final Path source, final String link){
+		final int labelIndex = link.indexOf(LABEL_SEPARATOR);
+		final String target = (labelIndex >= 0? link.substring(0, labelIndex): link).trim();
+		final int anchorIndex = target.indexOf(ANCHOR_SEPARATOR);
+		final String pageName = (anchorIndex >= 0? target.substring(0, anchorIndex): target).trim();
+		final String anchor = (anchorIndex >= 0? target.substring(anchorIndex + 1).trim(): null);
+		final String label = escapeMarkdown(labelIndex >= 0
+			? link.substring(labelIndex + 1).trim()
+			: (pageName.isEmpty() && anchor != null? anchor: target));
+		if(!complete)
+			return label;
+
+		final Page page = (pageName.isEmpty()? pages.get(source): findPage(source, pageName));
+		final String id = (page != null && anchor != null? page.findAnchor(anchor): null);
+		if(page == null || anchor != null && id == null)
+			unresolvedLinks.add(source + ": [[" + link + "]]");
+		if(page == null)
+			return label;
+
+		//a link to a heading of the same page needs the anchor only
+		String url = (page.source.equals(source) && id != null? "": relativeUrl(source.getParent(), page.page));
+		if(id != null)
+			url += ANCHOR_SEPARATOR + Escaping.percentEncodeUrl(id);
+		return "[" + label + "](<" + url + ">)";
+	}
+
+	private Page findPage(final Path source, final String name){
+		try{
+			final Path relative = source.resolveSibling(name.endsWith(MARKDOWN_EXTENSION)? name: name + MARKDOWN_EXTENSION)
+				.normalize();
+			final Page page = pages.get(relative);
+			if(page != null)
+				return page;
+		}
+		catch(final InvalidPathException ignored){}
+
+		final Path path = names.get(normalizeName(name));
+		return (path != null? pages.get(path): null);
+	}
+
+	/**
+	 * @return	The local links that could not be resolved (to a page, or to a heading or element of a page), prefixed by the
+	 * 	path of the page they are in, sorted.
+	 */
+	public List<String> getUnresolvedLinks(){
+		return unresolvedLinks.stream()
+			.sorted()
+			.toList();
+	}
+
+
+	/**
+	 * @return	The deepest directory containing all the pages of the site, {@code null} if the site has no pages.
+	 */
+	public Path getRoot(){
+		Path root = null;
+		for(final Path source : pages.keySet()){
+			final Path directory = source.getParent();
+			if(root == null)
+				root = directory;
+			else
+				while(root != null && !directory.startsWith(root))
+					root = root.getParent();
+			//pages on different file system roots
+			if(root == null)
+				return null;
+		}
+		return root;
+	}
+
+	/**
+	 * Generates the contents of the site: the pages, grouped by directory, each with its sections.
+	 *
+	 * @param root	The directory the page of the contents is in.
+	 * @return	The markdown content of the page of the contents.
+	 */
+	public String generateContents(final Path root){
+		final Path directory = root.toAbsolutePath().normalize();
+		final TreeMap<String, TreeMap<String, Page>> pagesByDirectory = new TreeMap<>();
+		for(final Page page : pages.values())
+			pagesByDirectory.computeIfAbsent(relativePath(directory, page.source.getParent()), k -> new TreeMap<>())
+				.put(page.source.getFileName().toString(), page);
+
+		final StringBuilder sb = new StringBuilder();
+		sb.append("# ").append(CONTENTS_TITLE).append("\n\n");
+		for(final Map.Entry<String, TreeMap<String, Page>> entry : pagesByDirectory.entrySet()){
+			if(!entry.getKey().isEmpty())
+				sb.append("## ").append(escapeMarkdown(entry.getKey())).append("\n\n");
+			for(final Page page : entry.getValue().values()){
+				final String url = relativeUrl(directory, page.page);
+				sb.append("- [").append(escapeMarkdown(page.title)).append("](<").append(url).append(">)\n");
+				for(final Section section : page.sections)
+					sb.append("  - [").append(escapeMarkdown(section.text)).append("](<").append(url)
+						.append(ANCHOR_SEPARATOR).append(Escaping.percentEncodeUrl(section.id)).append(">)\n");
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+
+	private static Path normalize(final String path){
+		return Path.of(path)
+			.toAbsolutePath()
+			.normalize();
+	}
+
+	private static String getNameOnly(final Path path){
+		final String fileName = path.getFileName().toString();
+		final int extensionIndex = fileName.lastIndexOf('.');
+		return (extensionIndex > 0? fileName.substring(0, extensionIndex): fileName);
+	}
+
+	private static String normalizeName(final String name){
+		return NAME_SEPARATORS.matcher(name.trim())
+			.replaceAll(" ")
+			.toLowerCase(Locale.ROOT);
+	}
+
+	private static String relativePath(final Path directory, final Path path){
+		final StringBuilder sb = new StringBuilder();
+		for(final Path name : directory.relativize(path)){
+			if(!sb.isEmpty())
+				sb.append('/');
+			sb.append(name);
+		}
+		return sb.toString();
+	}
+
+	private static String relativeUrl(final Path directory, final Path path){
+		return Escaping.percentEncodeUrl(relativePath(directory, path));
+	}
+
+	private static String escapeMarkdown(final String text){
+		return MARKDOWN_PUNCTUATION.matcher(text)
+			.replaceAll(result -> Matcher.quoteReplacement("\\" + result.group()));
+	}
+
+
+	private static final class Page{
+		private final Path source;
+		private final Path page;
+		private final String title;
+		//the sections listed in the contents
+		private final List<Section> sections = new ArrayList<>();
+		//IDs of the headings by their normalized text
+		private final Map<String, String> headingIds = new HashMap<>();
+		private final Set<String> ids = new HashSet<>();
+
+
+		private Page(final Path source, final ParsedDocument parsedDocument, final List<String> elementIds){
+			this.source = source;
+			final String name = getNameOnly(source);
+			page = source.resolveSibling(name + HTML_EXTENSION);
+
+			final Properties properties = parsedDocument.getProperties();
+			final String pageTitle = properties.getProperty(DocumentMetadata.PROPERTY_TITLE);
+			title = (pageTitle != null? Escaping.unescapeHtml(pageTitle): name);
+
+			//the IDs are generated as the renderer does
+			final Document document = (Document)parsedDocument.getDocument();
+			new HeaderIdGenerator(document)
+				.generateIds(document);
+			for(final Node node : document.getDescendants())
+				if(node instanceof Heading heading && heading.getAnchorRefId() != null){
+					final String text = DocumentMetadata.collectText(heading, parsedDocument.getKatexCodes());
+					headingIds.putIfAbsent(normalizeName(text), heading.getAnchorRefId());
+					ids.add(heading.getAnchorRefId());
+					if(heading.getLevel() == CONTENTS_HEADING_LEVEL)
+						sections.add(new Section(text, heading.getAnchorRefId()));
+				}
+			ids.addAll(elementIds);
+		}
+
+		private String findAnchor(final String anchor){
+			return (ids.contains(anchor)? anchor: headingIds.get(normalizeName(anchor)));
+		}
+	}
+
+	private static final class Section{
+		private final String text;
+		private final String id;
+
+
+		private Section(final String text, final String id){
+			this.text = text;
+			this.id = id;
+		}
+	}
+
+}
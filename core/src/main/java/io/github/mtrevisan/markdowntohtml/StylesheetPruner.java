@@ -0,0 +1,392 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Removes from a stylesheet the rules whose selectors cannot match any element of a given page.
+ * <p>The matching is conservative: a selector is kept unless one of its element names, classes or IDs is missing from the
+ * page, pseudo-classes, pseudo-elements and attribute selectors are ignored.</p>
+ * <p>The blocks left empty, conditional group rules whose rules are all removed included, are dropped.</p>
+ * <p>The rule index of each stylesheet is computed only once and cached, the cache holding the most recently used ones
+ * only.</p>
+ */
+final class StylesheetPruner{
+
+	private static final Pattern TAG_PATTERN = Pattern.compile("<([a-zA-Z][a-zA-Z0-9-]*)");
+	private static final Pattern CLASS_PATTERN = Pattern.compile("\\sclass\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')");
+	private static final Pattern ID_PATTERN = Pattern.compile("\\sid\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)')");
+	//classes added by scripts at runtime
+	private static final Pattern SCRIPT_CLASS_PATTERN = Pattern.compile("classList\\.(?:add|toggle|remove)\\(\\s*['\"]([^'\"]+)['\"]");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	//the stylesheets in use at once are few (layers, font subsets), the least recently used indexes are evicted
+	private static final int MAX_RULE_INDEXES = 16;
+	private static final Map<String, List<Rule>> RULE_INDEXES = new LinkedHashMap<>(MAX_RULE_INDEXES, 0.75f, true){
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, List<Rule>> eldest){
+			return (size() > MAX_RULE_INDEXES);
+		}
+	};
+
+
+	private StylesheetPruner(){}
+
+
+	/**
+	 * Removes the rules that cannot match any element of the given page.
+	 *
+	 * @param stylesheet	The stylesheet.
+	 * @param htmlParts	The parts composing the HTML of the page (the stylesheet itself can be excluded).
+	 * @return	The pruned stylesheet.
+	 */
+	static String prune(final String stylesheet, final String... htmlParts){
+		final List<Rule> rules = getRules(stylesheet);
+		final UsedSelectors used = new UsedSelectors();
+		for(final String html : htmlParts)
+			collectUsedSelectors(html, used);
+
+		final StringBuilder sb = new StringBuilder(stylesheet.length() >> 4);
+		appendMatchingRules(rules, used, sb);
+		return sb.toString();
+	}
+
+	private static List<Rule> getRules(final String stylesheet){
+		List<Rule> rules;
+		synchronized(RULE_INDEXES){
+			rules = RULE_INDEXES.get(stylesheet);
+		}
+		if(rules == null){
+			//parsed outside the lock, so the pages using other stylesheets do not wait
+			rules = parse(stylesheet);
+			synchronized(RULE_INDEXES){
+				RULE_INDEXES.put(stylesheet, rules);
+			}
+		}
+		return rules;
+	}
+
+	private static void appendMatchingRules(final List<Rule> rules, final UsedSelectors used, final StringBuilder sb){
+		for(final Rule rule : rules){
+			if(rule.children != null){
+				final StringBuilder inner = new StringBuilder();
+				appendMatchingRules(rule.children, used, inner);
+				if(!inner.isEmpty())
+					sb.append(rule.prelude)
+						.append('{')
+						.append(inner)
+						.append("}\n");
+			}
+			else if(rule.matches(used))
+				sb.append(rule.text)
+					.append('\n');
+		}
+	}
+
+	private static void collectUsedSelectors(final String html, final UsedSelectors used){
+		Matcher matcher = TAG_PATTERN.matcher(html);
+		while(matcher.find())
+			used.tags.add(matcher.group(1).toLowerCase(Locale.ROOT));
+		matcher = CLASS_PATTERN.matcher(html);
+		while(matcher.find())
+			addTokens(matcher.group(1) != null? matcher.group(1): matcher.group(2), used.classes);
+		matcher = SCRIPT_CLASS_PATTERN.matcher(html);
+		while(matcher.find())
+			used.classes.add(matcher.group(1));
+		matcher = ID_PATTERN.matcher(html);
+		while(matcher.find())
+			used.ids.add(matcher.group(1) != null? matcher.group(1): matcher.group(2));
+	}
+
+	private static void addTokens(final String value, final Set<String> set){
+		for(final String token : WHITESPACE.split(value.trim()))
+			if(!token.isEmpty())
+				set.add(token);
+	}
+
+
+	/**
+	 * Splits a stylesheet into its top-level rules, descending into conditional group rules ({@code @media},
+	 * {@code @supports}).
+	 *
+	 * @param stylesheet	The stylesheet.
+	 * @return	The list of rules.
+	 */
+	private static List<Rule> parse(final String stylesheet){
+		return parse(stylesheet, 0, stylesheet.length());
+	}
+
+	private static List<Rule> parse(final String css, int start, final int end){
+		final List<Rule> rules = new ArrayList<>();
+		while(true){
+			start = skipWhitespaceAndComments(css, start, end);
+			if(start >= end)
+				break;
+
+			final int open = indexOfUnquoted(css, '{', start, end);
+			if(open < 0)
+				break;
+			final int close = indexOfMatchingBrace(css, open, end);
+			final String prelude = css.substring(start, open).trim();
+			//a block with no content does not style anything
+			if(skipWhitespaceAndComments(css, open + 1, close) >= close){
+				start = close + 1;
+				continue;
+			}
+
+			if(prelude.startsWith("@media") || prelude.startsWith("@supports"))
+				rules.add(new Rule(prelude, parse(css, open + 1, close)));
+			else if(prelude.charAt(0) == '@')
+				//@font-face, @page, @keyframes, etc. are always kept
+				rules.add(new Rule(css.substring(start, close + 1), (String[][][])null));
+			else
+				rules.add(new Rule(css.substring(start, close + 1), parseSelectors(prelude)));
+
+			start = close + 1;
+		}
+		return rules;
+	}
+
+	private static int skipWhitespaceAndComments(final String css, int index, final int end){
+		while(index < end){
+			if(Character.isWhitespace(css.charAt(index)))
+				index ++;
+			else if(css.startsWith("/*", index)){
+				final int commentEnd = css.indexOf("*/", index + 2);
+				index = (commentEnd < 0? end: commentEnd + 2);
+			}
+			else
+				break;
+		}
+		return index;
+	}
+
+	private static int indexOfUnquoted(final String css, final char target, int index, final int end){
+		char quote = 0;
+		while(index < end){
+			final char chr = css.charAt(index);
+			if(quote != 0){
+				if(chr == '\\')
+					index ++;
+				else if(chr == quote)
+					quote = 0;
+			}
+			else if(chr == '"' || chr == '\'')
+				quote = chr;
+			else if(chr == '/' && css.startsWith("/*", index)){
+				final int commentEnd = css.indexOf("*/", index + 2);
+				index = (commentEnd < 0? end: commentEnd + 1);
+			}
+			else if(chr == target)
+				return index;
+			index ++;
+		}
+		return -1;
+	}
+
+	private static int indexOfMatchingBrace(final String css, int index, final int end){
+		int depth = 0;
+		char quote = 0;
+		while(index < end){
+			final char chr = css.charAt(index);
+			if(quote != 0){
+				if(chr == '\\')
+					index ++;
+				else if(chr == quote)
+					quote = 0;
+			}
+			else if(chr == '"' || chr == '\'')
+				quote = chr;
+			else if(chr == '/' && css.startsWith("/*", index)){
+				final int commentEnd = css.indexOf("*/", index + 2);
+				index = (commentEnd < 0? end: commentEnd + 1);
+			}
+			else if(chr == '{')
+				depth ++;
+			else if(chr == '}' && -- depth == 0)
+				return index;
+			index ++;
+		}
+		return end - 1;
+	}
+
+	/**
+	 * Extracts, for each selector of a selector list, the element names, classes and IDs of each compound selector.
+	 *
+	 * @param selectorList	The selector list.
+	 * @return	For each selector, the list of requirements of the form {@code [tag, class, id]}, where {@code tag} is the
+	 * 	element name (or {@code null}), {@code class} and {@code id} are the required classes and IDs.
+	 */
+	private static String[][][] parseSelectors(final String selectorList){
+		final List<String> selectors = splitTopLevel(selectorList);
+		final String[][][] requirements = new String[selectors.size()][][];
+		for(int i = 0; i < selectors.size(); i ++)
+			requirements[i] = parseSelector(selectors.get(i));
+		return requirements;
+	}
+
+	private static List<String> splitTopLevel(final String selectorList){
+		final List<String> selectors = new ArrayList<>();
+		int depth = 0;
+		int start = 0;
+		for(int i = 0; i < selectorList.length(); i ++){
+			final char chr = selectorList.charAt(i);
+			if(chr == '(' || chr == '[')
+				depth ++;
+			else if(chr == ')' || chr == ']')
+				depth --;
+			else if(chr == ',' && depth == 0){
+				selectors.add(selectorList.substring(start, i).trim());
+				start = i + 1;
+			}
+		}
+		selectors.add(selectorList.substring(start).trim());
+		return selectors;
+	}
+
+	private static String[][] parseSelector(final String selector){
+		final List<String> tags = new ArrayList<>();
+		final List<String> classes = new ArrayList<>();
+		final List<String> ids = new ArrayList<>();
+
+		final int length = selector.length();
+		boolean compoundStart = true;
+		int i = 0;
+		while(i < length){
+			final char chr = selector.charAt(i);
+			if(Character.isWhitespace(chr) || chr == '>' || chr == '+' || chr == '~'){
+				compoundStart = true;
+				i ++;
+			}
+			else if(chr == '.' || chr == '#'){
+				final int identifierEnd = identifierEnd(selector, i + 1);
+				(chr == '.'? classes: ids).add(selector.substring(i + 1, identifierEnd));
+				compoundStart = false;
+				i = identifierEnd;
+			}
+			else if(chr == '[' || chr == '('){
+				//skip attribute selectors and pseudo-classes arguments
+				i = skipBlock(selector, i);
+				compoundStart = false;
+			}
+			else if(chr == ':'){
+				i = identifierEnd(selector, i + (i + 1 < length && selector.charAt(i + 1) == ':'? 2: 1));
+				compoundStart = false;
+			}
+			else{
+				final int identifierEnd = identifierEnd(selector, i);
+				if(compoundStart && identifierEnd > i)
+					tags.add(selector.substring(i, identifierEnd).toLowerCase(Locale.ROOT));
+				compoundStart = false;
+				i = Math.max(identifierEnd, i + 1);
+			}
+		}
+		return new String[][]{tags.toArray(String[]::new), classes.toArray(String[]::new), ids.toArray(String[]::new)};
+	}
+
+	private static int identifierEnd(final String selector, int index){
+		while(index < selector.length()){
+			final char chr = selector.charAt(index);
+			if(chr == '\\')
+				index ++;
+			else if(!(Character.isLetterOrDigit(chr) || chr == '-' || chr == '_'))
+				break;
+			index ++;
+		}
+		return Math.min(index, selector.length());
+	}
+
+	private static int skipBlock(final String selector, int index){
+		final char open = selector.charAt(index);
+		final char close = (open == '['? ']': ')');
+		int depth = 0;
+		while(index < selector.length()){
+			final char chr = selector.charAt(index ++);
+			if(chr == open)
+				depth ++;
+			else if(chr == close && -- depth == 0)
+				break;
+		}
+		return index;
+	}
+
+
+	private static final class UsedSelectors{
+		private final Set<String> tags = new HashSet<>();
+		private final Set<String> classes = new HashSet<>();
+		private final Set<String> ids = new HashSet<>();
+	}
+
+	private static final class Rule{
+		private final String text;
+		private final String prelude;
+		//for each selector: element names, classes, IDs
+		private final String[][][] selectors;
+		private final List<Rule> children;
+
+
+		private Rule(final String text, final String[][][] selectors){
+			this.text = text;
+			prelude = null;
+			this.selectors = selectors;
+			children = null;
+		}
+
+		private Rule(final String prelude, final List<Rule> children){
+			text = null;
+			this.prelude = prelude;
+			selectors = null;
+			this.children = children;
+		}
+
+		private boolean matches(final UsedSelectors used){
+			if(selectors == null)
+				return true;
+
+			for(final String[][] selector : selectors)
+				if(containsAll(used.tags, selector[0]) && containsAll(used.classes, selector[1]) && containsAll(used.ids, selector[2]))
+					return true;
+			return false;
+		}
+
+		private static boolean containsAll(final Set<String> set, final String[] values){
+			for(final String value : values)
+				if(!value.equals("*") && !set.contains(value))
+					return false;
+			return true;
+		}
+	}
+
+}
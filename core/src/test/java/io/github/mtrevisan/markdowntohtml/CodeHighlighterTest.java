@@ -0,0 +1,162 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+
+
+class CodeHighlighterTest{
+
+	private static String span(final String kind, final String token){
+		return "<span class=\"hl-" + kind + "\">" + token + "</span>";
+	}
+
+	private static String renderBody(final String markdown, final boolean codeHighlighting) throws IOException{
+		final Properties properties = new Properties();
+		properties.setProperty("modified-datetime", "2020-01-02T03:04:05Z");
+		final ParsedDocument parsedDocument = Service.parse("code.md", markdown.getBytes(StandardCharsets.UTF_8),
+			properties);
+		final String page = Service.render(parsedDocument, RenderVariant.create(false, false)
+			.withCodeHighlighting(codeHighlighting));
+		return page.substring(page.indexOf("<body"));
+	}
+
+
+	@Test
+	void highlightsJava(){
+		final String highlighted = CodeHighlighter.highlight("java",
+			"public class A{ // note\n\tString s = \"text\"; int n = 42; return null; }");
+
+		Assertions.assertEquals(span("keyword", "public") + " " + span("keyword", "class") + " A{ "
+			+ span("comment", "// note") + "\n\tString s = " + span("string", "&quot;text&quot;") + "; "
+			+ span("keyword", "int") + " n = " + span("number", "42") + "; " + span("keyword", "return") + " "
+			+ span("literal", "null") + "; }", highlighted);
+	}
+
+	@Test
+	void highlightsPython(){
+		final String highlighted = CodeHighlighter.highlight("py", "def f(): # note\n    return 'a' if True else 3");
+
+		Assertions.assertEquals(span("keyword", "def") + " f(): " + span("comment", "# note") + "\n    "
+			+ span("keyword", "return") + " " + span("string", "'a'") + " " + span("keyword", "if") + " "
+			+ span("literal", "True") + " " + span("keyword", "else") + " " + span("number", "3"), highlighted);
+	}
+
+	@Test
+	void doesNotHighlightInsideIdentifiers(){
+		Assertions.assertEquals("classic = interface2;", CodeHighlighter.highlight("javascript", "classic = interface2;"));
+	}
+
+	@Test
+	void escapesTokensAndText(){
+		final String highlighted = CodeHighlighter.highlight("java", "if(a < b && c) s = \"<&>\"; /* <b> */");
+
+		Assertions.assertEquals(span("keyword", "if") + "(a &lt; b &amp;&amp; c) s = "
+			+ span("string", "&quot;&lt;&amp;&gt;&quot;") + "; " + span("comment", "/* &lt;b&gt; */"), highlighted);
+	}
+
+	@Test
+	void doesNotHighlightUnknownLanguage(){
+		Assertions.assertFalse(CodeHighlighter.isSupported("cobol"));
+		Assertions.assertNull(CodeHighlighter.highlight("cobol", "DISPLAY X."));
+		Assertions.assertTrue(CodeHighlighter.isSupported("JS"));
+	}
+
+	@Test
+	void rendersUnknownLanguageWithCoreRenderer() throws IOException{
+		final String markdown = "```cobol\nIF A < B\n```\n";
+
+		final String body = renderBody(markdown, true);
+
+		Assertions.assertTrue(body.contains("<pre><code class=\"language-cobol\">IF A &lt; B\n</code></pre>"), body);
+		Assertions.assertEquals(renderBody(markdown, false), body);
+	}
+
+	@Test
+	void rendersAsCoreRendererWhenDisabled() throws IOException{
+		final String body = renderBody("```java\npublic class A{ String s = \"<&>\"; }\n```\n\n    indented\n", false);
+
+		Assertions.assertTrue(body.contains("<pre><code class=\"language-java\">public class A{ String s = "
+			+ "&quot;&lt;&amp;&gt;&quot;; }\n</code></pre>\n<pre><code>indented\n</code></pre>"), body);
+		Assertions.assertFalse(body.contains("hl-"), body);
+	}
+
+	@Test
+	void highlightsFencedCodeWhenEnabled() throws IOException{
+		final String body = renderBody("```java\npublic class A{}\n```\n", true);
+
+		Assertions.assertTrue(body.contains("<pre><code class=\"language-java\">" + span("keyword", "public") + " "
+			+ span("keyword", "class") + " A{}\n</code></pre>"), body);
+	}
+
+	@Test
+	void rejectsCapturingGroups(){
+		final CodeHighlighter.Language language = new CodeHighlighter.Language()
+			.add("string", "\"([^\"]*)\"");
+
+		Assertions.assertThrows(IllegalStateException.class, language::compile);
+	}
+
+	@Test
+	void acceptsNonCapturingGroups(){
+		final CodeHighlighter.Language language = new CodeHighlighter.Language()
+			.add("string", "\"(?:[^\"]*)\"")
+			.add("keyword", "(?<!\\w)(?:if|else)(?!\\w)");
+
+		Assertions.assertDoesNotThrow(language::compile);
+	}
+
+	@Test
+	void rendersHighlightingPerVariant(@TempDir final Path directory) throws IOException{
+		final File file = directory.resolve("code.md")
+			.toFile();
+		Files.writeString(file.toPath(), "# Code\n\n```java\npublic class A{}\n```\n", StandardCharsets.UTF_8);
+		final RenderVariant variant = RenderVariant.create(false, false);
+
+		Service.setRenderCache(RenderCache.create(1L << 20, false, false));
+		try{
+			final List<String> pages = Service.convert(file, List.of(variant, variant.withCodeHighlighting(true)));
+
+			Assertions.assertFalse(pages.get(0).contains("hl-keyword"));
+			Assertions.assertTrue(pages.get(1).contains("<span class=\"hl-keyword\">"));
+			Assertions.assertTrue(pages.get(1).contains(".hl-keyword {"));
+			Assertions.assertFalse(Service.convert(file, List.of(variant)).get(0).contains("hl-keyword"));
+		}
+		finally{
+			Service.setRenderCache(null);
+		}
+	}
+
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.stream.Stream;
+
+
+class DeterministicOutputTest{
+
+	private static final String LINK = "<a href=\"mailto:someone@example.com\">write</a>";
+
+	private static final FileTime PAST = FileTime.from(Instant.parse("2020-01-02T03:04:05Z"));
+
+
+	@Test
+	void obfuscatesEmailsDeterministically(){
+		final String obfuscated = Service.obfuscateEmails(LINK);
+
+		Assertions.assertEquals(obfuscated, Service.obfuscateEmails(LINK));
+		Assertions.assertFalse(obfuscated.contains("someone@example.com"));
+		Assertions.assertTrue(obfuscated.endsWith(">write</a>"));
+	}
+
+	@Test
+	void obfuscatedEmailDecodesWithItsKey(){
+		final String obfuscated = Service.obfuscateEmails(LINK);
+		final int start = obfuscated.indexOf("href=\":") + "href=\":".length();
+		final byte[] encoded = Base64.getDecoder()
+			.decode(obfuscated.substring(start, obfuscated.indexOf('"', start)));
+
+		final int key = encoded[0] & 0xFF;
+		Assertions.assertNotEquals(0, key);
+		final byte[] decoded = new byte[encoded.length - 1];
+		for(int i = 0; i < decoded.length; i ++)
+			decoded[i] = (byte)(encoded[i + 1] ^ key);
+		Assertions.assertEquals("someone@example.com", new String(decoded, StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void keepsTextWithoutEmails(){
+		final String html = "<a href=\"https://example.com\">site</a>";
+
+		Assertions.assertEquals(html, Service.obfuscateEmails(html));
+	}
+
+	@Test
+	void convertsUnchangedFileIntoSamePage(@TempDir final Path directory) throws IOException{
+		final Path source = directory.resolve("page.md");
+		Files.writeString(source, "# Title\n\nWrite to [someone](mailto:someone@example.com).\n");
+		Files.setLastModifiedTime(source, PAST);
+
+		final String page = Service.convert(source.toFile(), true, false);
+
+		Assertions.assertEquals(page, Service.convert(source.toFile(), true, false));
+		Assertions.assertTrue(page.contains("2020-01-0"));
+	}
+
+	@Test
+	void takesModificationTimeFromProperties(@TempDir final Path directory) throws IOException{
+		final File source = directory.resolve("page.md")
+			.toFile();
+		Files.writeString(source.toPath(), "text\n");
+		Files.writeString(directory.resolve("page.properties"), "modified-datetime=1999-12-31T23:59:59Z\n");
+
+		Assertions.assertEquals("1999-12-31T23:59:59Z", Service.loadProperties(source)
+			.getProperty("modified-datetime"));
+	}
+
+	@Test
+	void leavesUnchangedFileUntouched(@TempDir final Path directory) throws IOException{
+		final Path file = directory.resolve("page.html");
+		final byte[] content = "<p>page</p>".getBytes(StandardCharsets.UTF_8);
+		Files.write(file, content);
+		Files.setLastModifiedTime(file, PAST);
+
+		Assertions.assertFalse(Service.writeIfChanged(file.toFile(), content));
+		Assertions.assertEquals(PAST, Files.getLastModifiedTime(file));
+		Assertions.assertFalse(Service.writeIfChanged(file.toFile(),
+			ByteBuffer.wrap("<p>pa".getBytes(StandardCharsets.UTF_8)),
+			ByteBuffer.wrap("ge</p>".getBytes(StandardCharsets.UTF_8))));
+		Assertions.assertEquals(PAST, Files.getLastModifiedTime(file));
+	}
+
+	@Test
+	void rewritesChangedFile(@TempDir final Path directory) throws IOException{
+		final Path file = directory.resolve("page.html");
+		Files.writeString(file, "<p>page</p>");
+		Files.setLastModifiedTime(file, PAST);
+
+		Assertions.assertTrue(Service.writeIfChanged(file.toFile(), "<p>page!</p>".getBytes(StandardCharsets.UTF_8)));
+		Assertions.assertEquals("<p>page!</p>", Files.readString(file));
+		Assertions.assertNotEquals(PAST, Files.getLastModifiedTime(file));
+		//no temporary file is left behind
+		try(final Stream<Path> files = Files.list(directory)){
+			Assertions.assertEquals(1L, files.count());
+		}
+	}
+
+	@Test
+	void writesMissingFile(@TempDir final Path directory) throws IOException{
+		final File file = directory.resolve("page.html")
+			.toFile();
+
+		Assertions.assertTrue(Service.writeIfChanged(file, ByteBuffer.wrap("<p>".getBytes(StandardCharsets.UTF_8)),
+			ByteBuffer.wrap("page</p>".getBytes(StandardCharsets.UTF_8))));
+		Assertions.assertEquals("<p>page</p>", Files.readString(file.toPath()));
+	}
+
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.Set;
+
+
+class DocumentFeatureTest{
+
+	private static Set<DocumentFeature> extractFeatures(final String markdown){
+		return Service.parse("page.md", markdown.getBytes(StandardCharsets.UTF_8), new Properties())
+			.getFeatures();
+	}
+
+
+	@Test
+	void detectsMathDelimiters(){
+		Assertions.assertTrue(extractFeatures("Money $x$ here.").contains(DocumentFeature.MATH));
+		Assertions.assertTrue(extractFeatures("Inline \\\\(x^2\\\\) here.").contains(DocumentFeature.MATH));
+		Assertions.assertTrue(extractFeatures("Display \\\\[x\\\\]").contains(DocumentFeature.MATH));
+		Assertions.assertTrue(extractFeatures("\\begin{equation}\nx = 1\n\\end{equation}\n").contains(DocumentFeature.MATH));
+		Assertions.assertTrue(extractFeatures("\\begin{align}\nx &= 1\n\\end{align}\n").contains(DocumentFeature.MATH));
+	}
+
+	@Test
+	void ignoresEscapedBrackets(){
+		//markdown escapes, rendered as plain brackets and parentheses
+		Assertions.assertFalse(extractFeatures("Just \\[1\\] and \\(a\\).").contains(DocumentFeature.MATH));
+		Assertions.assertFalse(extractFeatures("No math here.").contains(DocumentFeature.MATH));
+	}
+
+	@Test
+	void detectsScriptedHtml(){
+		Assertions.assertEquals(Set.of(DocumentFeature.DETAILS),
+			extractFeatures("<details><summary>More</summary>Text</details>\n"));
+		Assertions.assertTrue(extractFeatures("<a href=\":AAAA\">mail</a>").contains(DocumentFeature.MAIL_LINKS));
+		Assertions.assertTrue(extractFeatures("<img onclick=\"toggleImageDisplay(this)\" src=\"a.png\" />\n")
+			.contains(DocumentFeature.IMAGE_TOGGLES));
+	}
+
+	@Test
+	void detectsTablesAndFootnotes(){
+		Assertions.assertEquals(Set.of(DocumentFeature.TABLES), extractFeatures("| a | b |\n|---|---|\n| 1 | 2 |\n"));
+		Assertions.assertEquals(Set.of(DocumentFeature.FOOTNOTES), extractFeatures("Text[^1].\n\n[^1]: The note.\n"));
+	}
+
+	@Test
+	void includesScriptsOfDetectedFeaturesOnly() throws IOException{
+		final RenderVariant variant = RenderVariant.create(false, false);
+		final String plain = Service.render(Service.parse("a.md", "Text.".getBytes(StandardCharsets.UTF_8),
+			new Properties()), variant);
+		final String math = Service.render(Service.parse("b.md", "Money $x$.".getBytes(StandardCharsets.UTF_8),
+			new Properties()), variant);
+
+		Assertions.assertFalse(plain.contains("renderMathInElement"));
+		Assertions.assertTrue(math.contains("renderMathInElement"));
+	}
+
+}
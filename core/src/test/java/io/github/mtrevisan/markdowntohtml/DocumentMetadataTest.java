@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+
+class DocumentMetadataTest{
+
+	private static Properties complete(final Path directory, final String markdown, final Properties properties)
+			throws IOException{
+		final Path file = directory.resolve("page.md");
+		Files.writeString(file, markdown);
+		return Service.parse(file.toFile(), markdown.getBytes(StandardCharsets.UTF_8), properties, null)
+			.getProperties();
+	}
+
+	private static Properties complete(final Path directory, final String markdown) throws IOException{
+		return complete(directory, markdown, new Properties());
+	}
+
+	private static Properties properties(final String... keyValues){
+		final Properties properties = new Properties();
+		for(int i = 0; i < keyValues.length; i += 2)
+			properties.setProperty(keyValues[i], keyValues[i + 1]);
+		return properties;
+	}
+
+	private static void writePNG(final Path image, final int width, final int height) throws IOException{
+		Files.write(image, ByteBuffer.allocate(24)
+			.put(new byte[]{(byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'})
+			.putInt(13)
+			.put("IHDR".getBytes(StandardCharsets.US_ASCII))
+			.putInt(width)
+			.putInt(height)
+			.array());
+	}
+
+
+	@Test
+	void derivesTitleFromHighestHeading(@TempDir final Path directory) throws IOException{
+		final Properties properties = complete(directory, "## Section\n\ntext\n\n# Fish & Chips <3\n\n# Other\n");
+
+		Assertions.assertEquals("Fish &amp; Chips &lt;3", properties.getProperty("title"));
+		Assertions.assertEquals("Fish &amp; Chips &lt;3", properties.getProperty("social-title"));
+	}
+
+	@Test
+	void derivesDescriptionFromFirstParagraph(@TempDir final Path directory) throws IOException{
+		final Properties properties = complete(directory, "# Title\n\n![image](image.png)\n\nThe *first*\nparagraph.\n\n"
+			+ "The second one.\n");
+
+		Assertions.assertEquals("The first paragraph.", properties.getProperty("description"));
+		Assertions.assertEquals("The first paragraph.", properties.getProperty("social-description"));
+	}
+
+	@Test
+	void truncatesLongDescription(@TempDir final Path directory) throws IOException{
+		final String sentence = "Some words repeated to make a long paragraph. ";
+		final Properties properties = complete(directory, sentence.repeat(10) + "\n");
+
+		final String description = properties.getProperty("description");
+		Assertions.assertTrue(description.length() <= 160, description);
+		Assertions.assertTrue(description.endsWith("…"), description);
+		//cut at the end of a word
+		Assertions.assertTrue((sentence.repeat(10) + " ").startsWith(description.substring(0, description.length() - 1)
+			+ " "), description);
+	}
+
+	@Test
+	void computesReadingTime(@TempDir final Path directory) throws IOException{
+		Assertions.assertEquals("1 min", complete(directory, "Just a few words.\n")
+			.getProperty("social-reading-time"));
+		Assertions.assertEquals("3 min", complete(directory, "word ".repeat(401) + "\n")
+			.getProperty("social-reading-time"));
+	}
+
+	@Test
+	void prefersGivenProperties(@TempDir final Path directory) throws IOException{
+		final Properties properties = complete(directory, "# Derived title\n\nDerived description.\n\n![i](image.png)\n",
+			properties("title", "Given title", "description", "Given description", "social-title", "Social title",
+				"social-image", "https://example.com/social.png", "social-reading-time", "10 min"));
+
+		Assertions.assertEquals("Given title", properties.getProperty("title"));
+		Assertions.assertEquals("Social title", properties.getProperty("social-title"));
+		Assertions.assertEquals("Given description", properties.getProperty("description"));
+		Assertions.assertEquals("Given description", properties.getProperty("social-description"));
+		Assertions.assertEquals("https://example.com/social.png", properties.getProperty("social-image"));
+		Assertions.assertEquals("10 min", properties.getProperty("social-reading-time"));
+	}
+
+	@Test
+	void skipsRelativeSocialImage(@TempDir final Path directory) throws IOException{
+		writePNG(directory.resolve("image.png"), 1200, 630);
+
+		final Properties properties = complete(directory, "![image](image.png)\n");
+
+		Assertions.assertNull(properties.getProperty("social-image"));
+		Assertions.assertNull(properties.getProperty("social-image-width"));
+	}
+
+	@Test
+	void resolvesSocialImageAgainstSiteBase(@TempDir final Path directory) throws IOException{
+		writePNG(directory.resolve("my image.png"), 1200, 630);
+
+		final Properties properties = complete(directory, "![image](my%20image.png)\n",
+			properties("site-base", "https://example.com/posts/"));
+
+		Assertions.assertEquals("https://example.com/posts/my%20image.png", properties.getProperty("social-image"));
+		Assertions.assertEquals("image/png", properties.getProperty("social-image-mimetype"));
+		Assertions.assertEquals("1200", properties.getProperty("social-image-width"));
+		Assertions.assertEquals("630", properties.getProperty("social-image-height"));
+	}
+
+	@Test
+	void keepsAbsoluteSocialImage(@TempDir final Path directory) throws IOException{
+		final Properties properties = complete(directory, "![image](https://cdn.example.com/image.png)\n");
+
+		Assertions.assertEquals("https://cdn.example.com/image.png", properties.getProperty("social-image"));
+		Assertions.assertNull(properties.getProperty("social-image-width"));
+	}
+
+	@Test
+	void readsSizeOfGivenSocialImage(@TempDir final Path directory) throws IOException{
+		writePNG(directory.resolve("card.png"), 800, 418);
+
+		final Properties properties = complete(directory, "text\n", properties("site-base", "https://example.com/posts/",
+			"social-image", "https://example.com/posts/card.png"));
+
+		Assertions.assertEquals("https://example.com/posts/card.png", properties.getProperty("social-image"));
+		Assertions.assertEquals("800", properties.getProperty("social-image-width"));
+		Assertions.assertEquals("418", properties.getProperty("social-image-height"));
+	}
+
+}
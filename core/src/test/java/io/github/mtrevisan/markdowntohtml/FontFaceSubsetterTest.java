@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+class FontFaceSubsetterTest{
+
+	private static final String LATO_REGULAR = fontFace("Lato", "normal", "400");
+	private static final String LATO_ITALIC = fontFace("Lato", "italic", "400");
+	private static final String LATO_BOLD = fontFace("Lato", "normal", "600");
+	private static final String ROBOTO_MONO = fontFace("Roboto Mono", "normal", "400");
+	private static final String STYLESHEET = LATO_REGULAR + LATO_ITALIC + LATO_BOLD + ROBOTO_MONO + "p { margin: 0; }\n";
+
+
+	private static String fontFace(final String family, final String style, final String weight){
+		return "@font-face { font-family: '" + family + "'; font-style: " + style + "; font-weight: " + weight
+			+ "; src: url(data:font/woff2;base64,AAAA); }\n";
+	}
+
+	private static List<String> keptFaces(final String page){
+		final String subset = FontFaceSubsetter.subset(STYLESHEET, page);
+		Assertions.assertTrue(subset.endsWith("p { margin: 0; }\n"));
+
+		final List<String> kept = new ArrayList<>();
+		for(final String fontFace : List.of(LATO_REGULAR, LATO_ITALIC, LATO_BOLD, ROBOTO_MONO))
+			if(subset.contains(fontFace))
+				kept.add(fontFace);
+		return kept;
+	}
+
+
+	@Test
+	void keepsFacesDrawingText(){
+		Assertions.assertEquals(List.of(LATO_REGULAR), keptFaces("<p>Text</p>"));
+		Assertions.assertEquals(List.of(LATO_REGULAR, LATO_ITALIC, ROBOTO_MONO),
+			keptFaces("<p>Text <em>italic</em> <code>code</code></p>"));
+	}
+
+	@Test
+	void ignoresElementsWithoutText(){
+		Assertions.assertEquals(List.of(LATO_BOLD), keptFaces("<h1>Title</h1>\n<p> <em> </em> <code>\n</code></p>"));
+	}
+
+	@Test
+	void ignoresScriptsAndStyles(){
+		Assertions.assertEquals(List.of(LATO_ITALIC),
+			keptFaces("<style>p{}</style><script>var a;</script><p><i>text</i></p>"));
+	}
+
+	@Test
+	void fallsBackToAvailableFace(){
+		//no bold italic face, the browser synthesizes it from the bold one
+		Assertions.assertEquals(List.of(LATO_BOLD), keptFaces("<p><strong><em>text</em></strong></p>"));
+	}
+
+	@Test
+	void keepsFacesOfTemplateText(){
+		//the body has bold text only, the footer of the template monospace text
+		final String page = "<html><body><h2>Title</h2><footer><code>v1.0</code></footer></body></html>";
+
+		Assertions.assertEquals(List.of(LATO_BOLD, ROBOTO_MONO), keptFaces(page));
+	}
+
+	@Test
+	void keepsStylesheetWithoutFontFaces(){
+		final String stylesheet = "p { margin: 0; }\n";
+
+		Assertions.assertSame(stylesheet, FontFaceSubsetter.subset(stylesheet, "<p>Text</p>"));
+	}
+
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+
+class HtmlMinifierTest{
+
+	private static String minify(final String html) throws IOException{
+		final StringWriter sw = new StringWriter();
+		try(final HtmlMinifier minifier = new HtmlMinifier(sw)){
+			minifier.write(html);
+		}
+		return sw.toString();
+	}
+
+
+	@Test
+	void collapsesWhitespaceAndRemovesComments() throws IOException{
+		Assertions.assertEquals("<p>Some text</p>\n<p>more</p>",
+			minify("<p>Some    text</p>   \n\n   <!-- a comment -->  <p>more</p>"));
+	}
+
+	@Test
+	void preservesPreformattedElements() throws IOException{
+		final String pre = "<pre>  line 1\n\n    line  2</pre>";
+		final String code = "<code>a   =   b</code>";
+		final String textarea = "<textarea>  first\n\n  second  </textarea>";
+
+		Assertions.assertEquals(pre, minify(pre));
+		Assertions.assertEquals("<p>" + code + "</p>", minify("<p>" + code + "</p>"));
+		Assertions.assertEquals(textarea, minify(textarea));
+	}
+
+	@Test
+	void preservesNestedPreformattedElements() throws IOException{
+		final String html = "<pre><code class=\"language-java\">if(a){\n    b  = 1;\n}\n</code></pre>";
+
+		Assertions.assertEquals(html, minify(html));
+	}
+
+	@Test
+	void preservesScriptsAndStyles() throws IOException{
+		final String script = "<script>\n  var s = \"a   <!-- b -->   c\";\n  if(a < b)\n    f();\n</script>";
+		final String style = "<style>\n  p  >  a { color: red; }\n</style>";
+
+		Assertions.assertEquals(script, minify(script));
+		Assertions.assertEquals(style, minify(style));
+	}
+
+	@Test
+	void preservesTags() throws IOException{
+		final String html = "<p title=\"a   b\"   class='c'>text</p>";
+
+		Assertions.assertEquals(html, minify(html));
+	}
+
+}
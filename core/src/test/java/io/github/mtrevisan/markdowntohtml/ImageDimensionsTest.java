@@ -0,0 +1,257 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+
+class ImageDimensionsTest{
+
+	private static ImageDimensions read(final Path directory, final String name, final byte[] content) throws IOException{
+		final Path image = directory.resolve(name);
+		Files.write(image, content);
+		return ImageDimensions.read(image);
+	}
+
+	private static ByteBuffer header(final int size, final ByteOrder order){
+		return ByteBuffer.allocate(size)
+			.order(order);
+	}
+
+	private static byte[] riff(final String chunk){
+		return header(32, ByteOrder.LITTLE_ENDIAN)
+			.put("RIFF".getBytes(StandardCharsets.US_ASCII))
+			.putInt(1024)
+			.put("WEBP".getBytes(StandardCharsets.US_ASCII))
+			.put(chunk.getBytes(StandardCharsets.US_ASCII))
+			.putInt(256)
+			.array();
+	}
+
+	private static byte[] jpeg(final int orientation){
+		final ByteBuffer exif = header(28, ByteOrder.BIG_ENDIAN)
+			.put("Exif\0\0".getBytes(StandardCharsets.US_ASCII))
+			//big-endian TIFF header, the first directory right after it
+			.put("MM".getBytes(StandardCharsets.US_ASCII))
+			.putShort((short)42)
+			.putInt(8)
+			//one entry: the orientation, a short
+			.putShort((short)1)
+			.putShort((short)0x0112)
+			.putShort((short)3)
+			.putInt(1)
+			.putShort((short)orientation)
+			.putShort((short)0);
+		return header(2 + 4 + exif.capacity() + 10, ByteOrder.BIG_ENDIAN)
+			.putShort((short)0xFFD8)
+			.putShort((short)0xFFE1)
+			.putShort((short)(exif.capacity() + 2))
+			.put(exif.array())
+			//start of frame: precision, height, width, components
+			.putShort((short)0xFFC0)
+			.putShort((short)17)
+			.put((byte)8)
+			.putShort((short)300)
+			.putShort((short)400)
+			.put((byte)3)
+			.array();
+	}
+
+
+	@Test
+	void readsPNG(@TempDir final Path directory) throws IOException{
+		final byte[] content = header(24, ByteOrder.BIG_ENDIAN)
+			.put(new byte[]{(byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'})
+			.putInt(13)
+			.put("IHDR".getBytes(StandardCharsets.US_ASCII))
+			.putInt(640)
+			.putInt(480)
+			.array();
+
+		final ImageDimensions dimensions = read(directory, "image.png", content);
+
+		Assertions.assertEquals(640, dimensions.getWidth());
+		Assertions.assertEquals(480, dimensions.getHeight());
+		Assertions.assertEquals("image/png", dimensions.getMimeType());
+	}
+
+	@Test
+	void readsGIF(@TempDir final Path directory) throws IOException{
+		final byte[] content = header(13, ByteOrder.LITTLE_ENDIAN)
+			.put("GIF89a".getBytes(StandardCharsets.US_ASCII))
+			.putShort((short)320)
+			.putShort((short)200)
+			.array();
+
+		final ImageDimensions dimensions = read(directory, "image.gif", content);
+
+		Assertions.assertEquals(320, dimensions.getWidth());
+		Assertions.assertEquals(200, dimensions.getHeight());
+		Assertions.assertEquals("image/gif", dimensions.getMimeType());
+	}
+
+	@Test
+	void readsLossyWebP(@TempDir final Path directory) throws IOException{
+		final byte[] content = riff("VP8 ");
+		ByteBuffer.wrap(content)
+			.order(ByteOrder.LITTLE_ENDIAN)
+			//frame tag, then start code
+			.position(23)
+			.put(new byte[]{(byte)0x9D, 0x01, 0x2A})
+			//the two upper bits are the scale
+			.putShort((short)(0xC000 | 1024))
+			.putShort((short)768);
+
+		final ImageDimensions dimensions = read(directory, "image.webp", content);
+
+		Assertions.assertEquals(1024, dimensions.getWidth());
+		Assertions.assertEquals(768, dimensions.getHeight());
+		Assertions.assertEquals("image/webp", dimensions.getMimeType());
+	}
+
+	@Test
+	void readsLosslessWebP(@TempDir final Path directory) throws IOException{
+		final byte[] content = riff("VP8L");
+		ByteBuffer.wrap(content)
+			.order(ByteOrder.LITTLE_ENDIAN)
+			.position(20)
+			.put((byte)0x2F)
+			.putInt((5000 - 1) | ((3000 - 1) << 14));
+
+		final ImageDimensions dimensions = read(directory, "image.webp", content);
+
+		Assertions.assertEquals(5000, dimensions.getWidth());
+		Assertions.assertEquals(3000, dimensions.getHeight());
+	}
+
+	@Test
+	void readsExtendedWebP(@TempDir final Path directory) throws IOException{
+		final byte[] content = riff("VP8X");
+		//flags, then the canvas size, 24 bits each, minus one
+		final int width = 70_000 - 1;
+		final int height = 20_000 - 1;
+		ByteBuffer.wrap(content)
+			.position(24)
+			.put(new byte[]{(byte)width, (byte)(width >> 8), (byte)(width >> 16)})
+			.put(new byte[]{(byte)height, (byte)(height >> 8), (byte)(height >> 16)});
+
+		final ImageDimensions dimensions = read(directory, "image.webp", content);
+
+		Assertions.assertEquals(70_000, dimensions.getWidth());
+		Assertions.assertEquals(20_000, dimensions.getHeight());
+	}
+
+	@Test
+	void readsBMP(@TempDir final Path directory) throws IOException{
+		final byte[] content = header(26, ByteOrder.LITTLE_ENDIAN)
+			.put("BM".getBytes(StandardCharsets.US_ASCII))
+			.position(14)
+			.putInt(40)
+			.putInt(800)
+			//top-down
+			.putInt(-600)
+			.array();
+
+		final ImageDimensions dimensions = read(directory, "image.bmp", content);
+
+		Assertions.assertEquals(800, dimensions.getWidth());
+		Assertions.assertEquals(600, dimensions.getHeight());
+		Assertions.assertEquals("image/bmp", dimensions.getMimeType());
+	}
+
+	@Test
+	void readsOS2BMP(@TempDir final Path directory) throws IOException{
+		final byte[] content = header(26, ByteOrder.LITTLE_ENDIAN)
+			.put("BM".getBytes(StandardCharsets.US_ASCII))
+			.position(14)
+			.putInt(12)
+			.putShort((short)64)
+			.putShort((short)32)
+			.array();
+
+		final ImageDimensions dimensions = read(directory, "image.bmp", content);
+
+		Assertions.assertEquals(64, dimensions.getWidth());
+		Assertions.assertEquals(32, dimensions.getHeight());
+	}
+
+	@Test
+	void readsJPEG(@TempDir final Path directory) throws IOException{
+		for(int orientation = 1; orientation <= 4; orientation ++){
+			final ImageDimensions dimensions = read(directory, "image" + orientation + ".jpg", jpeg(orientation));
+
+			Assertions.assertEquals(400, dimensions.getWidth());
+			Assertions.assertEquals(300, dimensions.getHeight());
+			Assertions.assertEquals(orientation, dimensions.getOrientation());
+			Assertions.assertEquals("image/jpeg", dimensions.getMimeType());
+		}
+	}
+
+	@Test
+	void swapsSidesOfRotatedJPEG(@TempDir final Path directory) throws IOException{
+		for(int orientation = 5; orientation <= 8; orientation ++){
+			final ImageDimensions dimensions = read(directory, "image" + orientation + ".jpg", jpeg(orientation));
+
+			Assertions.assertEquals(300, dimensions.getWidth(), "orientation " + orientation);
+			Assertions.assertEquals(400, dimensions.getHeight(), "orientation " + orientation);
+			Assertions.assertEquals(orientation, dimensions.getOrientation());
+		}
+	}
+
+	@Test
+	void ignoresUnknownFormat(@TempDir final Path directory) throws IOException{
+		Assertions.assertNull(read(directory, "image.txt", "not an image".getBytes(StandardCharsets.US_ASCII)));
+		Assertions.assertNull(read(directory, "truncated.jpg", new byte[]{(byte)0xFF, (byte)0xD8, (byte)0xFF}));
+	}
+
+	@Test
+	void readsChangedImageAgain(@TempDir final Path directory) throws IOException{
+		final Path image = directory.resolve("image.gif");
+		Files.write(image, header(13, ByteOrder.LITTLE_ENDIAN)
+			.put("GIF89a".getBytes(StandardCharsets.US_ASCII))
+			.putShort((short)320)
+			.putShort((short)200)
+			.array());
+		Assertions.assertEquals(320, ImageDimensions.read(image).getWidth());
+
+		Files.write(image, header(14, ByteOrder.LITTLE_ENDIAN)
+			.put("GIF89a".getBytes(StandardCharsets.US_ASCII))
+			.putShort((short)64)
+			.putShort((short)48)
+			.array());
+
+		Assertions.assertEquals(64, ImageDimensions.read(image).getWidth());
+	}
+
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.NavigableMap;
+import java.util.Properties;
+import java.util.TreeMap;
+
+
+class ImageExtensionTest{
+
+	private static String render(final Path directory, final String markdown, final ImageVariants imageVariants)
+			throws IOException{
+		final File file = directory.resolve("page.md")
+			.toFile();
+		//the images are looked for beside an existing page only
+		Files.writeString(file.toPath(), markdown);
+		final ParsedDocument parsedDocument = Service.parse(file, markdown.getBytes(StandardCharsets.UTF_8), new Properties(),
+			null);
+		return Service.render(parsedDocument, RenderVariant.create(false, false)
+			.withImageVariants(imageVariants));
+	}
+
+	private static String imageTag(final String html){
+		final int start = html.indexOf("<img ");
+		return html.substring(start, html.indexOf('>', start) + 1);
+	}
+
+	private static void writePNG(final Path image, final int width, final int height) throws IOException{
+		Files.createDirectories(image.getParent());
+		Files.write(image, ByteBuffer.allocate(24)
+			.put(new byte[]{(byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'})
+			.putInt(13)
+			.put("IHDR".getBytes(StandardCharsets.US_ASCII))
+			.putInt(width)
+			.putInt(height)
+			.array());
+	}
+
+
+	@Test
+	void addsIntrinsicSize(@TempDir final Path directory) throws IOException{
+		writePNG(directory.resolve("photo.png"), 1200, 800);
+
+		final String tag = imageTag(render(directory, "![photo](photo.png)\n", null));
+
+		Assertions.assertTrue(tag.contains(" width=\"1200\" height=\"800\""), tag);
+		Assertions.assertFalse(tag.contains("srcset"), tag);
+	}
+
+	@Test
+	void composesSourceSet(@TempDir final Path directory) throws IOException{
+		writePNG(directory.resolve("images/my photo.png"), 1200, 800);
+		final ImageVariants imageVariants = (image, width, height) -> {
+			final NavigableMap<Integer, Path> copies = new TreeMap<>();
+			for(final int copyWidth : new int[]{960, 480})
+				copies.put(copyWidth, image.resolveSibling("my photo." + copyWidth + "w.0123456789.png"));
+			return copies;
+		};
+
+		final String tag = imageTag(render(directory, "![photo](images/my%20photo.png)\n", imageVariants));
+
+		Assertions.assertTrue(tag.contains(" srcset=\"images/my%20photo.480w.0123456789.png 480w, "
+			+ "images/my%20photo.960w.0123456789.png 960w, images/my%20photo.png 1200w\""), tag);
+		Assertions.assertTrue(tag.contains(" sizes=\"(max-width: 1200px) 100vw, 1200px\""), tag);
+	}
+
+	@Test
+	void skipsSourceSetWithoutCopies(@TempDir final Path directory) throws IOException{
+		writePNG(directory.resolve("photo.png"), 400, 300);
+
+		final String tag = imageTag(render(directory, "![photo](photo.png)\n",
+			(image, width, height) -> Collections.emptyNavigableMap()));
+
+		Assertions.assertTrue(tag.contains(" width=\"400\" height=\"300\""), tag);
+		Assertions.assertFalse(tag.contains("srcset"), tag);
+	}
+
+	@Test
+	void skipsSourceSetOfUndecodableImage(@TempDir final Path directory) throws IOException{
+		writePNG(directory.resolve("photo.png"), 1200, 800);
+
+		final String tag = imageTag(render(directory, "![photo](photo.png)\n", (image, width, height) -> {
+			throw new IOException("Unsupported image type");
+		}));
+
+		Assertions.assertTrue(tag.contains(" width=\"1200\" height=\"800\""), tag);
+		Assertions.assertFalse(tag.contains("srcset"), tag);
+	}
+
+	@Test
+	void ignoresRemoteImages(@TempDir final Path directory) throws IOException{
+		final String tag = imageTag(render(directory, "![photo](https://example.com/photo.png)\n",
+			(image, width, height) -> {
+				throw new AssertionError("remote images are not read");
+			}));
+
+		Assertions.assertFalse(tag.contains("width="), tag);
+	}
+
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+
+class PageSegmentsTest{
+
+	private static final String TEMPLATE = "<!DOCTYPE html>\n<html>\n\t<head>\n\t\t<style>${stylesheet}</style>\n\t\t${katex}\n"
+		+ "\t</head>\n\t<body>\n${body}\n\t\t${scripts}\n\t</body>\n</html>\n";
+	private static final String STYLESHEET = "body {\n\tfont-family: serif;\n}\n";
+	private static final String SCRIPT = "<script>\n\tconsole.log(\"<p>  è  </p>\");\n</script>";
+	private static final String BODY = "<h1>Title   è</h1>\n\n<p>Some   text</p>\n<pre><code>a  &lt;  b\n  c</code></pre>\n";
+
+
+	private static PageSegments createPage(final boolean minify){
+		final PageSegments page = PageSegments.create(TEMPLATE);
+		page.add(PageSegments.STYLESHEET, (minify? HtmlMinifier.minifyStylesheet(STYLESHEET): STYLESHEET), true);
+		page.add(PageSegments.SCRIPTS, (minify? HtmlMinifier.minifyResource(SCRIPT): SCRIPT), true);
+		page.add(PageSegments.SCRIPTS, "<script>let a = 1;</script>", false);
+		page.add(PageSegments.BODY, BODY, false);
+		return page;
+	}
+
+	private static String write(final PageSegments page, final boolean minify) throws IOException{
+		final StringWriter sw = new StringWriter();
+		try(final Writer writer = (minify? new HtmlMinifier(sw): sw)){
+			page.write(writer);
+		}
+		return sw.toString();
+	}
+
+	private static String decode(final ByteBuffer[] buffers){
+		int size = 0;
+		for(final ByteBuffer buffer : buffers)
+			size += buffer.remaining();
+		final ByteBuffer joined = ByteBuffer.allocate(size);
+		for(final ByteBuffer buffer : buffers)
+			joined.put(buffer.duplicate());
+		return new String(joined.array(), StandardCharsets.UTF_8);
+	}
+
+
+	@Test
+	void encodesSameBytesAsWritten() throws IOException{
+		final PageSegments page = createPage(false);
+
+		Assertions.assertEquals(write(page, false), decode(page.encode(false)));
+	}
+
+	@Test
+	void encodesSameBytesAsWrittenMinified() throws IOException{
+		final PageSegments page = createPage(true);
+
+		final String minified = write(page, true);
+		Assertions.assertEquals(minified, decode(page.encode(true)));
+		Assertions.assertTrue(minified.length() < write(page, false).length());
+	}
+
+	@Test
+	void sharesEncodedConstants() throws IOException{
+		final ByteBuffer[] first = createPage(false).encode(false);
+		final ByteBuffer[] second = createPage(false).encode(false);
+
+		int shared = 0;
+		for(final ByteBuffer buffer : first)
+			for(final ByteBuffer other : second)
+				if(buffer.isDirect() && buffer.isReadOnly() && buffer.equals(other) && other.isDirect())
+					shared ++;
+		Assertions.assertEquals(2, shared);
+		//reading the buffers of a page does not change those of another
+		decode(first);
+		Assertions.assertEquals(decode(first), decode(second));
+	}
+
+	@Test
+	void encodesRenderedPageAsWritten() throws IOException{
+		final String markdown = "# Title\n\nMath $x^2$, [mail](mailto:someone@example.com).\n\n"
+			+ "<details><summary>more</summary>\n\ntext\n\n</details>\n\n```\ncode  <  block\n```\n";
+		final Properties properties = new Properties();
+		//otherwise the time of the rendering, which may differ between the two renderings
+		properties.setProperty("modified-datetime", "2020-01-02T03:04:05Z");
+		final ParsedDocument parsedDocument = Service.parse("page.md", markdown.getBytes(StandardCharsets.UTF_8),
+			properties);
+
+		for(final boolean minify : new boolean[]{false, true}){
+			final RenderVariant variant = RenderVariant.create(true, true)
+				.withMinification(minify);
+
+			Assertions.assertEquals(Service.render(parsedDocument, variant), decode(Service.renderEncoded(parsedDocument,
+				variant)), "minify " + minify);
+		}
+	}
+
+}
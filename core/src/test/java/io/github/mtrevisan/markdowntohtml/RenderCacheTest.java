@@ -0,0 +1,154 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+
+class RenderCacheTest{
+
+	private static final String PAGE = "<html><body><p>Some text, some more text.</p></body></html>";
+
+
+	@Test
+	void evictsLeastRecentlyUsed(){
+		final RenderCache cache = RenderCache.create(PAGE.length() * 2L, false, false);
+		cache.put("a", PAGE);
+		cache.put("b", PAGE);
+		//makes `b` the least recently used
+		Assertions.assertEquals(PAGE, cache.get("a"));
+		cache.put("c", PAGE);
+
+		Assertions.assertEquals(PAGE, cache.get("a"));
+		Assertions.assertNull(cache.get("b"));
+		Assertions.assertEquals(PAGE, cache.get("c"));
+		Assertions.assertEquals(3L, cache.getHits());
+		Assertions.assertEquals(1L, cache.getMisses());
+	}
+
+	@Test
+	void doesNotStorePageLargerThanCache(){
+		final RenderCache cache = RenderCache.create(PAGE.length() - 1L, false, false);
+		cache.put("a", PAGE);
+
+		Assertions.assertNull(cache.get("a"));
+	}
+
+	@Test
+	void removesStalePageReplacedByLargerOne(){
+		final RenderCache cache = RenderCache.create(PAGE.length(), false, false);
+		cache.put("a", PAGE);
+		cache.put("a", PAGE + PAGE);
+
+		Assertions.assertNull(cache.get("a"));
+		//the space of the removed page is available again
+		cache.put("b", PAGE);
+		Assertions.assertEquals(PAGE, cache.get("b"));
+	}
+
+	@Test
+	void roundTripsCompressedPage(){
+		final RenderCache cache = RenderCache.create(1L << 20, true, false);
+		final byte[] compressed = cache.put("a", PAGE);
+
+		Assertions.assertNotNull(compressed);
+		Assertions.assertArrayEquals(compressed, cache.getCompressed("a"));
+		Assertions.assertEquals(PAGE, cache.get("a"));
+	}
+
+	@Test
+	void roundTripsOffHeapPage(){
+		final String page = PAGE.replace("text", "téxt —");
+		final RenderCache uncompressed = RenderCache.create(1L << 20, false, true);
+		uncompressed.put("a", page);
+		final RenderCache compressed = RenderCache.create(1L << 20, true, true);
+		compressed.put("a", page);
+
+		Assertions.assertEquals(page, uncompressed.get("a"));
+		Assertions.assertNull(uncompressed.getCompressed("a"));
+		Assertions.assertEquals(page, compressed.get("a"));
+		Assertions.assertEquals(page, compressed.get("a"));
+	}
+
+	@Test
+	void keysFilesByLocationAndModificationTime(){
+		final byte[] source = "# Title".getBytes(StandardCharsets.UTF_8);
+		final RenderVariant variant = RenderVariant.create(false, false);
+		final String key = RenderCache.key(RenderCache.digestSource(Path.of("/a/page.md"), 1L, source, null), variant);
+
+		Assertions.assertEquals(key, RenderCache.key(RenderCache.digestSource(Path.of("/a/page.md"), 1L, source, null),
+			variant));
+		Assertions.assertNotEquals(key, RenderCache.key(RenderCache.digestSource(Path.of("/b/page.md"), 1L, source, null),
+			variant));
+		Assertions.assertNotEquals(key, RenderCache.key(RenderCache.digestSource(Path.of("/a/page.md"), 2L, source, null),
+			variant));
+		Assertions.assertNotEquals(key, RenderCache.key(RenderCache.digestSource(Path.of("/a/page.md"), 1L, source,
+			new byte[0]), variant));
+	}
+
+	@Test
+	void keysPagesByRenderOptions(){
+		final byte[] sourceDigest = RenderCache.digestSource("# Title".getBytes(StandardCharsets.UTF_8), (byte[])null);
+		final RenderVariant variant = RenderVariant.create(false, false);
+		final ImageVariants imageVariants = (image, width, height) -> null;
+
+		final String key = RenderCache.key(sourceDigest, variant);
+		Assertions.assertNotEquals(key, RenderCache.key(sourceDigest, variant.withCodeHighlighting(true)));
+		Assertions.assertNotEquals(key, RenderCache.key(sourceDigest, variant.withImageVariants(imageVariants)));
+		Assertions.assertNotEquals(key, RenderCache.key(sourceDigest, variant.withMinification(true)));
+	}
+
+	@Test
+	void renewsPageOfTouchedFile(@TempDir final Path directory) throws IOException{
+		final File file = directory.resolve("page.md").toFile();
+		Files.writeString(file.toPath(), "# Title\n\nText.\n", StandardCharsets.UTF_8);
+		final List<RenderVariant> variants = List.of(RenderVariant.create(false, false));
+
+		Service.setRenderCache(RenderCache.create(1L << 20, false, false));
+		try{
+			Assertions.assertTrue(file.setLastModified(Instant.parse("2020-01-01T00:00:00Z").toEpochMilli()));
+			final String page = Service.convert(file, variants).get(0);
+			Assertions.assertTrue(file.setLastModified(Instant.parse("2021-06-15T00:00:00Z").toEpochMilli()));
+			final String touchedPage = Service.convert(file, variants).get(0);
+
+			Assertions.assertTrue(page.contains("2020-01-0") || page.contains("2019-12-31"));
+			Assertions.assertTrue(touchedPage.contains("2021-06-1"));
+		}
+		finally{
+			Service.setRenderCache(null);
+		}
+	}
+
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+class RenderVariantTest{
+
+	@Test
+	void derivesCopiesWithoutChangingOriginal(){
+		final RenderVariant variant = RenderVariant.create(true, false);
+		final RenderVariant minified = variant.withMinification(true);
+
+		Assertions.assertNotSame(variant, minified);
+		Assertions.assertFalse(variant.isMinify());
+		Assertions.assertTrue(minified.isMinify());
+		Assertions.assertTrue(minified.isGenerateTOC());
+		Assertions.assertEquals(variant.getTemplateResource(), minified.getTemplateResource());
+	}
+
+	@Test
+	void choosesStylesheetLayersByCopyPrevention(){
+		Assertions.assertEquals(List.of("stylesheet-layer-default.css"),
+			RenderVariant.create(false, false).getStylesheetLayers());
+		Assertions.assertEquals(List.of("stylesheet-layer-prevent-copy.css"),
+			RenderVariant.create(false, true).getStylesheetLayers());
+		Assertions.assertEquals(List.of("a.css"), RenderVariant.create(false, true)
+			.withStylesheetLayers(List.of("a.css"))
+			.getStylesheetLayers());
+	}
+
+	@Test
+	void givesEachOptionItsOwnCacheKey(){
+		final RenderVariant variant = RenderVariant.create(false, false);
+		final List<RenderVariant> variants = List.of(variant,
+			RenderVariant.create(true, false),
+			RenderVariant.create(false, true),
+			variant.withTemplate("other-template.html"),
+			variant.withStylesheetLayers(List.of("a.css")),
+			variant.withStylesheetLink("base.css"),
+			variant.withStylesheetPruning(true),
+			variant.withFontSubsetting(true),
+			variant.withMinification(true),
+			variant.withAdditionalScripts("<script></script>"));
+
+		final Set<String> keys = new HashSet<>();
+		for(final RenderVariant v : variants)
+			keys.add(v.getCacheKey());
+		Assertions.assertEquals(variants.size(), keys.size());
+		Assertions.assertEquals(variant.getCacheKey(), RenderVariant.create(false, false).getCacheKey());
+	}
+
+	@Test
+	void rendersVariantsOfOneParseAsSeparateConversions(@TempDir final Path directory) throws IOException{
+		final File file = directory.resolve("page.md").toFile();
+		Files.writeString(file.toPath(), "# Title\n\n## Section\n\nSome *text*.\n", StandardCharsets.UTF_8);
+		final RenderVariant plain = RenderVariant.create(false, false);
+		final RenderVariant toc = RenderVariant.create(true, true);
+
+		final List<String> pages = Service.convert(file, List.of(plain, toc));
+
+		Assertions.assertEquals(Service.convert(file, List.of(plain)).get(0), pages.get(0));
+		Assertions.assertEquals(Service.convert(file, List.of(toc)).get(0), pages.get(1));
+		Assertions.assertNotEquals(pages.get(0), pages.get(1));
+	}
+
+}
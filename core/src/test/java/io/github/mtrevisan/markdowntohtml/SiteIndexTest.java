@@ -0,0 +1,108 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+
+class SiteIndexTest{
+
+	@TempDir
+	private Path directory;
+	private SiteIndex site;
+	private String page;
+
+
+	@BeforeEach
+	void scan() throws IOException{
+		final File page = write("page.md", "# Page\n\n## Introduction\n\nText.\n");
+		final File other = write("other-page.md", "# Other\n\n## Second Part\n\nText.\n");
+		final File nested = write("sub/nested.md", "# Nested Title\n\nText.\n");
+		this.page = page.getPath();
+		site = SiteIndex.scan(List.of(page, other, nested), 2);
+	}
+
+	private File write(final String name, final String content) throws IOException{
+		final Path path = directory.resolve(name);
+		Files.createDirectories(path.getParent());
+		Files.writeString(path, content, StandardCharsets.UTF_8);
+		return path.toFile();
+	}
+
+
+	@Test
+	void resolvesLinkByRelativePath(){
+		Assertions.assertEquals("See [N](<sub/nested.html>).", site.resolveLocalLinks(page, "See [[sub/nested|N]]."));
+	}
+
+	@Test
+	void resolvesLinkByNameIgnoringCaseAndSeparators(){
+		Assertions.assertEquals("[O](<other-page.html>)", site.resolveLocalLinks(page, "[[Other_Page|O]]"));
+	}
+
+	@Test
+	void resolvesLinkByTitle(){
+		Assertions.assertEquals("[nested title](<sub/nested.html>)", site.resolveLocalLinks(page, "[[nested title]]"));
+	}
+
+	@Test
+	void resolvesLinkToHeadingOfOtherPage(){
+		Assertions.assertEquals("[S](<other-page.html#second-part>)",
+			site.resolveLocalLinks(page, "[[other-page#second part|S]]"));
+	}
+
+	@Test
+	void resolvesLinkToHeadingOfSamePage(){
+		Assertions.assertEquals("[Introduction](<#introduction>)", site.resolveLocalLinks(page, "[[#Introduction]]"));
+	}
+
+	@Test
+	void resolvesLinkFromNestedPage(){
+		final String nested = directory.resolve("sub/nested.md").toString();
+
+		Assertions.assertEquals("[P](<../page.html>)", site.resolveLocalLinks(nested, "[[../page|P]]"));
+		Assertions.assertEquals("[P](<../page.html>)", site.resolveLocalLinks(nested, "[[Page|P]]"));
+	}
+
+	@Test
+	void reportsUnresolvedLinks(){
+		//a link to a missing heading still leads to its page
+		Assertions.assertEquals("missing, [Other](<other-page.html>)",
+			site.resolveLocalLinks(page, "[[missing]], [[other-page#Third|Other]]"));
+		Assertions.assertEquals(List.of(Path.of(page).toAbsolutePath().normalize() + ": [[missing]]",
+			Path.of(page).toAbsolutePath().normalize() + ": [[other-page#Third|Other]]"), site.getUnresolvedLinks());
+	}
+
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+
+class StylesheetLayersTest{
+
+	private static final String STYLE_START = "<style>";
+	private static final String STYLE_END = "</style>";
+
+
+	private static String readResource(final String name) throws IOException{
+		try(final InputStream is = StylesheetLayersTest.class.getClassLoader().getResourceAsStream("resources/" + name)){
+			Assertions.assertNotNull(is, name);
+			return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static String extractStylesheet(final String page){
+		final int start = page.indexOf(STYLE_START) + STYLE_START.length();
+		return page.substring(start, page.indexOf(STYLE_END, start))
+			.trim();
+	}
+
+	private static String convert(final Path directory, final RenderVariant variant) throws IOException{
+		final File file = directory.resolve("page.md").toFile();
+		Files.writeString(file.toPath(), "# Title\n\nText.\n", StandardCharsets.UTF_8);
+		return Service.convert(file, List.of(variant))
+			.get(0);
+	}
+
+
+	@Test
+	void composesDefaultStylesheetFromBaseAndLayer(@TempDir final Path directory) throws IOException{
+		final String page = convert(directory, RenderVariant.create(false, false));
+
+		Assertions.assertEquals((readResource("stylesheet-base.css") + "\n" + readResource("stylesheet-layer-default.css"))
+			.trim(), extractStylesheet(page));
+	}
+
+	@Test
+	void composesPreventCopyStylesheetFromBaseAndLayer(@TempDir final Path directory) throws IOException{
+		final String page = convert(directory, RenderVariant.create(false, true));
+
+		final String stylesheet = extractStylesheet(page);
+		Assertions.assertEquals((readResource("stylesheet-base.css") + "\n"
+			+ readResource("stylesheet-layer-prevent-copy.css")).trim(), stylesheet);
+		Assertions.assertFalse(stylesheet.contains(".flip-horizontal"));
+	}
+
+	@Test
+	void inlinesOnlyLayerWhenBaseIsLinked(@TempDir final Path directory) throws IOException{
+		final String page = convert(directory, RenderVariant.create(false, false)
+			.withStylesheetLink("base.css"));
+
+		Assertions.assertTrue(page.contains("<link rel=\"stylesheet\" href=\"base.css\" />"));
+		Assertions.assertEquals(readResource("stylesheet-layer-default.css").trim(), extractStylesheet(page));
+	}
+
+	@Test
+	void writesBaseStylesheet(@TempDir final Path directory) throws IOException{
+		final File file = directory.resolve("base.css").toFile();
+		Service.writeBaseStylesheet(file);
+
+		Assertions.assertEquals(readResource("stylesheet-base.css"), Files.readString(file.toPath(), StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2023 Mauro Trevisan
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+package io.github.mtrevisan.markdowntohtml;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+
+class StylesheetPrunerTest{
+
+	@Test
+	void removesRulesNotMatchingPage(){
+		final String stylesheet = "p { color: red; }\ntable { margin: 0; }\n.note { color: blue; }\n#top { color: green; }\n";
+
+		Assertions.assertEquals("p { color: red; }\n#top { color: green; }\n",
+			StylesheetPruner.prune(stylesheet, "<p id=\"top\">Text</p>"));
+	}
+
+	@Test
+	void keepsSelectorListIfAnySelectorMatches(){
+		final String stylesheet = "table, p.note { margin: 0; }\n";
+
+		Assertions.assertEquals(stylesheet, StylesheetPruner.prune(stylesheet, "<p class=\"other note\">Text</p>"));
+	}
+
+	@Test
+	void keepsClassesToggledByScripts(){
+		final String stylesheet = ".hidden { display: none; }\n.shown { display: block; }\n";
+		final String script = "<script>element.classList.toggle('hidden');</script>";
+
+		Assertions.assertEquals(".hidden { display: none; }\n", StylesheetPruner.prune(stylesheet, "<p>Text</p>", script));
+	}
+
+	@Test
+	void prunesInsideMediaRules(){
+		final String stylesheet = "@media print {\n\tp { color: black; }\n\ttable { margin: 0; }\n}\n";
+
+		Assertions.assertEquals("@media print{p { color: black; }\n}\n", StylesheetPruner.prune(stylesheet, "<p>Text</p>"));
+	}
+
+	@Test
+	void dropsEmptiedMediaRules(){
+		final String stylesheet = "@media (min-width: 1060px) {\n\t._navigation-column { display: block; }\n}\n"
+			+ "@supports (display: grid) {\n\ttable { display: grid; }\n}\np { color: red; }\n";
+
+		Assertions.assertEquals("p { color: red; }\n", StylesheetPruner.prune(stylesheet, "<p>Text</p>"));
+	}
+
+	@Test
+	void dropsEmptyBlocks(){
+		final String stylesheet = "@media print {\n}\n@page { /* nothing */ }\np { }\nspan { color: red; }\n";
+
+		Assertions.assertEquals("", StylesheetPruner.prune(stylesheet, "<p>Text</p>"));
+	}
+
+	@Test
+	void keepsFontFacesAndOtherAtRules(){
+		final String stylesheet = "@font-face { font-family: Lato; src: url(data:font/woff2;base64,AAAA); }\n"
+			+ "@page { margin: 20mm; }\n";
+
+		Assertions.assertEquals(stylesheet, StylesheetPruner.prune(stylesheet, "<p>Text</p>"));
+	}
+
+}
@@ -38,7 +38,6 @@ import java.awt.dnd.DropTargetDropEvent;
 import java.awt.dnd.DropTargetEvent;
 import java.awt.dnd.DropTargetListener;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.HashSet;
@@ -91,6 +90,7 @@ public class DragDropListener implements DropTargetListener{
 					final String currentDir = (!files.isEmpty()? files.get(0).getParent(): ".");
 					final File outFolder = new File(currentDir);
 
+					final BatchConversionEvent batchEvent = BatchConversionEvent.start("gui");
 					for(final File file : files){
 						if(!FileUtil.getDotExtension(file).equals(".md")){
 							final JOptionPane outPane = new JOptionPane();
@@ -118,6 +118,7 @@ public class DragDropListener implements DropTargetListener{
 							JOptionPane.showMessageDialog(null, "There are duplicated IDs: " + duplicatedIDs,
 								"Duplicated IDs found", JOptionPane.INFORMATION_MESSAGE);
 
+						final ConversionEvent conversionEvent = ConversionEvent.start(file.getPath(), file.length());
 						try{
 							final String html = Service.convert(file, generateTOC, preventCopying);
 
@@ -127,8 +128,16 @@ public class DragDropListener implements DropTargetListener{
 							outPane.setOptionType(JOptionPane.DEFAULT_OPTION);
 							//save output
 							final File outFile = new File(outFolder, FileUtil.getNameOnly(file) + ".html");
-							try(final FileWriter writer = new FileWriter(outFile, StandardCharsets.UTF_8)){
-								writer.write(html);
+							final ConversionStageEvent writeEvent = ConversionStageEvent.start(file.getPath(),
+								ConversionStageEvent.WRITE);
+							final byte[] content = html.getBytes(StandardCharsets.UTF_8);
+							boolean written = false;
+							boolean succeeded = false;
+							try{
+								written = Service.writeIfChanged(outFile, content);
+								if(!written)
+									outPane.setMessage("Output unchanged");
+								succeeded = true;
 							}
 							catch(final IOException e){
 								e.printStackTrace();
@@ -136,10 +145,18 @@ public class DragDropListener implements DropTargetListener{
 								outPane.setMessage("Processing error");
 								outPane.setMessageType(JOptionPane.ERROR_MESSAGE);
 							}
+							//an unchanged page is not written, yet it is converted
+							writeEvent.complete(content.length, (written? content.length: 0L));
+							conversionEvent.complete((succeeded? content.length: 0L), succeeded);
+							batchEvent.addDocument(file.length(), (succeeded? content.length: 0L), succeeded);
+
 							final JDialog resultDialog = outPane.createDialog(null, "Processing result");
 							resultDialog.setVisible(true);
 						}
 						catch(final Throwable t){
+							conversionEvent.complete(0, false);
+							batchEvent.addDocument(file.length(), 0, false);
+
 							t.printStackTrace();
 
 							final JOptionPane outPane = new JOptionPane();
@@ -150,6 +167,7 @@ public class DragDropListener implements DropTargetListener{
 							resultDialog.setVisible(true);
 						}
 					}
+					batchEvent.complete();
 				}
 			}
 			catch(Exception e){
@@ -44,9 +44,16 @@ import java.io.ObjectOutputStream;
 import java.io.Serial;
 
 
-public class Main{
+/**
+ * The drag and drop window of the application.
+ * <p>Kept apart from {@link Main}, so the command line, the daemon and the service do not load AWT and Swing.</p>
+ */
+final class MainFrame{
+
+	private MainFrame(){}
+
 
-	public static void main(String[] args){
+	static void show(){
 		try{
 			final String lookAndFeelName = UIManager.getSystemLookAndFeelClassName();
 			UIManager.setLookAndFeel(lookAndFeelName);
@@ -123,4 +130,4 @@ public class Main{
 			.registerKeyboardAction(cancelAction, escapeKey, JComponent.WHEN_IN_FOCUSED_WINDOW);
 	}
 
-}
\ No newline at end of file
+}
@@ -18,5 +18,6 @@ REM BFCPEEMBED=${project.build.directory}\packaging\run.bat
 REM BFCPEOPTIONEND
 rem Hideself
 CD .\app
-..\bin\java.exe -jar .\${project.artifactId}-${project.version}-shaded.jar
+REM the application class-data archive is produced at packaging time, C1 alone is enough for a few conversions
+..\bin\java.exe -XX:SharedArchiveFile=.\${app.name}.jsa -XX:TieredStopAtLevel=1 -jar .\${project.artifactId}-${project.version}-shaded.jar
 EXIT